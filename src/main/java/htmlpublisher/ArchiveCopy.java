@@ -0,0 +1,230 @@
+package htmlpublisher;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarInputStream;
+
+import hudson.FilePath;
+import htmlpublisher.util.FileTransformer;
+import htmlpublisher.util.GlobMatcher;
+import htmlpublisher.util.ReportBudget;
+import htmlpublisher.util.TransformingDirScanner;
+
+/**
+ * Copies a report that has been packed into a zip or tar archive, given as the report directory.
+ *
+ * The archive is streamed from its node as it is, in a single sequential transfer, and unpacked on the controller,
+ * so the node neither has to unpack it nor pack the unpacked files again. Only the entries matching the includes and
+ * neither the excludes of the target nor the Ant default excludes are unpacked, and entries that would end up outside
+ * the report directory or are links are skipped. Entries of unknown size are written at most up to the remaining
+ * budget, and a copy over a budget that is not truncating fails as soon as the budget is exceeded. The transformers
+ * of the target are applied on the controller, to the unpacked files.
+ */
+class ArchiveCopy {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File targetDir;
+
+    private final GlobMatcher includes;
+
+    private final GlobMatcher excludes;
+
+    private final ReportBudget.Tally tally;
+
+    private final List<? extends FileTransformer> transformers;
+
+    private final boolean truncating;
+
+    private final PrintStream logger;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int skipped;
+
+    private ArchiveCopy(File targetDir, String includes, String excludes, ReportBudget budget,
+            List<? extends FileTransformer> transformers, PrintStream logger) {
+        this.targetDir = targetDir;
+        this.includes = new GlobMatcher(includes);
+        // Like the files copied from a directory, see PruningGlobDirScanner
+        this.excludes = new GlobMatcher((excludes != null ? excludes + "," : "") + String.join(",", DirectoryScanner.getDefaultExcludes()));
+        this.tally = budget != null ? budget.newTally() : null;
+        this.transformers = transformers;
+        this.truncating = budget != null && budget.isTruncating();
+        this.logger = logger;
+    }
+
+    /**
+     * @return whether the name of the report directory is that of a supported archive
+     */
+    static boolean isArchive(String name) {
+        String lowerCase = name.toLowerCase(Locale.ENGLISH);
+        return lowerCase.endsWith(".zip") || lowerCase.endsWith(".tar") || lowerCase.endsWith(".tar.gz") || lowerCase.endsWith(".tgz");
+    }
+
+    /**
+     * Unpacks the entries of the archive matching the includes and not the excludes into the report directory
+     *
+     * @param budget limits the unpacked files, may be null
+     * @param budgetListener told about the entries skipped by a truncating budget, may be null
+     * @param transformers applied to the unpacked files, in order
+     * @return the number of unpacked files
+     */
+    static int copy(FilePath archive, String includes, String excludes, File targetDir, ReportBudget budget,
+            ReportBudget.Listener budgetListener, List<? extends FileTransformer> transformers, PrintStream logger)
+            throws IOException, InterruptedException {
+        ArchiveCopy copy = new ArchiveCopy(targetDir, includes, excludes, budget, transformers, logger);
+        String name = archive.getName().toLowerCase(Locale.ENGLISH);
+        int copied;
+        try (InputStream in = new BufferedInputStream(archive.read())) {
+            if (name.endsWith(".zip")) {
+                copied = copy.unzip(in);
+            } else if (name.endsWith(".tar")) {
+                copied = copy.untar(in);
+            } else {
+                copied = copy.untar(new GZIPInputStream(in));
+            }
+        }
+        if (copy.tally != null) {
+            copy.tally.complete(budgetListener);
+        }
+        logger.println("[htmlpublisher] Unpacked " + copied + " file(s) from archive '" + archive.getName() + "'"
+                + (copy.skipped > 0 ? ", " + copy.skipped + " unsafe entries skipped" : ""));
+        return copied;
+    }
+
+    private int unzip(InputStream in) throws IOException, InterruptedException {
+        int copied = 0;
+        ZipInputStream zip = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (!entry.isDirectory() && extract(entry.getName(), zip, entry.getSize(), entry.getTime())) {
+                copied++;
+            }
+        }
+        return copied;
+    }
+
+    private int untar(InputStream in) throws IOException, InterruptedException {
+        int copied = 0;
+        TarInputStream tar = new TarInputStream(in);
+        TarEntry entry;
+        while ((entry = tar.getNextEntry()) != null) {
+            if (entry.isSymbolicLink() || entry.isLink()) {
+                this.skipped++;
+                continue;
+            }
+            if (!entry.isDirectory() && extract(entry.getName(), tar, entry.getSize(), entry.getModTime().getTime())) {
+                copied++;
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Writes the current entry of the archive to the report directory, unless it is not included or over the budget
+     *
+     * @param size the size of the entry, or -1 if the archive does not tell
+     * @return whether the entry has been written
+     */
+    private boolean extract(String entryName, InputStream in, long size, long lastModified) throws IOException, InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        String relativePath = entryName.replace('\\', '/');
+        while (relativePath.startsWith("./")) {
+            relativePath = relativePath.substring(2);
+        }
+        if (!this.includes.matches(relativePath) || this.excludes.matches(relativePath)) {
+            return false;
+        }
+
+        Path base = this.targetDir.toPath().toAbsolutePath().normalize();
+        Path target = base.resolve(relativePath).normalize();
+        if (!target.startsWith(base) || target.equals(base)) {
+            // An absolute path or one escaping the report directory, see "zip slip"
+            this.skipped++;
+            this.logger.println("[htmlpublisher] Skipping archive entry '" + entryName + "' outside the report directory");
+            return false;
+        }
+        if (size >= 0 && !withinBudget(size)) {
+            return false;
+        }
+        if (TransformingDirScanner.drops(this.transformers, relativePath)) {
+            // Like a dropped file of a directory, counted against the budget if its size is known
+            return false;
+        }
+        Files.createDirectories(target.getParent());
+        if (size < 0 && this.tally != null) {
+            if (!extractWithinBudget(in, target)) {
+                return false;
+            }
+        } else {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (lastModified > 0) {
+            target.toFile().setLastModified(lastModified);
+        }
+        TransformingDirScanner.transform(this.transformers, relativePath, target.toFile());
+        return true;
+    }
+
+    /**
+     * Writes an entry of unknown size, but no more bytes than the budget has left
+     *
+     * @return whether the entry is within the budget and has been written
+     */
+    private boolean extractWithinBudget(InputStream in, Path target) throws IOException {
+        long remaining = this.tally.getRemainingBytes();
+        long written = 0;
+        boolean over = remaining < 0;
+        if (!over) {
+            try (OutputStream out = Files.newOutputStream(target)) {
+                int read;
+                while ((read = in.read(this.buffer)) != -1) {
+                    if (read > remaining - written) {
+                        over = true;
+                        written += read;
+                        break;
+                    }
+                    out.write(this.buffer, 0, read);
+                    written += read;
+                }
+            }
+        }
+        if (!over) {
+            return withinBudget(written);
+        }
+        Files.deleteIfExists(target);
+        if (this.truncating) {
+            // The rest of the entry is only counted, for the note of the truncated report
+            int read;
+            while ((read = in.read(this.buffer)) != -1) {
+                written += read;
+            }
+        }
+        // Skipped, or fails right away without reading the rest of the archive
+        withinBudget(written);
+        return false;
+    }
+
+    private boolean withinBudget(long size) throws IOException {
+        return this.tally == null || this.tally.add(size);
+    }
+
+}
@@ -0,0 +1,175 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+
+import jenkins.util.VirtualFile;
+
+import htmlpublisher.util.FileTransformer;
+import htmlpublisher.util.ReportBudget;
+import htmlpublisher.util.TransformingDirScanner;
+
+/**
+ * Copies a report from the archived artifacts of the build, see {@link HtmlPublisherTarget#getFromArtifacts()}.
+ *
+ * The artifacts have already been transferred from the agent, so no bytes cross the channel again. With the standard
+ * artifact storage on the controller, the files are hard linked into the report directory, so they are not stored
+ * twice either. Files that cannot be linked, e.g. because the report directory is on another file system, are copied,
+ * and the files of other artifact managers are read through {@link VirtualFile#open()}.
+ *
+ * Unless {@link HtmlPublisher#FOLLOW_SYMLINKS} is set, artifacts that are links, or within linked directories, are
+ * skipped like in a copy from the workspace, so files elsewhere on the controller do not end up in the report.
+ *
+ * The transformers of the target are applied on the controller, to the copied files. Files they transform are copied
+ * rather than hard linked, so the artifacts are left unchanged.
+ */
+class ArtifactsCopy {
+
+    private final VirtualFile source;
+
+    private final File targetDir;
+
+    private final ReportBudget.Tally tally;
+
+    private final List<? extends FileTransformer> transformers;
+
+    private final OpenOption[] openOptions;
+
+    private final LinkOption[] linkOptions;
+
+    private int linked;
+
+    private int skippedLinks;
+
+    private ArtifactsCopy(VirtualFile source, File targetDir, ReportBudget budget, List<? extends FileTransformer> transformers) {
+        this.source = source;
+        this.targetDir = targetDir;
+        this.tally = budget != null ? budget.newTally() : null;
+        this.transformers = transformers;
+        this.linkOptions = HtmlPublisher.FOLLOW_SYMLINKS ? new LinkOption[0] : new LinkOption[] {LinkOption.NOFOLLOW_LINKS};
+        this.openOptions = this.linkOptions;
+    }
+
+    /**
+     * Copies the files of the artifact directory matching the includes and not the excludes
+     *
+     * @param budget limits the copied files, may be null
+     * @param budgetListener told about the files skipped by a truncating budget, may be null
+     * @param transformers applied to the copied files, in order
+     * @return the number of copied files
+     */
+    static int copy(VirtualFile source, String includes, String excludes, File targetDir, ReportBudget budget,
+            ReportBudget.Listener budgetListener, List<? extends FileTransformer> transformers, PrintStream logger)
+            throws IOException, InterruptedException {
+        ArtifactsCopy copy = new ArtifactsCopy(source, targetDir, budget, transformers);
+        int copied = copy.copy(includes, excludes);
+        if (copy.tally != null) {
+            copy.tally.complete(budgetListener);
+        }
+        logger.println("[htmlpublisher] Copied " + copied + " file(s) from the artifacts of the build, " + copy.linked
+                + " of them hard linked" + (copy.skippedLinks > 0 ? ", " + copy.skippedLinks + " symbolic links skipped" : ""));
+        return copied;
+    }
+
+    private int copy(String includes, String excludes) throws IOException, InterruptedException {
+        Collection<String> files = this.source.list(includes, excludes, true, this.openOptions);
+        int copied = 0;
+        for (String relativePath : files) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            VirtualFile file = this.source.child(relativePath);
+            if (isLink(file)) {
+                this.skippedLinks++;
+                continue;
+            }
+            // Like a copy from the workspace, the budget also counts the files left out by the transformers
+            if (this.tally != null && !this.tally.add(file.length())) {
+                continue;
+            }
+            String path = relativePath.replace('\\', '/');
+            if (TransformingDirScanner.drops(this.transformers, path)) {
+                continue;
+            }
+            Path target = this.targetDir.toPath().resolve(relativePath).normalize();
+            if (!target.startsWith(this.targetDir.toPath())) {
+                throw new IOException("Artifact '" + relativePath + "' is not within the report directory");
+            }
+            Files.createDirectories(target.getParent());
+            if (TransformingDirScanner.transforms(this.transformers, path)) {
+                copyFile(file, target, false);
+                TransformingDirScanner.transform(this.transformers, path, target.toFile());
+            } else {
+                copyFile(file, target, true);
+            }
+            copied++;
+        }
+        return copied;
+    }
+
+    /**
+     * @return whether the artifact is a link, or within a linked directory, which is not followed
+     */
+    private boolean isLink(VirtualFile file) throws IOException {
+        if (HtmlPublisher.FOLLOW_SYMLINKS) {
+            return false;
+        }
+        if (file.hasSymlink(this.openOptions)) {
+            return true;
+        }
+        Path local = toLocalPath(file);
+        return local != null && !Files.isRegularFile(local, this.linkOptions);
+    }
+
+    /**
+     * @param link whether the file may be hard linked, which it must not be if it is transformed afterwards
+     */
+    private void copyFile(VirtualFile file, Path target, boolean link) throws IOException {
+        Path local = toLocalPath(file);
+        if (local != null && link) {
+            try {
+                Files.createLink(target, local);
+                this.linked++;
+                return;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                // Not supported by the file system, or across file systems
+            }
+        }
+        if (local != null) {
+            Files.copy(local, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            return;
+        }
+        try (InputStream in = file.open(this.openOptions)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        long lastModified = file.lastModified();
+        if (lastModified > 0) {
+            target.toFile().setLastModified(lastModified);
+        }
+    }
+
+    /**
+     * @return the file of an artifact in the standard storage on the controller, which may be a link, or null
+     */
+    private static Path toLocalPath(VirtualFile file) {
+        URI uri = file.toURI();
+        if (uri == null || !"file".equals(uri.getScheme())) {
+            return null;
+        }
+        Path path = Paths.get(uri);
+        return Files.exists(path, LinkOption.NOFOLLOW_LINKS) ? path : null;
+    }
+
+}
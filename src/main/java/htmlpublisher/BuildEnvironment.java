@@ -0,0 +1,54 @@
+package htmlpublisher;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import hudson.EnvVars;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+
+/**
+ * The environment of a build, computed at most once for all the strings resolved during a publishing.
+ *
+ * {@link Run#getEnvironment(TaskListener)} runs every {@link hudson.model.EnvironmentContributor}, some of which make
+ * remote calls, so it is too expensive to be called for every report directory, pattern and title.
+ */
+@Restricted(NoExternalUse.class)
+public final class BuildEnvironment {
+
+    private final Run<?, ?> build;
+
+    private final TaskListener listener;
+
+    private EnvVars envVars;
+
+    private Exception failure;
+
+    public BuildEnvironment(Run<?, ?> build, TaskListener listener) {
+        this.build = build;
+        this.listener = listener;
+    }
+
+    public Run<?, ?> getBuild() {
+        return this.build;
+    }
+
+    /**
+     * @return the environment of the build, computed on the first call
+     * @throws Exception if the environment could not be computed, on this or an earlier call
+     */
+    public synchronized EnvVars get() throws Exception {
+        if (this.envVars == null && this.failure == null) {
+            try {
+                this.envVars = this.build.getEnvironment(this.listener);
+            } catch (Exception e) {
+                this.failure = e;
+            }
+        }
+        if (this.failure != null) {
+            throw this.failure;
+        }
+        return this.envVars;
+    }
+
+}
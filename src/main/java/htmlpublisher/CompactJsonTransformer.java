@@ -0,0 +1,74 @@
+package htmlpublisher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Descriptor;
+
+/**
+ * Removes the whitespace between the tokens of pretty-printed JSON files, e.g. the data files of coverage or test
+ * reports. The content of strings is kept as it is, so the files are equivalent JSON.
+ *
+ * The JSON is not parsed, only the whitespace outside of strings is removed, so invalid files are passed through in
+ * the same way. UTF-8 is handled byte by byte, because all bytes of multi-byte characters are above ASCII.
+ */
+public class CompactJsonTransformer extends ReportFileTransformer {
+
+    private static final long serialVersionUID = 1L;
+
+    @DataBoundConstructor
+    public CompactJsonTransformer() {
+    }
+
+    @Override
+    public boolean transforms(String relativePath) {
+        return relativePath.toLowerCase(Locale.ENGLISH).endsWith(".json");
+    }
+
+    @Override
+    public void transform(String relativePath, InputStream in, OutputStream out) throws IOException {
+        InputStream input = new BufferedInputStream(in);
+        OutputStream output = new BufferedOutputStream(out);
+        boolean inString = false;
+        boolean escaped = false;
+        int b;
+        while ((b = input.read()) != -1) {
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                continue;
+            }
+            output.write(b);
+        }
+        output.flush();
+    }
+
+    @Extension
+    @Symbol("compactJson")
+    public static class DescriptorImpl extends Descriptor<ReportFileTransformer> {
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Compact JSON";
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package htmlpublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Descriptor;
+
+/**
+ * Leaves files out of the report by their path, e.g. source maps that are never opened from the report
+ */
+public class DropFilesTransformer extends ReportFileTransformer {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String patterns;
+
+    private transient List<String> splitPatterns;
+
+    /**
+     * @param patterns comma separated Ant patterns of the files to leave out, relative to the report directory
+     */
+    @DataBoundConstructor
+    public DropFilesTransformer(String patterns) {
+        this.patterns = Util.fixEmptyAndTrim(patterns) != null ? patterns.trim() : DescriptorImpl.DEFAULT_PATTERNS;
+    }
+
+    public String getPatterns() {
+        return this.patterns;
+    }
+
+    @Override
+    public boolean drops(String relativePath) {
+        if (this.splitPatterns == null) {
+            List<String> split = new ArrayList<>();
+            for (String pattern : this.patterns.split("\\s*,\\s*")) {
+                if (!pattern.isEmpty()) {
+                    split.add(pattern);
+                }
+            }
+            this.splitPatterns = split;
+        }
+        for (String pattern : this.splitPatterns) {
+            if (SelectorUtils.matchPath(pattern, relativePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Extension
+    @Symbol("dropFiles")
+    public static class DescriptorImpl extends Descriptor<ReportFileTransformer> {
+
+        public static final String DEFAULT_PATTERNS = "**/*.map";
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Drop files";
+        }
+    }
+
+}
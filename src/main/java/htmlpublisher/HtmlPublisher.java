@@ -43,18 +43,31 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import htmlpublisher.util.PruningGlobDirScanner;
+import htmlpublisher.util.ReportBudgetExceededException;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.DirScanner;
+import hudson.util.NamingThreadFactory;
 import jenkins.util.SystemProperties;
 import org.apache.commons.lang3.StringUtils;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
-import org.kohsuke.accmod.restrictions.suppressions.SuppressRestrictedWarnings;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 
+import hudson.AbortException;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
@@ -71,6 +84,7 @@ import hudson.model.Job;
 import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.slaves.WorkspaceList;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
@@ -82,7 +96,6 @@ import jenkins.model.Jenkins;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
 
-import htmlpublisher.util.MultithreadedFileCopyHelper;
 import jenkins.util.Timer;
 
 import static hudson.Functions.htmlAttributeEscape;
@@ -105,6 +118,44 @@ public class HtmlPublisher extends Recorder {
      * Set timeout when publishing multithreaded
      */
     static /*almost final*/ int PUBLISH_WORKER_TIMEOUT = SystemProperties.getInteger(HtmlPublisher.class.getName() + ".PUBLISH_WORKER_TIMEOUT", 300);
+
+    /**
+     * Streams the files of all copy workers through a single pipe when copying from agents
+     */
+    static /*almost final*/ boolean PUBLISH_MULTIPLEXED = SystemProperties.getBoolean(HtmlPublisher.class.getName() + ".PUBLISH_MULTIPLEXED", false);
+
+    /**
+     * Copies from agents in a single call also without copy workers, which finds the index pages while copying, so
+     * reports are shown while they are copied. Otherwise only copies with several workers use a single call.
+     */
+    static /*almost final*/ boolean PUBLISH_SINGLE_CALL = SystemProperties.getBoolean(HtmlPublisher.class.getName() + ".PUBLISH_SINGLE_CALL", false);
+
+    /**
+     * Maximum number of copy workers shared by all targets of a publishing
+     */
+    static /*almost final*/ int PUBLISH_WORKER_BUDGET = SystemProperties.getInteger(HtmlPublisher.class.getName() + ".PUBLISH_WORKER_BUDGET", 10);
+
+    /**
+     * Writes the manifest with the hashes of the report files, see {@link ReportManifest}
+     */
+    static /*almost final*/ boolean WRITE_MANIFEST = SystemProperties.getBoolean(HtmlPublisher.class.getName() + ".WRITE_MANIFEST", true);
+
+    /**
+     * Overrides the global configuration of the newest builds whose reports are kept as they are, if set,
+     * see {@link HtmlPublisherConfiguration#getRawReportBuilds()}
+     */
+    static /*almost final*/ Integer RAW_REPORT_BUILDS = SystemProperties.getInteger(HtmlPublisher.class.getName() + ".RAW_REPORT_BUILDS", null);
+
+    /**
+     * Overrides the global configuration of the newest builds whose reports are kept at all, if set,
+     * see {@link HtmlPublisherConfiguration#getKeepReportBuilds()}
+     */
+    static /*almost final*/ Integer KEEP_REPORT_BUILDS = SystemProperties.getInteger(HtmlPublisher.class.getName() + ".KEEP_REPORT_BUILDS", null);
+
+    /**
+     * Maximum number of bytes read and written per second when compacting reports, unlimited if 0
+     */
+    static /*almost final*/ long LIFECYCLE_BYTES_PER_SECOND = SystemProperties.getLong(HtmlPublisher.class.getName() + ".LIFECYCLE_BYTES_PER_SECOND", 20L * 1024 * 1024);
     
     private final List<HtmlPublisherTarget> reportTargets;
 
@@ -162,10 +213,15 @@ public class HtmlPublisher extends Recorder {
     }
 
     protected static String resolveParametersInString(Run<?, ?> build, TaskListener listener, String input) {
+        return resolveParametersInString(new BuildEnvironment(build, listener), listener, input);
+    }
+
+    @Restricted(NoExternalUse.class)
+    protected static String resolveParametersInString(BuildEnvironment environment, TaskListener listener, String input) {
         PrintStream logger = listener.getLogger();
-        if (build instanceof AbstractBuild) {
+        if (environment.getBuild() instanceof AbstractBuild) {
             try {
-                return build.getEnvironment(listener).expand(input);
+                return expand(environment, input);
             } catch (Exception e) {
                 logger.println("Failed to resolve parameters in string \"" +
                         input + "\" due to following error:\n" + e.getMessage());
@@ -180,7 +236,7 @@ public class HtmlPublisher extends Recorder {
                 logger.println("Please use a Groovy mechanism to evaluate the string.");
             }
             try {
-                return build.getEnvironment(listener).expand(input);
+                return expand(environment, input);
             } catch (Exception e) {
                 logger.println("Failed to resolve parameters in string \"" +
                         input + "\" due to following error:\n" + e.getMessage());
@@ -191,6 +247,14 @@ public class HtmlPublisher extends Recorder {
         return input;
     }
 
+    private static String expand(BuildEnvironment environment, String input) throws Exception {
+        if (input == null || input.indexOf('$') < 0) {
+            // Nothing to expand, so there is no need for the environment
+            return input;
+        }
+        return environment.get().expand(input);
+    }
+
     protected static String resolveParametersInString(EnvVars envVars, TaskListener listener, String input) {
         try {
             return envVars.expand(input);
@@ -233,140 +297,469 @@ public class HtmlPublisher extends Recorder {
         }
 
 
-        for (int i=0; i < reportTargets.size(); i++) {
-            // Create an array of lines we will eventually write out, initially the header.
-            List<String> reportLines = new ArrayList<>(headerLines);
-            reportLines.add("<script type=\"text/javascript\" src=\"" + getStaticResourcesUrl() + "/plugin/htmlpublisher/js/htmlpublisher.js\"></script>");
-            HtmlPublisherTarget reportTarget = reportTargets.get(i);
-            boolean keepAll = reportTarget.getKeepAll();
-            boolean allowMissing = reportTarget.getAllowMissing();
+        // The environment is computed once, for all the strings resolved for all targets
+        BuildEnvironment environment = new BuildEnvironment(build, listener);
+
+        // Resolve all targets in order, stopping at the first one that cannot be published
+        boolean bufferLog = reportTargets.size() > 1;
+        List<ReportPublication> publications = new ArrayList<>();
+        for (HtmlPublisherTarget reportTarget : reportTargets) {
+            ReportPublication publication = preparePublication(build, workspace, environment, listener, reportTarget, bufferLog);
+
+            String levelString = reportTarget.getKeepAll() ? "BUILD" : "PROJECT";
+            publication.listener.getLogger().println("[htmlpublisher] Archiving at " + levelString + " level " + publication.describeSource() + " to " + publication.targetDir.getName());
 
-            FilePath archiveDir = workspace.child(resolveParametersInString(build, listener, reportTarget.getReportDir()));
-            FilePath targetDir = reportTarget.getArchiveTarget(build);
+            if (!reportTarget.getKeepAll() && publication.shard == null) {
+                // The earlier report is shown until the new one is complete, so it is not shown early
+                publication.stage();
+            } else if (publication.shard == null) {
+                // A report assembled from shards is only shown once all shards have arrived
+                publication.earlyPublisher = indexFiles -> publishEarly(build, environment, publication, headerLines, footerLines, indexFiles);
+            }
 
-            String levelString = keepAll ? "BUILD" : "PROJECT";
-            logger.println("[htmlpublisher] Archiving at " + levelString + " level " + archiveDir + " to " + targetDir.getName());
+            publications.add(publication);
+            if (!publication.checkArchiveDir()) {
+                break;
+            }
+        }
 
+        try {
+            // Copy the targets concurrently, then report them in order
             try {
-                if (!archiveDir.exists()) {
-                    if (!allowMissing) {
-                        listener.error("Specified HTML directory '" + archiveDir + "' does not exist.");
-                        build.setResult(Result.FAILURE);
-                        return true;
+                copyReports(publications);
+            } catch (InterruptedException e) {
+                // Cancelled, e.g. by aborting the build. Show what has been cancelled and cleaned up
+                for (ReportPublication publication : publications) {
+                    try {
+                        publication.flushLog(logger);
+                    } catch (IOException flushFailure) {
+                        // The log of the target is lost
                     }
-
-                    logger.println("[htmlpublisher] Specified HTML directory '" + archiveDir + "' does not exist.");
                 }
+                throw e;
+            }
 
-                if (!keepAll) {
-                    // We are only keeping one copy at the project level, so remove the old one.
-                    targetDir.deleteRecursive();
+            for (int i = 0; i < publications.size(); i++) {
+                ReportPublication publication = publications.get(i);
+                try {
+                    publication.flushLog(logger);
+                } catch (IOException e) {
+                    // The log of the target is lost, but the report itself is not affected
                 }
-                int copied = 0;
-                if (FOLLOW_SYMLINKS) {
-                    copied = archiveDir.copyRecursiveTo(reportTarget.getIncludes(), targetDir);
-                } else {
-                	int numberOfWorkers = reportTarget.getNumberOfWorkers();
-                	DirScanner dirScanner = dirScannerGlob(reportTarget.getIncludes(), null, true, LinkOption.NOFOLLOW_LINKS);
-                	if (numberOfWorkers <= 1) {
-                		logger.println("[htmlpublisher] Copying recursive using current thread");
-                        copied = archiveDir.copyRecursiveTo(dirScanner, targetDir, reportTarget.getIncludes());
-                	} else {
-                		logger.println("[htmlpublisher] Copying recursive using " + numberOfWorkers + " workers");
-                		copied = MultithreadedFileCopyHelper.copyRecursiveTo(
-                				archiveDir, dirScanner, targetDir, reportTarget.getIncludes(), numberOfWorkers, Timer.get(), PUBLISH_WORKER_TIMEOUT, listener);
-                	}
+                if (!publishReport(build, environment, listener, publication, headerLines, footerLines)) {
+                    for (ReportPublication skipped : publications.subList(i + 1, publications.size())) {
+                        skipped.discard();
+                    }
+                    return true;
                 }
-                if (copied == 0) {
-                    if (!allowMissing) {
-                        listener.error("Directory '" + archiveDir + "' exists but failed copying to '" + targetDir.getName() + "'.");
-                        final Result buildResult = build.getResult();
-                        if (buildResult != null && buildResult.isBetterOrEqualTo(Result.UNSTABLE)) {
-                            listener.error("This is especially strange since your build otherwise succeeded.");
-                        }
-                        build.setResult(Result.FAILURE);
-                        return true;
-                    } else {
-                        continue;
+            }
+            return true;
+        } finally {
+            // The project level reports are not published by this build anymore
+            for (ReportPublication publication : publications) {
+                publication.release();
+            }
+        }
+    }
+
+    /**
+     * Starts publishing the report of a target while the build is still writing it. Every {@code intervalSeconds}
+     * the files that have changed since the last update are copied, until the publishing is sealed.
+     *
+     * @return the live publishing, which must be sealed once the build has written the report
+     */
+    @Restricted(NoExternalUse.class)
+    public static LivePublishing startLivePublishing(Run<?, ?> build, FilePath workspace, TaskListener listener,
+            HtmlPublisherTarget reportTarget, int intervalSeconds) throws IOException, InterruptedException {
+        List<String> headerLines = readFile(HEADER, HtmlPublisher.class);
+        List<String> footerLines = readFile(FOOTER, HtmlPublisher.class);
+
+        if (reportTarget.getShard() != null) {
+            throw new AbortException("A report assembled from shards cannot be published live: " + reportTarget.getReportName());
+        }
+        if (reportTarget.getFromArtifacts()) {
+            throw new AbortException("A report copied from the artifacts cannot be published live: " + reportTarget.getReportName());
+        }
+        BuildEnvironment environment = new BuildEnvironment(build, listener);
+        ReportPublication publication = preparePublication(build, workspace, environment, listener, reportTarget, false);
+
+        String levelString = reportTarget.getKeepAll() ? "BUILD" : "PROJECT";
+        listener.getLogger().println("[htmlpublisher] Archiving live at " + levelString + " level " + publication.archiveDir + " to "
+                + publication.targetDir.getName() + ", updated every " + intervalSeconds + " s");
+
+        LivePublishing live = new LivePublishing(build, environment, listener, publication, headerLines, footerLines);
+        live.start(intervalSeconds);
+        return live;
+    }
+
+    /**
+     * Resolves the directories and index page patterns of a target
+     */
+    private static ReportPublication preparePublication(Run<?, ?> build, FilePath workspace, BuildEnvironment environment,
+            TaskListener listener, HtmlPublisherTarget reportTarget, boolean bufferLog) {
+        ReportPublication publication = new ReportPublication(build, reportTarget, listener, bufferLog);
+        publication.reportDir = resolveParametersInString(environment, publication.listener, reportTarget.getReportDir());
+        if (reportTarget.getFromArtifacts()) {
+            publication.artifactsDir = build.getArtifactManager().root().child(publication.reportDir);
+        }
+        publication.archiveDir = workspace.child(publication.reportDir);
+        publication.tempDir = WorkspaceList.tempDir(workspace);
+        publication.targetDir = reportTarget.getArchiveTarget(build);
+        publication.reportFiles = resolveParametersInString(environment, publication.listener, reportTarget.getReportFiles());
+        String shard = reportTarget.getShard();
+        if (shard != null) {
+            publication.shard = new ShardAssembly(new File(publication.targetDir.getRemote()),
+                    resolveParametersInString(environment, publication.listener, shard), reportTarget.getShards(),
+                    reportTarget.getShardLayout());
+            publication.targetDir = new FilePath(publication.shard.getCopyTarget());
+        }
+        return publication;
+    }
+
+    /**
+     * Copies the report directories of the targets. Targets with the same report directory and includes share a
+     * single scan of the directory, and all targets share a budget of {@link #PUBLISH_WORKER_BUDGET} copy workers.
+     */
+    private static void copyReports(List<ReportPublication> publications) throws InterruptedException {
+        // The last target may have stopped the publishing, it is reported without copying
+        List<ReportPublication> copies = new ArrayList<>();
+        for (ReportPublication publication : publications) {
+            if (publication.failure == null && (publication.archiveDirExists || publication.target.getAllowMissing())) {
+                copies.add(publication);
+            }
+        }
+        if (copies.isEmpty()) {
+            return;
+        }
+        if (copies.size() == 1) {
+            copies.get(0).copy(Timer.get(), Integer.MAX_VALUE);
+            return;
+        }
+
+        Map<String, List<ReportPublication>> groups = new LinkedHashMap<>();
+        for (ReportPublication publication : copies) {
+            groups.computeIfAbsent(publication.getScanKey(), k -> new ArrayList<>()).add(publication);
+        }
+
+        int workerBudget = Math.max(1, PUBLISH_WORKER_BUDGET);
+        Semaphore workers = new Semaphore(workerBudget, true);
+        ExecutorService copyExecutor = Executors.newCachedThreadPool(
+                new NamingThreadFactory(new DaemonThreadFactory(), "HtmlPublisher copy"));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<ReportPublication> group : groups.values()) {
+                futures.add(copyExecutor.submit((Callable<Void>) () -> {
+                    ReportPublication primary = group.get(0);
+                    int permits = primary.getRequiredWorkers(workerBudget);
+                    workers.acquire(permits);
+                    try {
+                        primary.copy(copyExecutor, permits);
+                    } finally {
+                        workers.release(permits);
+                    }
+                    for (ReportPublication publication : group.subList(1, group.size())) {
+                        publication.copyFrom(primary);
                     }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // Failures of the copy are recorded in the publication
                 }
-            } catch (Exception e) {
-                if (e instanceof IOException) {
-                    Util.displayIOException((IOException) e, listener);
+            }
+        } catch (InterruptedException e) {
+            // Cancel all copies and wait for them to clean up
+            copyExecutor.shutdownNow();
+            copyExecutor.awaitTermination(PUBLISH_WORKER_TIMEOUT, TimeUnit.SECONDS);
+            throw e;
+        } finally {
+            copyExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reports the outcome of the copy of a target and writes its wrapper file
+     * @return False if the publishing must stop at this target
+     */
+    static boolean publishReport(Run<?, ?> build, BuildEnvironment environment, TaskListener listener, ReportPublication publication,
+            List<String> headerLines, List<String> footerLines) {
+        HtmlPublisherTarget reportTarget = publication.target;
+        boolean allowMissing = reportTarget.getAllowMissing();
+        FilePath targetDir = publication.targetDir;
+
+        if (publication.getSupersededBy() > 0) {
+            publication.withdrawAction();
+            publication.discardStaging();
+            logSuperseded(listener, publication);
+            return true;
+        }
+        if (publication.failure != null) {
+            publication.withdrawAction();
+            publication.discardStaging();
+            Exception e = publication.failure;
+            ReportBudgetExceededException exceeded = ReportPublication.findBudgetExceeded(e);
+            if (exceeded != null) {
+                listener.error("Report '" + reportTarget.getReportName() + "' not published: " + exceeded.getMessage());
+                build.setResult(Result.FAILURE);
+                return false;
+            }
+            if (e instanceof IOException) {
+                Util.displayIOException((IOException) e, listener);
+            }
+            e.printStackTrace(listener.fatalError("HTML Publisher failure"));
+            build.setResult(Result.FAILURE);
+            return false;
+        }
+        if (!publication.archiveDirExists && !allowMissing) {
+            listener.error("Specified HTML directory '" + publication.describeSource() + "' does not exist.");
+            build.setResult(Result.FAILURE);
+            return false;
+        }
+        if (publication.copied == 0) {
+            if (!allowMissing) {
+                publication.discardStaging();
+                FilePath reportDir = publication.liveDir != null ? publication.liveDir : targetDir;
+                listener.error("Directory '" + publication.describeSource() + "' exists but failed copying to '" + reportDir.getName() + "'.");
+                final Result buildResult = build.getResult();
+                if (buildResult != null && buildResult.isBetterOrEqualTo(Result.UNSTABLE)) {
+                    listener.error("This is especially strange since your build otherwise succeeded.");
                 }
-                e.printStackTrace(listener.fatalError("HTML Publisher failure"));
                 build.setResult(Result.FAILURE);
-                return true;
+                return false;
+            } else if (publication.liveDir != null) {
+                // Like a report copied into place, the missing report replaces the earlier one
+                return swapStaging(build, listener, publication, null);
+            } else {
+                // A missing shard still counts as arrived, so the other shards are shown
+                return publication.shard == null || publishShard(build, environment, listener, publication, headerLines, footerLines);
             }
+        }
+
+        if (publication.truncation != null) {
+            listener.getLogger().println("[htmlpublisher] WARNING: Report '" + reportTarget.getReportName() + "' truncated: " + publication.truncation);
+        }
+        if (publication.shard != null) {
+            return publishShard(build, environment, listener, publication, headerLines, footerLines);
+        }
+        if (publication.liveDir == null) {
+            writeSidecars(publication);
+        }
 
-            // Index files might be a list of ant patterns, e.g. "**/*index.html,**/*otherFile.html"
-            // So split them and search for files within the archive directory that match that pattern
-            List<String> csvReports = new ArrayList<>();
+        // Index files might be a list of ant patterns, e.g. "**/*index.html,**/*otherFile.html"
+        // So split them and search for files within the archive directory that match that pattern,
+        // unless they have already been matched while scanning the files to copy
+        List<String> csvReports = new ArrayList<>();
+        if (publication.indexFiles != null) {
+            csvReports.addAll(publication.indexFiles);
+        } else {
             File targetDirFile = new File(targetDir.getRemote());
-            String[] splitPatterns = resolveParametersInString(build, listener, reportTarget.getReportFiles()).split(",");
+            String[] splitPatterns = publication.reportFiles.split(",");
             for (String pattern : splitPatterns) {
                 FileSet fs = Util.createFileSet(targetDirFile, pattern);
                 csvReports.addAll(Arrays.asList(fs.getDirectoryScanner().getIncludedFiles()));
             }
+        }
 
-            String[] titles = null;
-            if (reportTarget.getReportTitles() != null && reportTarget.getReportTitles().trim().length() > 0 ) {
-                titles = reportTarget.getReportTitles().trim().split("\\s*,\\s*");
-                for (int j = 0; j < titles.length; j++) {
-                    titles[j] = resolveParametersInString(build, listener, titles[j]);
-                }
-            }
+        writeWrapper(build, environment, listener, publication, headerLines, footerLines, csvReports);
+        if (publication.liveDir != null) {
+            // The report and its wrapper file are complete, so they replace the earlier report
+            return swapStaging(build, listener, publication, () -> writeSidecars(publication));
+        }
+        if (reportTarget.getKeepAll()) {
+            storeReport(build, listener, publication);
+        }
+        return true;
+    }
 
-            List<String> reports = new ArrayList<>();
-            for (int j=0; j < csvReports.size(); j++) {
-                String report = csvReports.get(j);
-                report = report.trim();
-                // On windows file paths contains back slashes, but
-                // in the HTML file we do not want them, so replace them with forward slash
-                report = report.replace("\\", "/");
-
-                // Ignore blank report names caused by trailing or double commas.
-                if (report.isEmpty()) {
-                    continue;
-                }
+    /**
+     * Hands a complete report kept for the build to the configured {@link ReportStorage}, if there is one. The report
+     * is kept locally if it cannot be stored.
+     */
+    private static void storeReport(Run<?, ?> build, TaskListener listener, ReportPublication publication) {
+        ReportStorage storage = HtmlPublisherConfiguration.getReportStorageOrNull();
+        if (storage == null) {
+            return;
+        }
+        File reportDir = new File(publication.targetDir.getRemote());
+        try {
+            storage.store(build, reportDir.getName(), reportDir, listener);
+            StoredReport.write(reportDir, build.getExternalizableId(), storage);
+            ReportTrash.delete(reportDir);
+        } catch (IOException e) {
+            Util.displayIOException(e, listener);
+            e.printStackTrace(listener.error("[htmlpublisher] Could not store report '" + publication.target.getReportName() + "', it is kept locally"));
+        } catch (InterruptedException e) {
+            listener.getLogger().println("[htmlpublisher] Storing report '" + publication.target.getReportName() + "' interrupted, it is kept locally");
+            Thread.currentThread().interrupt();
+        }
+    }
 
-                reports.add(report);
-                String tabNo = "tab" + (j + 1);
-                // Make the report name the filename without the extension.
-                int end = report.lastIndexOf('.');
-                String reportFile;
-                if (end > 0) {
-                    reportFile = report.substring(0, end);
-                } else {
-                    reportFile = report;
-                }
-                String tabItem = "<li id=\"" + tabNo + "\" class=\"unselected\" value=\"" + htmlAttributeEscape(report) + "\">" + htmlAttributeEscape(getTitle(reportFile, titles, j)) + "</li>";
-                reportLines.add(tabItem);
+    /**
+     * Writes the manifest and the truncation marker next to the report directory
+     */
+    private static void writeSidecars(ReportPublication publication) {
+        if (publication.truncation != null) {
+            publication.writeTruncation();
+        }
+        if (WRITE_MANIFEST) {
+            publication.writeManifest();
+        }
+    }
+
+    private static void logSuperseded(TaskListener listener, ReportPublication publication) {
+        listener.getLogger().println("[htmlpublisher] Report '" + publication.target.getReportName() + "' not published at project level, build #"
+                + publication.getSupersededBy() + " publishes a newer one");
+    }
+
+    /**
+     * Replaces the project level report with the staging directory of the publication, unless a newer build publishes it
+     * @param sidecars writes the files next to the report once it is replaced, may be null
+     * @return False if the publishing must stop at this target
+     */
+    private static boolean swapStaging(Run<?, ?> build, TaskListener listener, ReportPublication publication, Runnable sidecars) {
+        try {
+            if (!publication.swap(sidecars)) {
+                publication.withdrawAction();
+                publication.discardStaging();
+                logSuperseded(listener, publication);
             }
-            // Add the JS to change the link as appropriate.
-            String hudsonUrl = StringUtils.defaultString(Jenkins.get().getRootUrl());
-            Job job = build.getParent();
-            reportLines.add("<span class=\"links-data-holder\" data-back-to-name=\"" + htmlAttributeEscape(job.getName()) + "\" data-root-url=\"" +
-                    htmlAttributeEscape(hudsonUrl) + "\" data-job-url=\"" + htmlAttributeEscape(job.getUrl()) + "\" data-zip-link=\"" + htmlAttributeEscape(StringUtils.defaultString(reportTarget.getSanitizedName())) + "\"/>");
-            // Now add the footer.
-            reportLines.addAll(footerLines);
-            // And write this as the index
-            File outputFile = new File(targetDir.getRemote(), reportTarget.getWrapperName());
+            return true;
+        } catch (IOException e) {
+            publication.withdrawAction();
+            publication.discardStaging();
+            Util.displayIOException(e, listener);
+            e.printStackTrace(listener.fatalError("HTML Publisher failure"));
+            build.setResult(Result.FAILURE);
+            return false;
+        }
+    }
+
+    /**
+     * Records the arrival of a shard of the report, and writes the wrapper file once all shards have arrived
+     * @return False if the publishing must stop at this target
+     */
+    private static boolean publishShard(Run<?, ?> build, BuildEnvironment environment, TaskListener listener,
+            ReportPublication publication, List<String> headerLines, List<String> footerLines) {
+        ShardAssembly shard = publication.shard;
+        String reportName = publication.target.getReportName();
+        synchronized (shard.getLock()) {
+            List<String> indexFiles;
+            int missingShards;
             try {
-                if(archiveDir.exists()) {
-                    String checksum = writeFile(reportLines, outputFile);
-                    reportTarget.handleAction(build, checksum);
-                }
+                indexFiles = shard.arrive(publication.reportFiles);
+                missingShards = shard.getMissingShards();
             } catch (IOException e) {
-                logger.println("Error: IOException occurred writing report to file " + outputFile.getName() + " to archiveDir:" + archiveDir.getName() + ", error:" + e.getMessage().replace(outputFile.getParent(), ""));
-            } catch (NoSuchAlgorithmException e) {
-                // cannot happen because SHA-1 is guaranteed to exist
-                logger.println("Error: NoSuchAlgorithmException occurred writing report to file " + outputFile.getName() + " to archiveDir:" + archiveDir.getName() + ", error:" + e.getMessage().replace(outputFile.getParent(), ""));
+                Util.displayIOException(e, listener);
+                e.printStackTrace(listener.fatalError("HTML Publisher failure"));
+                build.setResult(Result.FAILURE);
+                return false;
+            }
+            if (indexFiles == null) {
+                listener.getLogger().println("[htmlpublisher] Shard '" + shard.getShard() + "' of '" + reportName
+                        + "' published, waiting for " + missingShards + " more shard(s)");
+                return true;
+            }
+
+            listener.getLogger().println("[htmlpublisher] All " + shard.getShards() + " shards of '" + reportName + "' published");
+            // The wrapper file is written for the whole report, replacing the action of an earlier assembly
+            publication.targetDir = new FilePath(shard.getReportDir());
+            // The report directory holds the other shards, even if the directory of this one is missing
+            publication.archiveDirExists = shard.getReportDir().isDirectory();
+            publication.action = publication.target.findAction(build);
+            if (WRITE_MANIFEST) {
+                // The shards have been copied separately, so the assembled report is hashed as a whole
+                publication.hashes = null;
+                publication.writeManifest();
             }
+            writeWrapper(build, environment, listener, publication, headerLines, footerLines, indexFiles);
         }
         return true;
     }
 
+    /**
+     * Writes the wrapper file while the remaining files of the report are still being copied, as soon as the index
+     * pages and the files they reference have been copied
+     */
+    static void publishEarly(Run<?, ?> build, BuildEnvironment environment, ReportPublication publication,
+            List<String> headerLines, List<String> footerLines, List<String> indexFiles) {
+        publication.listener.getLogger().println("[htmlpublisher] Index pages of '" + publication.target.getReportName()
+                + "' copied, the report is available while copying the remaining files");
+        writeWrapper(build, environment, publication.listener, publication, headerLines, footerLines, indexFiles);
+    }
+
+    /**
+     * Writes the wrapper file with a tab per index page and attaches the action of the report
+     */
+    static void writeWrapper(Run<?, ?> build, BuildEnvironment environment, TaskListener listener, ReportPublication publication,
+            List<String> headerLines, List<String> footerLines, List<String> csvReports) {
+        PrintStream logger = listener.getLogger();
+        HtmlPublisherTarget reportTarget = publication.target;
+        FilePath archiveDir = publication.archiveDir;
+        FilePath targetDir = publication.targetDir;
+
+        // Create an array of lines we will eventually write out, initially the header.
+        List<String> reportLines = new ArrayList<>(headerLines);
+        reportLines.add("<script type=\"text/javascript\" src=\"" + getStaticResourcesUrl() + "/plugin/htmlpublisher/js/htmlpublisher.js\"></script>");
+
+        String[] titles = null;
+        if (reportTarget.getReportTitles() != null && reportTarget.getReportTitles().trim().length() > 0 ) {
+            titles = reportTarget.getReportTitles().trim().split("\\s*,\\s*");
+            for (int j = 0; j < titles.length; j++) {
+                titles[j] = resolveParametersInString(environment, listener, titles[j]);
+            }
+        }
+
+        List<String> reports = new ArrayList<>();
+        for (int j=0; j < csvReports.size(); j++) {
+            String report = csvReports.get(j);
+            report = report.trim();
+            // On windows file paths contains back slashes, but
+            // in the HTML file we do not want them, so replace them with forward slash
+            report = report.replace("\\", "/");
+
+            // Ignore blank report names caused by trailing or double commas.
+            if (report.isEmpty()) {
+                continue;
+            }
+
+            reports.add(report);
+            String tabNo = "tab" + (j + 1);
+            // Make the report name the filename without the extension.
+            int end = report.lastIndexOf('.');
+            String reportFile;
+            if (end > 0) {
+                reportFile = report.substring(0, end);
+            } else {
+                reportFile = report;
+            }
+            String tabItem = "<li id=\"" + tabNo + "\" class=\"unselected\" value=\"" + htmlAttributeEscape(report) + "\">" + htmlAttributeEscape(getTitle(reportFile, titles, j)) + "</li>";
+            reportLines.add(tabItem);
+        }
+        // Add the JS to change the link as appropriate.
+        String hudsonUrl = StringUtils.defaultString(Jenkins.get().getRootUrl());
+        Job job = build.getParent();
+        reportLines.add("<span class=\"links-data-holder\" data-back-to-name=\"" + htmlAttributeEscape(job.getName()) + "\" data-root-url=\"" +
+                htmlAttributeEscape(hudsonUrl) + "\" data-job-url=\"" + htmlAttributeEscape(job.getUrl()) + "\" data-zip-link=\"" + htmlAttributeEscape(StringUtils.defaultString(reportTarget.getSanitizedName())) + "\"/>");
+        // Now add the footer.
+        reportLines.addAll(footerLines);
+        // And write this as the index
+        File outputFile = new File(targetDir.getRemote(), reportTarget.getWrapperName());
+        try {
+            if (publication.archiveDirExists) {
+                String checksum = writeFile(reportLines, outputFile);
+                publication.action = reportTarget.handleAction(build, checksum, publication.action);
+            }
+        } catch (IOException e) {
+            logger.println("Error: IOException occurred writing report to file " + outputFile.getName() + " to archiveDir:" + archiveDir.getName() + ", error:" + e.getMessage().replace(outputFile.getParent(), ""));
+        } catch (NoSuchAlgorithmException e) {
+            // cannot happen because SHA-1 is guaranteed to exist
+            logger.println("Error: NoSuchAlgorithmException occurred writing report to file " + outputFile.getName() + " to archiveDir:" + archiveDir.getName() + ", error:" + e.getMessage().replace(outputFile.getParent(), ""));
+        }
+    }
+
     private static String getTitle(String report, String[] titles, int j) {
         if (titles != null && titles.length > j) {
             return titles[j];
@@ -413,9 +806,15 @@ public class HtmlPublisher extends Recorder {
         }
     }
 
-    @SuppressRestrictedWarnings(NoExternalUse.class)
+    /**
+     * Scans the files matching the includes and excludes, without entering directories that cannot hold any of them,
+     * see {@link PruningGlobDirScanner}
+     *
+     * @param openOptions {@link LinkOption#NOFOLLOW_LINKS} to not follow symbolic links
+     */
     public static DirScanner dirScannerGlob(String includes, String excludes, boolean useDefaultExcludes, OpenOption... openOptions) throws Exception {
-        return new DirScanner.Glob(includes, excludes, useDefaultExcludes, openOptions);
+        boolean followLinks = !Arrays.asList(openOptions).contains(LinkOption.NOFOLLOW_LINKS);
+        return new PruningGlobDirScanner(includes, excludes, useDefaultExcludes, followLinks);
     }
 
     @Extension
@@ -0,0 +1,287 @@
+package htmlpublisher;
+
+import java.io.File;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest2;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.Util;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Run;
+import hudson.util.FormValidation;
+import jenkins.model.GlobalConfiguration;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+
+/**
+ * The global settings of the plugin.
+ *
+ * By default, the reports are stored in the {@code htmlreports} directory of their job or build, next to build.xml and
+ * the build log. With a storage root, e.g. on a fast local disk, they are stored in a tree of their own, laid out like
+ * the jobs of Jenkins:
+ *
+ * <pre>
+ * &lt;storage root&gt;/jobs/&lt;folder&gt;/jobs/&lt;job&gt;/htmlreports/&lt;report&gt;
+ * &lt;storage root&gt;/jobs/&lt;folder&gt;/jobs/&lt;job&gt;/builds/&lt;number&gt;/htmlreports/&lt;report&gt;
+ * </pre>
+ *
+ * Reports published before the storage root has been configured are still found in their old location, see
+ * {@link HtmlPublisherTarget}. The reports in the storage root are moved and deleted with their jobs and builds by
+ * {@link ReportStorageListener}. The reports kept for each build can also be stored through a {@link ReportStorage}.
+ *
+ * The reports of older builds are compacted and dropped by the {@link ReportLifecycle}, as configured here unless the
+ * system properties {@link HtmlPublisher#RAW_REPORT_BUILDS} and {@link HtmlPublisher#KEEP_REPORT_BUILDS} are set. The
+ * limits of all reports and the deletion of replaced reports by the {@link ReportTrash} are configured here too.
+ */
+@Extension
+@Symbol("htmlPublisher")
+public class HtmlPublisherConfiguration extends GlobalConfiguration {
+
+    static final String REPORTS_DIR = "htmlreports";
+
+    static final int DEFAULT_TRASH_DELETES_PER_SECOND = 2000;
+
+    private String storageRoot;
+
+    private ReportStorage reportStorage;
+
+    private int rawReportBuilds;
+
+    private int keepReportBuilds;
+
+    private int maxReportFiles;
+
+    private int maxReportSize;
+
+    private int trashDeletesPerSecond = DEFAULT_TRASH_DELETES_PER_SECOND;
+
+    public HtmlPublisherConfiguration() {
+        load();
+    }
+
+    /**
+     * @return the configuration, or null if not running on the controller
+     */
+    @CheckForNull
+    static HtmlPublisherConfiguration getInstance() {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return null;
+        }
+        return ExtensionList.lookup(GlobalConfiguration.class).get(HtmlPublisherConfiguration.class);
+    }
+
+    /**
+     * @return the directory to store the reports in, or null to store them in the directories of the jobs and builds
+     */
+    @CheckForNull
+    public String getStorageRoot() {
+        return this.storageRoot;
+    }
+
+    @DataBoundSetter
+    public void setStorageRoot(String storageRoot) {
+        this.storageRoot = Util.fixEmptyAndTrim(storageRoot);
+        ReportChanges.changed();
+    }
+
+    /**
+     * @return the backend storing the reports kept for each build, or null to keep them in the storage root
+     */
+    @CheckForNull
+    public ReportStorage getReportStorage() {
+        return this.reportStorage;
+    }
+
+    @DataBoundSetter
+    public void setReportStorage(ReportStorage reportStorage) {
+        this.reportStorage = reportStorage;
+        ReportChanges.changed();
+    }
+
+    /**
+     * @return the number of the newest builds of a job whose reports are kept as they are, older ones are compacted,
+     * never if 0
+     */
+    public int getRawReportBuilds() {
+        return this.rawReportBuilds;
+    }
+
+    @DataBoundSetter
+    public void setRawReportBuilds(int rawReportBuilds) {
+        this.rawReportBuilds = Math.max(0, rawReportBuilds);
+    }
+
+    /**
+     * @return the number of the newest builds of a job whose reports are kept at all, older ones are dropped, never if 0
+     */
+    public int getKeepReportBuilds() {
+        return this.keepReportBuilds;
+    }
+
+    @DataBoundSetter
+    public void setKeepReportBuilds(int keepReportBuilds) {
+        this.keepReportBuilds = Math.max(0, keepReportBuilds);
+    }
+
+    /**
+     * @return the maximum number of files of any report, unlimited if 0, in addition to the limit of each target
+     */
+    public int getMaxReportFiles() {
+        return this.maxReportFiles;
+    }
+
+    @DataBoundSetter
+    public void setMaxReportFiles(int maxReportFiles) {
+        this.maxReportFiles = Math.max(0, maxReportFiles);
+    }
+
+    /**
+     * @return the maximum size of any report in MB, unlimited if 0, in addition to the limit of each target
+     */
+    public int getMaxReportSize() {
+        return this.maxReportSize;
+    }
+
+    @DataBoundSetter
+    public void setMaxReportSize(int maxReportSize) {
+        this.maxReportSize = Math.max(0, maxReportSize);
+    }
+
+    /**
+     * @return the maximum number of files and directories of replaced reports deleted per second in the background,
+     * unlimited if 0
+     */
+    public int getTrashDeletesPerSecond() {
+        return this.trashDeletesPerSecond;
+    }
+
+    @DataBoundSetter
+    public void setTrashDeletesPerSecond(int trashDeletesPerSecond) {
+        this.trashDeletesPerSecond = Math.max(0, trashDeletesPerSecond);
+    }
+
+    @Override
+    public boolean configure(StaplerRequest2 req, JSONObject json) throws FormException {
+        // Not submitted if the reports are not stored through a backend
+        this.reportStorage = null;
+        req.bindJSON(this, json);
+        ReportChanges.changed();
+        save();
+        return true;
+    }
+
+    public FormValidation doCheckStorageRoot(@QueryParameter String value) {
+        String path = Util.fixEmptyAndTrim(value);
+        if (path == null) {
+            return FormValidation.ok();
+        }
+        if (!new File(path).isAbsolute()) {
+            return FormValidation.error("The storage root must be an absolute path");
+        }
+        return FormValidation.ok();
+    }
+
+    /**
+     * @return the configured storage root, or null if the reports are stored in the directories of the jobs and builds
+     */
+    @CheckForNull
+    static File getStorageRootDir() {
+        HtmlPublisherConfiguration configuration = getInstance();
+        String storageRoot = configuration != null ? configuration.getStorageRoot() : null;
+        return storageRoot != null ? new File(storageRoot) : null;
+    }
+
+    /**
+     * @return the number of the newest builds whose reports are kept as they are, from the system property if it is set
+     */
+    static int getEffectiveRawReportBuilds() {
+        if (HtmlPublisher.RAW_REPORT_BUILDS != null) {
+            return HtmlPublisher.RAW_REPORT_BUILDS;
+        }
+        HtmlPublisherConfiguration configuration = getInstance();
+        return configuration != null ? configuration.getRawReportBuilds() : 0;
+    }
+
+    /**
+     * @return the number of the newest builds whose reports are kept at all, from the system property if it is set
+     */
+    static int getEffectiveKeepReportBuilds() {
+        if (HtmlPublisher.KEEP_REPORT_BUILDS != null) {
+            return HtmlPublisher.KEEP_REPORT_BUILDS;
+        }
+        HtmlPublisherConfiguration configuration = getInstance();
+        return configuration != null ? configuration.getKeepReportBuilds() : 0;
+    }
+
+    /**
+     * @return the maximum number of files of any report, unlimited if 0 or not running on the controller
+     */
+    static int getConfiguredMaxReportFiles() {
+        HtmlPublisherConfiguration configuration = getInstance();
+        return configuration != null ? configuration.getMaxReportFiles() : 0;
+    }
+
+    /**
+     * @return the maximum size of any report in MB, unlimited if 0 or not running on the controller
+     */
+    static int getConfiguredMaxReportSize() {
+        HtmlPublisherConfiguration configuration = getInstance();
+        return configuration != null ? configuration.getMaxReportSize() : 0;
+    }
+
+    /**
+     * @return the maximum number of files and directories of replaced reports deleted per second, unlimited if 0
+     */
+    static int getConfiguredTrashDeletesPerSecond() {
+        HtmlPublisherConfiguration configuration = getInstance();
+        return configuration != null ? configuration.getTrashDeletesPerSecond() : DEFAULT_TRASH_DELETES_PER_SECOND;
+    }
+
+    /**
+     * @return the configured backend, or null if not running on the controller or no backend is configured
+     */
+    @CheckForNull
+    static ReportStorage getReportStorageOrNull() {
+        HtmlPublisherConfiguration configuration = getInstance();
+        return configuration != null ? configuration.getReportStorage() : null;
+    }
+
+    /**
+     * @return the directory of an item in the storage root
+     */
+    static File getItemDir(File storageRoot, Item item) {
+        ItemGroup<?> parent = item.getParent();
+        File parentDir = parent instanceof Item ? getItemDir(storageRoot, (Item) parent) : storageRoot;
+        return new File(new File(parentDir, "jobs"), item.getName());
+    }
+
+    /**
+     * @return the directory of a build in the storage root
+     */
+    static File getBuildDir(File storageRoot, Run<?, ?> run) {
+        return new File(new File(getItemDir(storageRoot, run.getParent()), "builds"), Integer.toString(run.getNumber()));
+    }
+
+    /**
+     * @return the directory holding the reports of an item, where newly published reports are stored
+     */
+    static File getReportsDir(Item item) {
+        File storageRoot = getStorageRootDir();
+        return new File(storageRoot != null ? getItemDir(storageRoot, item) : item.getRootDir(), REPORTS_DIR);
+    }
+
+    /**
+     * @return the directory holding the reports of a build, where newly published reports are stored
+     */
+    static File getReportsDir(Run<?, ?> run) {
+        File storageRoot = getStorageRootDir();
+        return new File(storageRoot != null ? getBuildDir(storageRoot, run) : run.getRootDir(), REPORTS_DIR);
+    }
+
+}
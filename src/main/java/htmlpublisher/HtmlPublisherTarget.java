@@ -1,6 +1,7 @@
 package htmlpublisher;
 
 import com.infradna.tool.bridge_method_injector.WithBridgeMethods;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.FilePath;
@@ -14,9 +15,11 @@ import hudson.model.Job;
 import hudson.model.ProminentProjectAction;
 import hudson.model.AbstractBuild;
 import hudson.model.InvisibleAction;
+import hudson.model.Item;
 import hudson.model.Descriptor;
 import hudson.util.HttpResponses;
 import jenkins.model.RunAction2;
+import jenkins.util.VirtualFile;
 import org.apache.commons.lang3.StringUtils;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
@@ -24,17 +27,27 @@ import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.StaplerRequest2;
 import org.kohsuke.stapler.StaplerResponse2;
+import org.kohsuke.stapler.interceptor.RequirePOST;
 import org.owasp.encoder.Encode;
 
 import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HexFormat;
+import java.util.List;
 import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import htmlpublisher.util.ZipVirtualFile;
+
 import static hudson.Functions.htmlAttributeEscape;
 
 /**
@@ -44,6 +57,7 @@ import static hudson.Functions.htmlAttributeEscape;
  *
  */
 public class HtmlPublisherTarget extends AbstractDescribableImpl<HtmlPublisherTarget> {
+
     /**
      * The name of the report to display for the build/project, such as "Code Coverage"
      */
@@ -93,14 +107,76 @@ public class HtmlPublisherTarget extends AbstractDescribableImpl<HtmlPublisherTa
 
     public static final String INCLUDE_ALL_PATTERN="**/*";
 
+    private static final String DEFAULT_ICON = "symbol-document-text";
+
+    private static final Pattern UNSAFE_CHARACTERS = Pattern.compile("[^a-zA-Z0-9-]");
+
+    private static final Pattern UNSAFE_CHARACTERS_EXCEPT_UNDERSCORE = Pattern.compile("[^a-zA-Z0-9-_]");
+
     private String includes;
 
+    /**
+     * The pattern for excluding files, in addition to the Ant default excludes
+     */
+    private String excludes;
+
     private Boolean escapeUnderscores;
 
     private Boolean useWrapperFileDirectly;
     
     private int numberOfWorkers = 0;
 
+    /**
+     * If true, an interrupted publishing continues with the files that are still missing, see {@link PublishProgress}.
+     */
+    private boolean resumable;
+
+    /**
+     * The maximum number of files of the report, unlimited if 0, see {@link htmlpublisher.util.ReportBudget}
+     */
+    private int maxFiles;
+
+    /**
+     * The maximum size of the report in MB, unlimited if 0
+     */
+    private int maxSize;
+
+    /**
+     * If true, a report over its limits is published without the files over the limits, instead of failing
+     */
+    private boolean truncateOverLimit;
+
+    /**
+     * The transformers applied to the files of the report while they are copied, in order
+     */
+    private List<ReportFileTransformer> transformers;
+
+    /**
+     * Whether the report directory is read from the archived artifacts of the build, instead of the workspace
+     */
+    private boolean fromArtifacts;
+
+    /**
+     * The name of the part of the report published by this target, if the report is assembled from several shards,
+     * see {@link ShardAssembly}.
+     */
+    private String shard;
+
+    /**
+     * The number of shards the report is assembled from
+     */
+    private int shards;
+
+    /**
+     * How the shards are combined, defaults to {@link ShardLayout#SUBDIRECTORY}
+     */
+    private ShardLayout shardLayout;
+
+    /**
+     * Cache for {@link #getSanitizedName()}, which is called several times for each rendering of a job or build page.
+     */
+    private transient volatile String sanitizedName;
+
     /**
      * @deprecated Use {@link #HtmlPublisherTarget(java.lang.String, java.lang.String, java.lang.String, boolean, boolean, boolean)}.
      */
@@ -179,6 +255,7 @@ public class HtmlPublisherTarget extends AbstractDescribableImpl<HtmlPublisherTa
     @DataBoundSetter
     public void setEscapeUnderscores(boolean escapeUnderscores) {
         this.escapeUnderscores = escapeUnderscores;
+        this.sanitizedName = null;
     }
 
     public Boolean getUseWrapperFileDirectly() {
@@ -202,33 +279,166 @@ public class HtmlPublisherTarget extends AbstractDescribableImpl<HtmlPublisherTa
         this.numberOfWorkers = numberOfWorkers;
     }
 
+    public boolean getResumable() {
+        return this.resumable;
+    }
+
+    @DataBoundSetter
+    public void setResumable(boolean resumable) {
+        this.resumable = resumable;
+    }
+
+    public int getMaxFiles() {
+        return this.maxFiles;
+    }
+
+    @DataBoundSetter
+    public void setMaxFiles(int maxFiles) {
+        this.maxFiles = Math.max(0, maxFiles);
+    }
+
+    /**
+     * @return the maximum size of the report in MB, unlimited if 0
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    @DataBoundSetter
+    public void setMaxSize(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+    }
+
+    public boolean getTruncateOverLimit() {
+        return this.truncateOverLimit;
+    }
+
+    @DataBoundSetter
+    public void setTruncateOverLimit(boolean truncateOverLimit) {
+        this.truncateOverLimit = truncateOverLimit;
+    }
+
+    /**
+     * @return the transformers applied to the files of the report while they are copied, in order
+     */
+    @NonNull
+    public List<ReportFileTransformer> getTransformers() {
+        return this.transformers != null ? Collections.unmodifiableList(this.transformers) : Collections.emptyList();
+    }
+
+    @DataBoundSetter
+    public void setTransformers(List<ReportFileTransformer> transformers) {
+        this.transformers = transformers != null && !transformers.isEmpty() ? new ArrayList<>(transformers) : null;
+    }
+
+    /**
+     * @return whether the report directory is relative to the archived artifacts of the build, which must have been
+     * archived before, see {@link ArtifactsCopy}
+     */
+    public boolean getFromArtifacts() {
+        return this.fromArtifacts;
+    }
+
+    @DataBoundSetter
+    public void setFromArtifacts(boolean fromArtifacts) {
+        this.fromArtifacts = fromArtifacts;
+    }
+
+    /**
+     * @return the name of the shard published by this target, or null if the report is not assembled from shards
+     */
+    @CheckForNull
+    public String getShard() {
+        return this.shard;
+    }
+
+    @DataBoundSetter
+    public void setShard(String shard) {
+        this.shard = Util.fixEmptyAndTrim(shard);
+    }
+
+    public int getShards() {
+        return this.shards;
+    }
+
+    /**
+     * @param shards the number of shards to wait for, before the wrapper file of the report is written
+     */
+    @DataBoundSetter
+    public void setShards(int shards) {
+        this.shards = shards;
+    }
+
+    public ShardLayout getShardLayout() {
+        return this.shardLayout != null ? this.shardLayout : ShardLayout.SUBDIRECTORY;
+    }
+
+    @DataBoundSetter
+    public void setShardLayout(ShardLayout shardLayout) {
+        this.shardLayout = shardLayout;
+    }
+
+    /**
+     * How the shards of a report are combined
+     */
+    public enum ShardLayout {
+        /**
+         * Each shard is stored in a subdirectory named after the shard
+         */
+        SUBDIRECTORY("Subdirectory per shard"),
+        /**
+         * The shards are merged by path, a file already published by another shard is kept
+         */
+        MERGE_KEEP_FIRST("Merge, keep the file of the first shard"),
+        /**
+         * The shards are merged by path, a file already published by another shard fails the shard
+         */
+        MERGE_FAIL_ON_CONFLICT("Merge, fail on conflicting files");
+
+        private final String displayName;
+
+        ShardLayout(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return this.displayName;
+        }
+    }
+
     @DataBoundSetter
     public void setReportTitles(String reportTitles) {
         this.reportTitles = StringUtils.trim(reportTitles);
     }
 
     //Add this for testing purposes
-    public void setReportName(String reportName) {this.reportName = StringUtils.trim(reportName);}
+    public void setReportName(String reportName) {
+        this.reportName = StringUtils.trim(reportName);
+        this.sanitizedName = null;
+    }
 
     public String getSanitizedName() {
-        return sanitizeReportName(this.reportName, getEscapeUnderscores());
+        String name = this.sanitizedName;
+        if (name == null) {
+            name = sanitizeReportName(this.reportName, getEscapeUnderscores());
+            this.sanitizedName = name;
+        }
+        return name;
     }
 
     @Restricted(NoExternalUse.class)
     public static String sanitizeReportName(String reportName, boolean escapeUnderscores) {
-        Pattern p;
-        if (escapeUnderscores) {
-            p = Pattern.compile("[^a-zA-Z0-9-]");
-        } else {
-            p = Pattern.compile("[^a-zA-Z0-9-_]");
+        Matcher m = (escapeUnderscores ? UNSAFE_CHARACTERS : UNSAFE_CHARACTERS_EXCEPT_UNDERSCORE).matcher(reportName);
+        if (!m.find()) {
+            // Nothing to escape, which is the common case
+            return reportName;
         }
-        Matcher m = p.matcher(reportName);
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder(reportName.length() + 16);
         HexFormat hex = HexFormat.of();
-        while (m.find()) {
+        do {
             String match = m.group();
             m.appendReplacement(sb, "_" + hex.formatHex(match.getBytes(StandardCharsets.UTF_8)));
-        }
+        } while (m.find());
         m.appendTail(sb);
         return sb.toString();
     }
@@ -237,29 +447,53 @@ public class HtmlPublisherTarget extends AbstractDescribableImpl<HtmlPublisherTa
         return WRAPPER_NAME;
     }
 
+    /**
+     * Gets the directory the report of the given build is published to, in the storage root if there is one, see
+     * {@link HtmlPublisherConfiguration#getStorageRoot()}
+     */
     public FilePath getArchiveTarget(Run build) {
-        return new FilePath(this.keepAll ? getBuildArchiveDir(build) : getProjectArchiveDir(build.getParent()));
+        File reportsDir = this.keepAll ? HtmlPublisherConfiguration.getReportsDir(build) : HtmlPublisherConfiguration.getReportsDir(build.getParent());
+        return new FilePath(new File(reportsDir, getSanitizedName()));
     }
 
     /**
      * Gets the directory where the HTML report is stored for the given project.
      */
-    private File getProjectArchiveDir(AbstractItem project) {
-        return getProjectArchiveDir(project, getSanitizedName());
+    private ResolvedDir getProjectArchiveDir(AbstractItem project, ResolvedDir cached) {
+        long generation = ReportChanges.get();
+        if (cached != null && cached.matches(project, generation)) {
+            return cached;
+        }
+        return ResolvedDir.resolve(project, generation, new File(HtmlPublisherConfiguration.getReportsDir(project), getSanitizedName()),
+                getLegacyArchiveDir(project.getRootDir()));
     }
 
-    private File getProjectArchiveDir(AbstractItem project, String dirName) {
-        return new File(new File(project.getRootDir(), "htmlreports"), dirName);
+    /**
+     * @return the directory of the report at project level before the storage root has been configured, if it differs
+     */
+    /* package */ File getLegacyProjectArchiveDir(AbstractItem project) {
+        File legacyDir = getLegacyArchiveDir(project.getRootDir());
+        return legacyDir.equals(new File(HtmlPublisherConfiguration.getReportsDir(project), getSanitizedName())) ? null : legacyDir;
     }
+
     /**
      * Gets the directory where the HTML report is stored for the given build.
      */
-    private File getBuildArchiveDir(Run run) {
-        return getBuildArchiveDir(run, getSanitizedName());
+    private ResolvedDir getBuildArchiveDir(Run run, ResolvedDir cached) {
+        long generation = ReportChanges.get();
+        if (cached != null && cached.matches(run, generation)) {
+            return cached;
+        }
+        return ResolvedDir.resolve(run, generation, new File(HtmlPublisherConfiguration.getReportsDir(run), getSanitizedName()),
+                getLegacyArchiveDir(run.getRootDir()));
     }
 
-    private File getBuildArchiveDir(Run run, String dirName) {
-        return new File(new File(run.getRootDir(), "htmlreports"), dirName);
+    /**
+     * @return the directory of the report in the directory of its job or build, where it has been published before the
+     * storage root has been configured
+     */
+    private File getLegacyArchiveDir(File rootDir) {
+        return new File(new File(rootDir, HtmlPublisherConfiguration.REPORTS_DIR), getSanitizedName());
     }
 
     protected abstract class BaseHTMLAction implements Action {
@@ -267,38 +501,87 @@ public class HtmlPublisherTarget extends AbstractDescribableImpl<HtmlPublisherTa
 
         protected transient AbstractItem project;
 
+        /**
+         * Custom icon found in a report directory, so the file system is only checked once per published report.
+         */
+        private transient volatile ResolvedIcon resolvedIcon;
+
+        /**
+         * Whether the report has been published, so the file system is only checked again when a report has changed
+         */
+        private transient volatile ReportPresence presence;
+
+        /**
+         * Cache for {@link #dir()}, which is called several times for each rendering of a job or build page.
+         */
+        transient volatile ResolvedDir resolvedDir;
+
+        /**
+         * The manifest of the report, loaded again when it changes
+         */
+        private transient volatile ReportManifest manifest;
+
+        /**
+         * The marker of a stored report, read again when it changes
+         */
+        private transient volatile StoredReport storedReport;
+
+        /**
+         * The archive of a compacted report, read again when it changes
+         */
+        private transient volatile ZipVirtualFile archiveRoot;
+
         public BaseHTMLAction(HtmlPublisherTarget actualHtmlPublisherTarget) {
             this.actualHtmlPublisherTarget = actualHtmlPublisherTarget;
         }
 
         public String getUrlName() {
-            return dir().getName();
+            // Same as dir().getName(), but without resolving the archive build
+            return getSanitizedName();
         }
 
         public String getDisplayName() {
             String action = actualHtmlPublisherTarget.reportName;
-            return dir().exists() ? action : null;
+            return isPublished(dir()) ? action : null;
         }
 
         public String getIconFileName() {
-            String icon;
-            if (StringUtils.isNotBlank(actualHtmlPublisherTarget.icon)) {
-                if (actualHtmlPublisherTarget.icon.startsWith("symbol-")) {
-                    icon = actualHtmlPublisherTarget.icon;
-                }
-                else {
-                    File iconFile = new File(dir(), actualHtmlPublisherTarget.icon);
+            File dir = dir();
+            if (!isPublished(dir)) {
+                return null;
+            }
+            String icon = actualHtmlPublisherTarget.icon;
+            if (StringUtils.isBlank(icon)) {
+                return DEFAULT_ICON;
+            }
+            if (icon.startsWith("symbol-")) {
+                return icon;
+            }
+            // A project level report is replaced in place by each build, which changes the generation
+            long generation = ReportChanges.get();
+            ResolvedIcon resolved = this.resolvedIcon;
+            if (resolved != null && resolved.matches(dir, icon, generation)) {
+                return resolved.iconFileName;
+            }
+            String iconFileName = iconExists(icon) ? project.getUrl() + dir.getName() + "/" + icon : DEFAULT_ICON;
+            resolved = new ResolvedIcon(dir, icon, generation, iconFileName);
+            this.resolvedIcon = resolved;
+            return resolved.iconFileName;
+        }
 
-                    if(iconFile.exists()){
-                        icon = project.getUrl() + dir().getName() + "/" + actualHtmlPublisherTarget.icon;
-                    }else{
-                        icon = "symbol-document-text"; 
-                    }
-                }
-            } else {
-                icon = "symbol-document-text";
+        /**
+         * @return whether the report has been published, also if it has been compacted or stored since
+         */
+        private boolean isPublished(File dir) {
+            // Read before the file system, so a report changing meanwhile is checked again
+            long generation = ReportChanges.get();
+            ReportPresence presence = this.presence;
+            if (presence != null && presence.generation == generation && presence.dir.equals(dir)) {
+                return presence.published;
             }
-            return dir().exists() ? icon : null;
+            presence = new ReportPresence(dir, generation, exists(dir));
+            this.presence = presence;
+            return presence.published;
         }
 
         public String getBackToName() {
@@ -317,22 +600,230 @@ public class HtmlPublisherTarget extends AbstractDescribableImpl<HtmlPublisherTa
          * Serves HTML reports.
          */
         public void doDynamic(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException, ServletException {
-            DirectoryBrowserSupport dbs = new DirectoryBrowserSupport(this, new FilePath(this.dir()), this.getTitle(), "symbol-document-text", false);
+            VirtualFile root = root();
+            DirectoryBrowserSupport dbs = new DirectoryBrowserSupport(this, root, this.getTitle(), DEFAULT_ICON, false);
             if (req.getRestOfPath().isEmpty()) {
                 throw HttpResponses.forwardToView(this, "index.jelly");
             }
+            VirtualFile file = getExternalFile(root, req.getRestOfPath().substring(1));
+            URL externalURL = file != null ? file.toExternalURL() : null;
+            if (externalURL != null) {
+                // Stored by a backend serving its files itself, see ReportStorage
+                rsp.sendRedirect(HttpServletResponse.SC_FOUND, externalURL.toString());
+                return;
+            }
+            ReportManifest manifest = ReportManifest.load(dir(), this.manifest);
+            this.manifest = manifest;
+            if (manifest != null && manifest.handleETag(req, rsp, req.getRestOfPath())) {
+                return;
+            }
             dbs.generateResponse(req, rsp, this);
         }
 
+        /**
+         * @return the file of the report a backend may redirect to, or null if the path is not that of a file within the
+         * report, which is then left to the {@link DirectoryBrowserSupport}
+         */
+        private VirtualFile getExternalFile(VirtualFile root, String path) throws IOException {
+            for (String segment : path.split("/", -1)) {
+                // Also encoded segments, which a backend building its URLs from the path may decode
+                if (segment.isEmpty() || segment.equals(".") || segment.equals("..") || segment.contains("\\") || segment.contains("%")) {
+                    return null;
+                }
+            }
+            VirtualFile file = root.child(path);
+            return file.isFile() ? file : null;
+        }
+
+        /**
+         * Hashes the files of the report again and compares them with its manifest, see {@link ReportManifest}. Reads
+         * the whole report, so it needs the permission to configure the job.
+         */
+        @RequirePOST
+        public void doVerifyManifest(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+            project.checkPermission(Item.CONFIGURE);
+            File dir = dir();
+            ReportManifest manifest = dir.isDirectory() ? ReportManifest.load(dir, this.manifest) : null;
+            if (manifest == null) {
+                // Also a report that has been compacted or stored, its files are not verified anymore
+                rsp.sendError(HttpServletResponse.SC_NOT_FOUND, "The report has no manifest to verify against");
+                return;
+            }
+            List<String> mismatches = manifest.verify(dir, actualHtmlPublisherTarget.getWrapperName());
+            rsp.setContentType("text/plain;charset=UTF-8");
+            if (!mismatches.isEmpty()) {
+                rsp.setStatus(HttpServletResponse.SC_CONFLICT);
+            }
+            PrintWriter writer = rsp.getWriter();
+            if (mismatches.isEmpty()) {
+                writer.println("OK: " + manifest.getHashes().size() + " file(s) match the manifest");
+            } else {
+                writer.println("FAILED: " + mismatches.size() + " file(s) are missing, changed or not in the manifest");
+                for (String path : mismatches) {
+                    writer.println(path);
+                }
+            }
+            writer.flush();
+        }
+
+        /**
+         * @return the progress of the report, if it is shown while its files are still being copied, otherwise null
+         */
+        @Restricted(NoExternalUse.class)
+        public PublishingStatus getPublishingStatus() {
+            return PublishingStatus.get(dir());
+        }
+
+        /**
+         * @return the files skipped because the report exceeds its limits, or null if the report is complete
+         */
+        @Restricted(NoExternalUse.class)
+        public String getTruncation() {
+            return ReportTruncation.read(dir());
+        }
+
+        /**
+         * @return the files of the report, from its directory or, once it has been stored or compacted, from its
+         * {@link ReportStorage} or its archive, see {@link ReportLifecycle}
+         */
+        protected VirtualFile root() throws IOException {
+            File dir = dir();
+            if (!dir.exists() && StoredReport.exists(dir)) {
+                StoredReport stored = StoredReport.load(dir, this.storedReport);
+                this.storedReport = stored;
+                VirtualFile storedRoot = stored != null ? stored.root(dir.getName()) : null;
+                if (storedRoot != null) {
+                    return storedRoot;
+                }
+            }
+            File archive = ReportLifecycle.getArchive(dir);
+            if (dir.exists() || !archive.isFile()) {
+                return new FilePath(dir).toVirtualFile();
+            }
+            ZipVirtualFile root = this.archiveRoot;
+            if (root == null || !root.isCurrent(archive)) {
+                root = new ZipVirtualFile(archive);
+                this.archiveRoot = root;
+            }
+            return root;
+        }
+
+        /**
+         * Reads a file of the report, e.g. the wrapper file
+         */
+        @Restricted(NoExternalUse.class) // read by Groovy view
+        public String readReportFile(String name) throws IOException {
+            try (InputStream in = root().child(name).open()) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+
+        private boolean iconExists(String icon) {
+            try {
+                return root().child(icon).exists();
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
         protected abstract String getTitle();
 
         protected abstract File dir();
     }
 
+    /**
+     * @return whether the report directory exists, or has been compacted into its archive or stored by a backend
+     */
+    private static boolean exists(File reportDir) {
+        return reportDir.exists() || ReportLifecycle.getArchive(reportDir).isFile() || StoredReport.exists(reportDir);
+    }
+
+    /**
+     * The directory a project or build has published a report to, either in the storage root or, before the storage
+     * root has been configured, in the directory of the job or build. Resolved again once a report has been published,
+     * replaced, compacted, stored or deleted, or the storage root has changed, see {@link ReportChanges}.
+     */
+    private static final class ResolvedDir {
+        private final Object owner;
+        private final long generation;
+        private final File dir;
+        private final File location;
+
+        private ResolvedDir(Object owner, long generation, File dir, File location) {
+            this.owner = owner;
+            this.generation = generation;
+            this.dir = dir;
+            this.location = location;
+        }
+
+        /**
+         * @param generation the generation read before looking for the report
+         */
+        private static ResolvedDir resolve(Object owner, long generation, File dir, File legacyDir) {
+            File location = null;
+            if (exists(dir)) {
+                location = dir;
+            } else if (!dir.equals(legacyDir) && exists(legacyDir)) {
+                location = legacyDir;
+            }
+            return new ResolvedDir(owner, generation, dir, location);
+        }
+
+        private boolean matches(Object owner, long generation) {
+            return this.owner == owner && this.generation == generation;
+        }
+
+        /**
+         * @return the directory of the report, also where it would be published if it has not been yet
+         */
+        private File get() {
+            return this.location != null ? this.location : this.dir;
+        }
+
+        private boolean isPublished() {
+            return this.location != null;
+        }
+    }
+
+    private static final class ResolvedIcon {
+        private final File dir;
+        private final String icon;
+        private final long generation;
+        private final String iconFileName;
+
+        private ResolvedIcon(File dir, String icon, long generation, String iconFileName) {
+            this.dir = dir;
+            this.icon = icon;
+            this.generation = generation;
+            this.iconFileName = iconFileName;
+        }
+
+        private boolean matches(File dir, String icon, long generation) {
+            return this.generation == generation && this.dir.equals(dir) && this.icon.equals(icon);
+        }
+    }
+
+    private static final class ReportPresence {
+        private final File dir;
+        private final long generation;
+        private final boolean published;
+
+        private ReportPresence(File dir, long generation, boolean published) {
+            this.dir = dir;
+            this.generation = generation;
+            this.published = published;
+        }
+    }
+
     public class HTMLAction extends BaseHTMLAction implements ProminentProjectAction {
 
         private transient HTMLBuildAction actualBuildAction;
 
+        /**
+         * The report of the build linked to, cached like {@link #resolvedDir}
+         */
+        private transient volatile ResolvedDir resolvedBuildDir;
+
         public HTMLAction(AbstractItem project, HtmlPublisherTarget actualHtmlPublisherTarget) {
             super(actualHtmlPublisherTarget);
             this.project = project;
@@ -346,21 +837,23 @@ public class HtmlPublisherTarget extends AbstractDescribableImpl<HtmlPublisherTa
                 Run run = getArchiveBuild(job);
 
                 if (run != null) {
-                    File javadocDir = getBuildArchiveDir(run);
+                    ResolvedDir javadocDir = getBuildArchiveDir(run, this.resolvedBuildDir);
+                    this.resolvedBuildDir = javadocDir;
 
-                    if (javadocDir.exists()) {
+                    if (javadocDir.isPublished()) {
                         for (HTMLBuildAction a : run.getActions(HTMLBuildAction.class)) {
                             if (a.getHTMLTarget().getReportName().equals(getHTMLTarget().getReportName())) {
                                 actualBuildAction = a;
                             }
                         }
-                        return javadocDir;
+                        return javadocDir.get();
                     }
                 }
             }
 
-            File projectArchiveDir = getProjectArchiveDir(this.project);
-            return projectArchiveDir;
+            ResolvedDir projectArchiveDir = getProjectArchiveDir(this.project, this.resolvedDir);
+            this.resolvedDir = projectArchiveDir;
+            return projectArchiveDir.get();
         }
 
         private Run getArchiveBuild(@NonNull Job job) {
@@ -462,8 +955,9 @@ public class HtmlPublisherTarget extends AbstractDescribableImpl<HtmlPublisherTa
 
         @Override
         protected File dir() {
-            File buildArchiveDir = getBuildArchiveDir(this.build);
-            return buildArchiveDir;
+            ResolvedDir buildArchiveDir = getBuildArchiveDir(this.build, this.resolvedDir);
+            this.resolvedDir = buildArchiveDir;
+            return buildArchiveDir.get();
         }
 
         /**
@@ -502,16 +996,51 @@ public class HtmlPublisherTarget extends AbstractDescribableImpl<HtmlPublisherTa
     }
 
     /* package */ void handleAction(Run<?, ?> build, String checksum) {
+        handleAction(build, checksum, null);
+    }
+
+    /**
+     * @param existing the action added for the wrapper file written while copying, or null
+     * @return the action of the report
+     */
+    /* package */ Action handleAction(Run<?, ?> build, String checksum, Action existing) {
+        ReportChanges.changed();
+        if (existing instanceof HTMLBuildAction) {
+            // The wrapper file has been rewritten
+            ((HTMLBuildAction) existing).setWrapperChecksum(checksum);
+            return existing;
+        } else if (existing != null) {
+            return existing;
+        }
         // Add build action, if coverage is recorded for each build
         if (this.keepAll) {
             HTMLBuildAction a = new HTMLBuildAction(build, this);
             a.setWrapperChecksum(checksum);
             build.addAction(a);
+            return a;
         } else { // Othwewise we add a hidden marker
-            build.addAction(new HTMLPublishedForProjectMarkerAction(build, this));
+            Action a = new HTMLPublishedForProjectMarkerAction(build, this);
+            build.addAction(a);
+            return a;
         }
     }
 
+    /**
+     * @return the action already attached to the build for a report with the same name, or null
+     */
+    /* package */ Action findAction(Run<?, ?> build) {
+        for (Action a : build.getActions()) {
+            if (a instanceof HTMLBuildAction && this.reportName.equals(((HTMLBuildAction) a).getHTMLTarget().getReportName())) {
+                return a;
+            }
+            if (a instanceof HTMLPublishedForProjectMarkerAction
+                    && this.reportName.equals(((HTMLPublishedForProjectMarkerAction) a).actualHtmlPublisherTarget.getReportName())) {
+                return a;
+            }
+        }
+        return null;
+    }
+
     public Action getProjectAction(AbstractItem item) {
         return new HTMLAction(item, this);
     }
@@ -536,6 +1065,23 @@ public class HtmlPublisherTarget extends AbstractDescribableImpl<HtmlPublisherTa
         this.includes = includes;
     }
 
+    /**
+     * @return the pattern for excluding files, or null if only the Ant default excludes apply
+     */
+    @CheckForNull
+    public String getExcludes() {
+        return this.excludes;
+    }
+
+    /**
+     *
+     * @param excludes  Ant GLOB pattern
+     */
+    @DataBoundSetter
+    public void setExcludes(String excludes) {
+        this.excludes = Util.fixEmptyAndTrim(excludes);
+    }
+
     /**
      * Called by XStream after object construction
      * @return modified object
@@ -0,0 +1,190 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.util.Timer;
+
+import htmlpublisher.util.ChangedFilesDirScanner;
+
+/**
+ * Publishes the report of a target while the build is still writing it.
+ *
+ * The report is copied repeatedly in the background. Each update only copies the files that have changed since the
+ * previous one, which the node where the report is written keeps track of. The wrapper file is written as soon as
+ * index pages have been copied, and rewritten when further index pages appear. Once the build has written the report,
+ * {@link #seal()} copies the last changes and publishes the report like {@link HtmlPublisher#publishReports}, recording
+ * the checksum of the wrapper file.
+ */
+@Restricted(NoExternalUse.class)
+public final class LivePublishing {
+
+    private final Run<?, ?> build;
+
+    private final BuildEnvironment environment;
+
+    private final TaskListener listener;
+
+    private final ReportPublication publication;
+
+    private final List<String> headerLines;
+
+    private final List<String> footerLines;
+
+    /**
+     * Identifies the files copied by the earlier updates on the node
+     */
+    private final UUID key = UUID.randomUUID();
+
+    private final ScheduledExecutorService updates;
+
+    /**
+     * The index pages copied so far
+     */
+    private final Set<String> indexFiles = new LinkedHashSet<>();
+
+    private PublishingStatus status;
+
+    /**
+     * The number of files copied by all updates
+     */
+    private int copied;
+
+    LivePublishing(Run<?, ?> build, BuildEnvironment environment, TaskListener listener, ReportPublication publication,
+            List<String> headerLines, List<String> footerLines) {
+        this.build = build;
+        this.environment = environment;
+        this.listener = listener;
+        this.publication = publication;
+        this.headerLines = headerLines;
+        this.footerLines = footerLines;
+        this.updates = Executors.newSingleThreadScheduledExecutor(
+                new NamingThreadFactory(new DaemonThreadFactory(), "HtmlPublisher live " + publication.target.getReportName()));
+    }
+
+    void start(int intervalSeconds) throws IOException, InterruptedException {
+        this.publication.deleteProjectLevelReport();
+        this.status = PublishingStatus.startLive(new File(this.publication.targetDir.getRemote()));
+        this.updates.scheduleWithFixedDelay(this::update, 0, Math.max(1, intervalSeconds), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Copies the changes in the background, a failed update is retried with all files by the next one
+     */
+    private void update() {
+        try {
+            copyChanges();
+        } catch (InterruptedException | InterruptedIOException e) {
+            // Stopped by sealing or cancelling
+        } catch (Exception e) {
+            this.listener.getLogger().println("[htmlpublisher] Live update of '" + this.publication.target.getReportName()
+                    + "' failed, the next update copies all files again: " + e.getMessage());
+            forget();
+        }
+    }
+
+    private synchronized void copyChanges() throws Exception {
+        if (!this.publication.archiveDir.exists()) {
+            // Not written by the build yet
+            return;
+        }
+        if (!this.publication.archiveDir.isDirectory()) {
+            // An archive, which is only unpacked once the build has written it
+            return;
+        }
+        this.publication.archiveDirExists = true;
+
+        int changed = this.publication.copyChanges(Timer.get(), this.key);
+        if (changed == 0) {
+            return;
+        }
+        this.copied += changed;
+        this.listener.getLogger().println("[htmlpublisher] Live update of '" + this.publication.target.getReportName() + "': "
+                + changed + " changed file(s) copied");
+
+        if (this.publication.indexFiles != null && this.indexFiles.addAll(this.publication.indexFiles)) {
+            // New index pages, so the wrapper file needs another tab
+            HtmlPublisher.writeWrapper(this.build, this.environment, this.listener, this.publication, this.headerLines,
+                    this.footerLines, new ArrayList<>(this.indexFiles));
+        }
+    }
+
+    /**
+     * Stops the updates, copies the last changes and publishes the report
+     *
+     * @return False if the report could not be published
+     */
+    public boolean seal() throws InterruptedException {
+        stopUpdates();
+        try {
+            synchronized (this) {
+                if (this.publication.checkArchiveDir() && this.publication.archiveDirExists) {
+                    if (this.publication.archiveFile) {
+                        this.publication.copy(Timer.get(), Integer.MAX_VALUE);
+                        this.copied = this.publication.copied;
+                    } else {
+                        copyChanges();
+                    }
+                }
+            }
+            this.publication.copied = this.copied;
+            // Resolved from all copied files, not only the last changes
+            this.publication.indexFiles = null;
+        } catch (InterruptedException e) {
+            cancel();
+            throw e;
+        } catch (Exception e) {
+            this.publication.failure = e;
+        } finally {
+            this.status.finish();
+            forget();
+        }
+        return HtmlPublisher.publishReport(this.build, this.environment, this.listener, this.publication, this.headerLines,
+                this.footerLines);
+    }
+
+    /**
+     * Stops the updates without publishing the report, the files copied so far are kept
+     */
+    public void cancel() {
+        this.updates.shutdownNow();
+        this.status.finish();
+        this.publication.withdrawAction();
+        forget();
+    }
+
+    private void stopUpdates() throws InterruptedException {
+        this.updates.shutdown();
+        if (!this.updates.awaitTermination(HtmlPublisher.PUBLISH_WORKER_TIMEOUT, TimeUnit.SECONDS)) {
+            this.updates.shutdownNow();
+        }
+    }
+
+    /**
+     * Removes the files copied by the earlier updates on the node
+     */
+    private void forget() {
+        try {
+            this.publication.archiveDir.act(new ChangedFilesDirScanner.Remover(this.key));
+        } catch (IOException | InterruptedException e) {
+            // Gone with the agent anyway
+        }
+    }
+
+}
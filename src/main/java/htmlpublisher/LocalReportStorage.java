@@ -0,0 +1,99 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.FormValidation;
+import jenkins.util.VirtualFile;
+
+/**
+ * Stores the reports in a directory of the controller, laid out by build id and report name. Mostly a reference for
+ * other backends, and to try a backend without a remote service.
+ */
+public class LocalReportStorage extends ReportStorage {
+
+    private final String root;
+
+    @DataBoundConstructor
+    public LocalReportStorage(String root) {
+        this.root = Util.fixEmptyAndTrim(root);
+    }
+
+    public String getRoot() {
+        return this.root;
+    }
+
+    @NonNull
+    @Override
+    public String getLocation() {
+        return this.root;
+    }
+
+    /**
+     * @return the directory of a stored report
+     */
+    private File getReportDir(String buildId, String reportName) {
+        int hash = buildId.lastIndexOf('#');
+        String jobName = hash < 0 ? buildId : buildId.substring(0, hash);
+        String number = hash < 0 ? "0" : buildId.substring(hash + 1);
+        File jobDir = ReportStorageListener.getItemDir(new File(this.root), jobName);
+        return new File(new File(new File(jobDir, "builds"), number), reportName);
+    }
+
+    @Override
+    public void store(@NonNull Run<?, ?> build, @NonNull String reportName, @NonNull File reportDir,
+            @NonNull TaskListener listener) throws IOException, InterruptedException {
+        File target = getReportDir(build.getExternalizableId(), reportName);
+        // A report published again by the same build replaces the earlier one
+        ReportTrash.delete(target);
+        int stored = new FilePath(reportDir).copyRecursiveTo("**/*", null, new FilePath(target));
+        listener.getLogger().println("[htmlpublisher] Stored " + stored + " file(s) of report '" + reportName + "' in " + this.root);
+    }
+
+    @NonNull
+    @Override
+    public VirtualFile root(@NonNull String buildId, @NonNull String reportName) {
+        return VirtualFile.forFile(getReportDir(buildId, reportName));
+    }
+
+    @Override
+    public void delete(@NonNull String buildId, @NonNull String reportName) throws IOException {
+        ReportTrash.delete(getReportDir(buildId, reportName));
+    }
+
+    @Extension
+    @Symbol("localReportStorage")
+    public static class DescriptorImpl extends ReportStorageDescriptor {
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Local directory";
+        }
+
+        @Override
+        public ReportStorage forLocation(@NonNull String location) {
+            return new LocalReportStorage(location);
+        }
+
+        public FormValidation doCheckRoot(@QueryParameter String value) {
+            String path = Util.fixEmptyAndTrim(value);
+            if (path == null || !new File(path).isAbsolute()) {
+                return FormValidation.error("The directory must be an absolute path");
+            }
+            return FormValidation.ok();
+        }
+
+    }
+
+}
@@ -0,0 +1,93 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+
+import htmlpublisher.util.ResumingDirScanner;
+
+/**
+ * The progress manifest of a resumable publishing, see {@link HtmlPublisherTarget#getResumable()}.
+ *
+ * The manifest is written next to the report directory when the copy starts, and removed once the copy is
+ * complete. If it is still there when the same build publishes from the same directory again, e.g. after a restart
+ * of the controller or a reconnect of the agent, the files that have already landed in the report directory are not
+ * copied again.
+ *
+ * The manifest name starts with a dot, which never occurs in the sanitized report names used for the report
+ * directories, and it is not inside the report directory, so it is never served as part of the report.
+ */
+class PublishProgress {
+
+    private static final String SOURCE = "source";
+
+    private static final String BUILD = "build";
+
+    private final File manifest;
+
+    private final Map<String, long[]> landedFiles;
+
+    private PublishProgress(File manifest, Map<String, long[]> landedFiles) {
+        this.manifest = manifest;
+        this.landedFiles = landedFiles;
+    }
+
+    static File getManifest(File targetDir) {
+        return new File(targetDir.getParentFile(), "." + targetDir.getName() + ".progress");
+    }
+
+    /**
+     * Starts or resumes the publishing into the target directory
+     *
+     * @param source identifies the copied directory, including its node
+     * @param buildId the build publishing the report
+     */
+    static PublishProgress start(File targetDir, String source, String buildId) throws IOException {
+        File manifest = getManifest(targetDir);
+        if (manifest.isFile()) {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(manifest.toPath())) {
+                properties.load(in);
+            }
+            if (source.equals(properties.getProperty(SOURCE)) && buildId.equals(properties.getProperty(BUILD))) {
+                return new PublishProgress(manifest, ResumingDirScanner.collectLandedFiles(targetDir));
+            }
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty(SOURCE, source);
+        properties.setProperty(BUILD, buildId);
+        Files.createDirectories(manifest.getParentFile().toPath());
+        try (OutputStream out = Files.newOutputStream(manifest.toPath())) {
+            properties.store(out, "HTML Publisher progress, removed once the report is completely copied");
+        }
+        return new PublishProgress(manifest, Collections.emptyMap());
+    }
+
+    /**
+     * @return whether an interrupted publishing is resumed
+     */
+    boolean isResuming() {
+        return !this.landedFiles.isEmpty();
+    }
+
+    /**
+     * @return the files already copied, see {@link ResumingDirScanner}
+     */
+    Map<String, long[]> getLandedFiles() {
+        return this.landedFiles;
+    }
+
+    /**
+     * Marks the copy as complete
+     */
+    void complete() throws IOException {
+        Files.deleteIfExists(this.manifest.toPath());
+    }
+
+}
@@ -0,0 +1,155 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import htmlpublisher.util.CopyProgressListener;
+
+/**
+ * The progress of a report that is still being copied, shown by the report pages until the copy has finished.
+ *
+ * A live report is copied repeatedly while the build is still writing it, until it is sealed.
+ *
+ * The index pages and the files they reference are copied first. As soon as they have landed in the report directory,
+ * the wrapper file is written, so the report can be viewed while the other files are still being copied.
+ */
+@Restricted(NoExternalUse.class)
+public final class PublishingStatus implements CopyProgressListener {
+
+    /**
+     * The reports being copied, by report directory
+     */
+    private static final Map<File, PublishingStatus> ACTIVE = new ConcurrentHashMap<>();
+
+    private final File targetDir;
+
+    /**
+     * Writes the wrapper file for the given index pages
+     */
+    private final Consumer<List<String>> earlyPublisher;
+
+    private final boolean live;
+
+    private volatile int copiedFiles;
+
+    private volatile int foundFiles;
+
+    private volatile boolean scanComplete;
+
+    private List<String> indexFiles;
+
+    private Map<String, Long> entryPoints;
+
+    private boolean published;
+
+    private boolean finished;
+
+    private PublishingStatus(File targetDir, Consumer<List<String>> earlyPublisher, boolean live) {
+        this.targetDir = targetDir;
+        this.earlyPublisher = earlyPublisher;
+        this.live = live;
+    }
+
+    /**
+     * Registers the copy to the report directory
+     */
+    static PublishingStatus start(File targetDir, Consumer<List<String>> earlyPublisher) {
+        PublishingStatus status = new PublishingStatus(targetDir, earlyPublisher, false);
+        ACTIVE.put(targetDir, status);
+        return status;
+    }
+
+    /**
+     * Registers the repeated copy of a live report to the report directory
+     */
+    static PublishingStatus startLive(File targetDir) {
+        PublishingStatus status = new PublishingStatus(targetDir, null, true);
+        ACTIVE.put(targetDir, status);
+        return status;
+    }
+
+    /**
+     * @return the status of the copy to the report directory, or null if no copy is running
+     */
+    public static PublishingStatus get(File dir) {
+        return ACTIVE.get(dir);
+    }
+
+    /**
+     * @return the share of the files found so far that have been copied, below 100 until the copy has finished
+     */
+    public int getPercentComplete() {
+        int found = this.foundFiles;
+        if (found == 0) {
+            return 0;
+        }
+        return (int) Math.min(99, (long) this.copiedFiles * 100 / found);
+    }
+
+    /**
+     * @return whether the report is updated while the build is still writing it
+     */
+    public boolean isLive() {
+        return this.live;
+    }
+
+    /**
+     * @return whether all files to copy have been found, otherwise the percentage is an estimate
+     */
+    public boolean isScanComplete() {
+        return this.scanComplete;
+    }
+
+    @Override
+    public synchronized void onEntryPoints(List<String> indexFiles, Map<String, Long> entryPoints) {
+        this.indexFiles = indexFiles;
+        this.entryPoints = entryPoints;
+        publishIfLanded();
+    }
+
+    @Override
+    public void onProgress(int copiedFiles, int foundFiles, boolean scanComplete) {
+        this.copiedFiles = copiedFiles;
+        this.foundFiles = foundFiles;
+        this.scanComplete = scanComplete;
+        synchronized (this) {
+            publishIfLanded();
+        }
+    }
+
+    /**
+     * Writes the wrapper file once the entry points have been extracted into the report directory, which might be
+     * later than they have been sent
+     */
+    private void publishIfLanded() {
+        if (this.published || this.finished || this.entryPoints == null || this.earlyPublisher == null) {
+            return;
+        }
+        for (Map.Entry<String, Long> entryPoint : this.entryPoints.entrySet()) {
+            File file = new File(this.targetDir, entryPoint.getKey());
+            if (!file.isFile() || file.length() != entryPoint.getValue()) {
+                return;
+            }
+        }
+        this.published = true;
+        this.earlyPublisher.accept(this.indexFiles);
+    }
+
+    /**
+     * Ends showing the progress, after the copy has finished or failed
+     *
+     * @return whether the wrapper file has been written while copying
+     */
+    synchronized boolean finish() {
+        this.finished = true;
+        ACTIVE.remove(this.targetDir, this);
+        return this.published;
+    }
+
+}
@@ -0,0 +1,28 @@
+package htmlpublisher;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the changes of the reports on disk, so the report actions can keep what they have found on disk until a
+ * report is published, replaced, compacted, stored or deleted, or the storage root changes, see
+ * {@link HtmlPublisherTarget.BaseHTMLAction#getIconFileName}.
+ */
+final class ReportChanges {
+
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    private ReportChanges() {
+    }
+
+    /**
+     * @return the current generation, which changes with every change of a report
+     */
+    static long get() {
+        return GENERATION.get();
+    }
+
+    static void changed() {
+        GENERATION.incrementAndGet();
+    }
+
+}
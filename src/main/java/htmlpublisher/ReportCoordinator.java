@@ -0,0 +1,231 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Coordinates the publishing of a project level report by concurrent builds of a job.
+ *
+ * Only the report of the newest build is kept, so the publishing of a newer build supersedes that of an older build
+ * which is still in flight: a copy that has not started yet is skipped, a running copy is cancelled by interrupting the
+ * worker it runs on, see {@link ReportPublication#copy}, and a complete
+ * copy does not replace the report anymore. The report of an older build that finishes after a newer one has been
+ * published is skipped too. Each build copies into its own staging directory, and the report directory itself is only
+ * replaced by one build at a time, see {@link ReportPublication#swap(Runnable)}.
+ *
+ * The coordination is kept in memory, one small entry per project level report directory while builds publish it, and
+ * each build releases its ticket once done. The number of the build that published the report last is also written
+ * next to the report directory, so it is still known once the entry is gone.
+ */
+class ReportCoordinator {
+
+    private static final Logger LOGGER = Logger.getLogger(ReportCoordinator.class.getName());
+
+    private static final Map<File, Entry> ENTRIES = new HashMap<>();
+
+    private ReportCoordinator() {
+    }
+
+    /**
+     * Registers the publishing of a build, superseding the publishing of older builds
+     *
+     * @return the ticket of the publishing, which is already superseded if a newer build has published the report, and
+     *         must be released once the publishing is done
+     */
+    static Ticket register(File reportDir, int buildNumber) {
+        synchronized (ENTRIES) {
+            Entry entry = ENTRIES.computeIfAbsent(reportDir, k -> new Entry(reportDir, readPublished(reportDir)));
+            entry.tickets++;
+            Ticket ticket = new Ticket(entry, buildNumber);
+            int newest = entry.newest != null ? Math.max(entry.published, entry.newest.buildNumber) : entry.published;
+            if (buildNumber < newest) {
+                ticket.supersede(newest);
+                return ticket;
+            }
+            if (entry.newest != null && entry.newest.buildNumber < buildNumber) {
+                entry.newest.supersede(buildNumber);
+            }
+            entry.newest = ticket;
+            return ticket;
+        }
+    }
+
+    /**
+     * @return the number of entries, which are only kept while builds publish their reports
+     */
+    static int size() {
+        synchronized (ENTRIES) {
+            return ENTRIES.size();
+        }
+    }
+
+    static File getPublishedFile(File reportDir) {
+        return new File(reportDir.getParentFile(), "." + reportDir.getName() + ".published");
+    }
+
+    private static int readPublished(File reportDir) {
+        try {
+            return Integer.parseInt(Files.readString(getPublishedFile(reportDir).toPath(), StandardCharsets.UTF_8).trim());
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Could not read the build that published " + reportDir, e);
+            return 0;
+        }
+    }
+
+    /**
+     * The state of a single report directory, also the lock for replacing it
+     */
+    private static final class Entry {
+
+        private final File reportDir;
+
+        /**
+         * The number of tickets that have not been released yet
+         */
+        private int tickets;
+
+        /**
+         * The publishing of the newest build registered so far
+         */
+        private Ticket newest;
+
+        /**
+         * The number of the build that has published the report last
+         */
+        private int published;
+
+        private Entry(File reportDir, int published) {
+            this.reportDir = reportDir;
+            this.published = published;
+        }
+
+    }
+
+    /**
+     * The publishing of a report by a single build
+     */
+    static final class Ticket {
+
+        private final Entry entry;
+
+        private final int buildNumber;
+
+        private Thread copyingThread;
+
+        private boolean aborted;
+
+        private boolean released;
+
+        private int supersededBy;
+
+        private Ticket(Entry entry, int buildNumber) {
+            this.entry = entry;
+            this.buildNumber = buildNumber;
+        }
+
+        /**
+         * Marks the current thread as copying the report, so it is interrupted when the publishing is superseded. The
+         * thread must be a worker of the copy alone, never that of the build.
+         *
+         * @return false if the publishing has already been superseded or aborted, so the report must not be copied
+         */
+        synchronized boolean enterCopy() {
+            if (this.supersededBy > 0 || this.aborted) {
+                return false;
+            }
+            this.copyingThread = Thread.currentThread();
+            return true;
+        }
+
+        /**
+         * Ends the copy of the current thread, which is not interrupted by a later supersede anymore
+         */
+        synchronized void exitCopy() {
+            this.copyingThread = null;
+        }
+
+        private synchronized void supersede(int buildNumber) {
+            this.supersededBy = buildNumber;
+            if (this.copyingThread != null) {
+                this.copyingThread.interrupt();
+            }
+        }
+
+        /**
+         * Cancels the copy, e.g. when the build is aborted: a copy that has not started yet is skipped, a running copy
+         * is interrupted
+         */
+        synchronized void abort() {
+            this.aborted = true;
+            if (this.copyingThread != null) {
+                this.copyingThread.interrupt();
+            }
+        }
+
+        /**
+         * Ends the publishing, dropping the entry of the report directory once no other build publishes it
+         */
+        void release() {
+            synchronized (ENTRIES) {
+                if (this.released) {
+                    return;
+                }
+                this.released = true;
+                if (--this.entry.tickets == 0) {
+                    ENTRIES.remove(this.entry.reportDir, this.entry);
+                }
+            }
+        }
+
+        /**
+         * @return the number of the newer build superseding this publishing, or 0 if it is not superseded
+         */
+        synchronized int getSupersededBy() {
+            return this.supersededBy;
+        }
+
+        /**
+         * Runs the replacement of the report directory, unless the publishing has been superseded meanwhile
+         *
+         * @return false if the publishing has been superseded, so the report has not been replaced
+         */
+        boolean replace(ReportReplacement replacement) throws IOException {
+            synchronized (this.entry) {
+                if (getSupersededBy() > 0) {
+                    return false;
+                }
+                replacement.run();
+                synchronized (ENTRIES) {
+                    this.entry.published = Math.max(this.entry.published, this.buildNumber);
+                }
+                try {
+                    Files.writeString(getPublishedFile(this.entry.reportDir).toPath(), Integer.toString(this.buildNumber), StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    // Only an older build finishing after all others have released the report is not skipped then
+                    LOGGER.log(Level.WARNING, "Could not record the build that published " + this.entry.reportDir, e);
+                }
+                return true;
+            }
+        }
+
+    }
+
+    /**
+     * Replaces a report directory
+     */
+    interface ReportReplacement {
+
+        void run() throws IOException;
+
+    }
+
+}
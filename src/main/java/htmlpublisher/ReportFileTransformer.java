@@ -0,0 +1,33 @@
+package htmlpublisher;
+
+import hudson.DescriptorExtensionList;
+import hudson.ExtensionPoint;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import jenkins.model.Jenkins;
+
+import htmlpublisher.util.FileTransformer;
+import htmlpublisher.util.TransformingDirScanner;
+
+/**
+ * Transforms the files of a report while they are copied, see {@link HtmlPublisherTarget#getTransformers()}.
+ *
+ * The transformers of a target are chained in order and run on the node where the report is located, inside the copy
+ * stream: the files are taken from the queue of the copy, transformed, and written to the stream right away, see
+ * {@link TransformingDirScanner}. So a transformer can shrink or drop files before they are transferred and stored.
+ *
+ * Transformers are sent to the node, so they must be serializable and must only keep their configuration.
+ */
+public abstract class ReportFileTransformer extends AbstractDescribableImpl<ReportFileTransformer>
+        implements ExtensionPoint, FileTransformer {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @return the descriptors of all transformers
+     */
+    public static DescriptorExtensionList<ReportFileTransformer, Descriptor<ReportFileTransformer>> all() {
+        return Jenkins.get().getDescriptorList(ReportFileTransformer.class);
+    }
+
+}
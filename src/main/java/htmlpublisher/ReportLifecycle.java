@@ -0,0 +1,211 @@
+package htmlpublisher;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+
+import htmlpublisher.util.RateLimiter;
+import htmlpublisher.util.ZipVirtualFile;
+
+/**
+ * Applies the lifecycle of the reports kept for each build, see {@link HtmlPublisherTarget#getKeepAll()}.
+ *
+ * The reports of the newest {@link HtmlPublisherConfiguration#getRawReportBuilds()} builds of a job stay as they are.
+ * The reports of older builds are compacted into a single zip archive next to the report directory, and served from it
+ * by {@link ZipVirtualFile}. The reports of builds older than {@link HtmlPublisherConfiguration#getKeepReportBuilds()}
+ * are dropped, while the builds themselves are kept. Both are disabled with 0, which is the default.
+ *
+ * The builds are ranked by their build directories, so builds are only loaded if one of their reports is compacted
+ * or dropped, to skip builds that are still running. The compaction reads and writes at most
+ * {@link HtmlPublisher#LIFECYCLE_BYTES_PER_SECOND} bytes per second, so it does not starve the other disk I/O of the
+ * controller. Dropped reports are deleted through the {@link ReportTrash}.
+ */
+@Extension
+public class ReportLifecycle extends AsyncPeriodicWork {
+
+    private static final Logger LOGGER = Logger.getLogger(ReportLifecycle.class.getName());
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public ReportLifecycle() {
+        super("HTML Publisher report lifecycle");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.HOURS.toMillis(1);
+    }
+
+    /**
+     * @return the archive of a compacted report directory
+     */
+    static File getArchive(File reportDir) {
+        return new File(reportDir.getParentFile(), "." + reportDir.getName() + ".zip");
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        int rawBuilds = HtmlPublisherConfiguration.getEffectiveRawReportBuilds();
+        int keepBuilds = HtmlPublisherConfiguration.getEffectiveKeepReportBuilds();
+        if (rawBuilds <= 0 && keepBuilds <= 0) {
+            return;
+        }
+        RateLimiter limiter = new RateLimiter(HtmlPublisher.LIFECYCLE_BYTES_PER_SECOND);
+        for (Job<?, ?> job : Jenkins.get().allItems(Job.class)) {
+            try {
+                apply(job, rawBuilds, keepBuilds, limiter);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not apply the report lifecycle to " + job.getFullName(), e);
+            }
+        }
+    }
+
+    private static void apply(Job<?, ?> job, int rawBuilds, int keepBuilds, RateLimiter limiter) throws IOException, InterruptedException {
+        File buildDir = job.getBuildDir();
+        String[] names = buildDir.list();
+        if (names == null) {
+            return;
+        }
+        List<Integer> numbers = new ArrayList<>();
+        for (String name : names) {
+            try {
+                numbers.add(Integer.parseInt(name));
+            } catch (NumberFormatException e) {
+                // e.g. the legacy links to the builds
+            }
+        }
+        numbers.sort(Comparator.reverseOrder());
+        File storageRoot = HtmlPublisherConfiguration.getStorageRootDir();
+        File storageBuildsDir = storageRoot != null ? new File(HtmlPublisherConfiguration.getItemDir(storageRoot, job), "builds") : null;
+
+        for (int rank = 0; rank < numbers.size(); rank++) {
+            int number = numbers.get(rank);
+            boolean drop = keepBuilds > 0 && rank >= keepBuilds;
+            boolean compact = rawBuilds > 0 && rank >= rawBuilds;
+            if (!(drop || compact)) {
+                continue;
+            }
+            // The reports published before the storage root has been configured are still in the build directory
+            apply(job, number, new File(new File(buildDir, Integer.toString(number)), HtmlPublisherConfiguration.REPORTS_DIR), drop, limiter);
+            if (storageBuildsDir != null) {
+                apply(job, number, new File(new File(storageBuildsDir, Integer.toString(number)), HtmlPublisherConfiguration.REPORTS_DIR), drop, limiter);
+            }
+        }
+    }
+
+    private static void apply(Job<?, ?> job, int number, File reportsDir, boolean drop, RateLimiter limiter) throws IOException, InterruptedException {
+        if (!reportsDir.isDirectory()) {
+            return;
+        }
+        List<File> rawReports = listRawReports(reportsDir);
+        if (!drop && rawReports.isEmpty()) {
+            return;
+        }
+        Run<?, ?> run = job.getBuildByNumber(number);
+        if (run == null || run.isBuilding()) {
+            return;
+        }
+        if (drop) {
+            for (File marker : listStoredReports(reportsDir)) {
+                StoredReport.delete(new File(reportsDir, marker.getName().substring(1, marker.getName().length() - ".stored".length())));
+            }
+            ReportTrash.delete(reportsDir);
+            LOGGER.log(Level.FINE, "Dropped the reports of {0}", run.getFullDisplayName());
+            return;
+        }
+        for (File reportDir : rawReports) {
+            long startTime = System.currentTimeMillis();
+            compact(reportDir, limiter);
+            LOGGER.log(Level.FINE, "Compacted the report {0} of {1} in {2} ms",
+                    new Object[] {reportDir.getName(), run.getFullDisplayName(), System.currentTimeMillis() - startTime});
+        }
+    }
+
+    /**
+     * @return the markers of the reports stored by the {@link ReportStorage}
+     */
+    private static File[] listStoredReports(File reportsDir) {
+        File[] markers = reportsDir.listFiles((dir, name) -> name.startsWith(".") && name.endsWith(".stored"));
+        return markers != null ? markers : new File[0];
+    }
+
+    /**
+     * @return the report directories that have not been compacted yet, and are not being published
+     */
+    private static List<File> listRawReports(File reportsDir) {
+        List<File> reports = new ArrayList<>();
+        File[] files = reportsDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                // The sidecar files and the staging directories start with a dot
+                if (file.isDirectory() && !file.getName().startsWith(".") && !PublishProgress.getManifest(file).exists()) {
+                    reports.add(file);
+                }
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * Packs a report directory into its archive, and moves the directory into the trash. The report is served from
+     * the directory until the archive is complete. Links are not packed, as all entries of the archive are served as
+     * part of the report, see {@link ZipVirtualFile}.
+     */
+    static void compact(File reportDir, RateLimiter limiter) throws IOException, InterruptedException {
+        File archive = getArchive(reportDir);
+        Path base = reportDir.toPath();
+        Path temp = Files.createTempFile(reportDir.getParentFile().toPath(), archive.getName(), ".tmp");
+        try {
+            List<Path> files;
+            // Neither following the links to directories nor packing those to files, which may point outside the report
+            try (Stream<Path> walk = Files.walk(base)) {
+                files = walk.filter(p -> !Files.isSymbolicLink(p) && Files.isRegularFile(p, LinkOption.NOFOLLOW_LINKS))
+                        .sorted().collect(Collectors.toList());
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE))) {
+                for (Path file : files) {
+                    ZipEntry entry = new ZipEntry(base.relativize(file).toString().replace('\\', '/'));
+                    entry.setTime(Files.getLastModifiedTime(file).toMillis());
+                    zip.putNextEntry(entry);
+                    try (InputStream in = Files.newInputStream(file)) {
+                        int read;
+                        while ((read = in.read(buffer)) != -1) {
+                            limiter.acquire(read);
+                            zip.write(buffer, 0, read);
+                        }
+                    }
+                    zip.closeEntry();
+                }
+            }
+            Files.move(temp, archive.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            ReportChanges.changed();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        ReportTrash.delete(reportDir);
+    }
+
+}
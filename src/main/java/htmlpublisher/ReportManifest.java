@@ -0,0 +1,211 @@
+package htmlpublisher;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import htmlpublisher.util.HashingArchiver;
+
+/**
+ * The files of a published report with their SHA-256 hashes.
+ *
+ * The hashes of a report copied from an agent are computed on the agent while the files are streamed, see
+ * {@link HashingArchiver}, so they need no further read of the files. Only reports copied on the controller itself
+ * are hashed after copying.
+ *
+ * Like the progress manifest of {@link PublishProgress}, the manifest is written next to the report directory, so it
+ * is never served as part of the report. It has the format of {@code sha256sum}, so the report can also be verified
+ * with {@code sha256sum -c} from within the report directory. Once loaded, the hashes serve as ETags of the report
+ * files, and allow verifying the report on demand with a POST to its {@code verifyManifest} URL.
+ */
+class ReportManifest {
+
+    private static final String SEPARATOR = "  ";
+
+    private final File file;
+
+    private final long lastModified;
+
+    private final Map<String, String> hashes;
+
+    private ReportManifest(File file, long lastModified, Map<String, String> hashes) {
+        this.file = file;
+        this.lastModified = lastModified;
+        this.hashes = hashes;
+    }
+
+    static File getFile(File targetDir) {
+        return new File(targetDir.getParentFile(), "." + targetDir.getName() + ".sha256");
+    }
+
+    /**
+     * Writes the manifest of the report directory, replacing an earlier one
+     *
+     * @param hashes the hex encoded hashes by relative path using '/'
+     */
+    static void write(File targetDir, Map<String, String> hashes) throws IOException {
+        File file = getFile(targetDir);
+        Path temp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, String> entry : new TreeMap<>(hashes).entrySet()) {
+                    if (entry.getKey().indexOf('\n') >= 0) {
+                        // Cannot be represented in the format of sha256sum
+                        continue;
+                    }
+                    out.write(entry.getValue());
+                    out.write(SEPARATOR);
+                    out.write(entry.getKey());
+                    out.write('\n');
+                }
+            }
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Removes the manifest of a report directory that is published again
+     */
+    static void delete(File targetDir) throws IOException {
+        Files.deleteIfExists(getFile(targetDir).toPath());
+    }
+
+    /**
+     * Hashes the files of a report directory by reading them, for copies that have not been hashed while copying
+     *
+     * @param excluded the name of a file in the report directory that is not part of the report, e.g. the wrapper
+     * @return the hex encoded hashes by relative path using '/'
+     */
+    static Map<String, String> hash(File targetDir, String excluded) throws IOException {
+        Map<String, String> hashes = new TreeMap<>();
+        Path base = targetDir.toPath();
+        if (!Files.isDirectory(base)) {
+            return hashes;
+        }
+        try (Stream<Path> files = Files.walk(base)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String relativePath = base.relativize(file).toString().replace('\\', '/');
+                if (!relativePath.equals(excluded)) {
+                    hashes.put(relativePath, hashFile(file));
+                }
+            }
+        }
+        return hashes;
+    }
+
+    private static String hashFile(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HashingArchiver.ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // cannot happen because SHA-256 is guaranteed to exist
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Loads the manifest of a report directory, unless the given one is still up to date
+     *
+     * @param cached the manifest loaded before, may be null
+     * @return the manifest, or null if the report has none
+     */
+    static ReportManifest load(File targetDir, ReportManifest cached) throws IOException {
+        File file = getFile(targetDir);
+        long lastModified = file.lastModified();
+        if (lastModified == 0) {
+            return null;
+        }
+        if (cached != null && cached.file.equals(file) && cached.lastModified == lastModified) {
+            return cached;
+        }
+        Map<String, String> hashes = new TreeMap<>();
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int separator = line.indexOf(SEPARATOR);
+                if (separator > 0) {
+                    hashes.put(line.substring(separator + SEPARATOR.length()), line.substring(0, separator));
+                }
+            }
+        }
+        return new ReportManifest(file, lastModified, Collections.unmodifiableMap(hashes));
+    }
+
+    /**
+     * @return the hex encoded hash of a file of the report, or null if it is not in the manifest
+     */
+    String getHash(String relativePath) {
+        return this.hashes.get(relativePath);
+    }
+
+    Map<String, String> getHashes() {
+        return this.hashes;
+    }
+
+    /**
+     * Hashes the files of the report directory again and compares them with the manifest
+     *
+     * @return the relative paths of the files that are missing, changed or not in the manifest
+     */
+    List<String> verify(File targetDir, String excluded) throws IOException {
+        Map<String, String> actual = hash(targetDir, excluded);
+        List<String> mismatches = new ArrayList<>();
+        for (Map.Entry<String, String> entry : this.hashes.entrySet()) {
+            if (!entry.getValue().equals(actual.remove(entry.getKey()))) {
+                mismatches.add(entry.getKey());
+            }
+        }
+        mismatches.addAll(actual.keySet());
+        return mismatches;
+    }
+
+    /**
+     * Sets the ETag of a requested file of the report, and answers a conditional request for an unchanged file
+     *
+     * @param restOfPath the requested path within the report
+     * @return whether the request has been answered
+     */
+    boolean handleETag(StaplerRequest2 req, StaplerResponse2 rsp, String restOfPath) {
+        String hash = getHash(restOfPath.startsWith("/") ? restOfPath.substring(1) : restOfPath);
+        if (hash == null) {
+            return false;
+        }
+        String etag = "\"" + hash + "\"";
+        rsp.setHeader("ETag", etag);
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.equals(etag) || ifNoneMatch.equals("W/" + etag))) {
+            rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+}
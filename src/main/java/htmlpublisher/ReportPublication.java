@@ -0,0 +1,776 @@
+package htmlpublisher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import hudson.FilePath;
+import hudson.model.Action;
+import hudson.model.Computer;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.DirScanner;
+import hudson.util.StreamTaskListener;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import jenkins.util.VirtualFile;
+
+import htmlpublisher.util.BudgetedDirScanner;
+import htmlpublisher.util.ChangedFilesDirScanner;
+import htmlpublisher.util.FileEntryQueue;
+import htmlpublisher.util.MultithreadedFileCopyHelper;
+import htmlpublisher.util.ReportBudget;
+import htmlpublisher.util.ReportBudgetExceededException;
+import htmlpublisher.util.ResumingDirScanner;
+import htmlpublisher.util.TransformingDirScanner;
+
+/**
+ * The publishing of a single {@link HtmlPublisherTarget} by {@link HtmlPublisher#publishReports}.
+ *
+ * The copies of several targets may run concurrently, so the outcome and the log output of the copy are recorded
+ * here and reported afterwards in the order of the targets.
+ */
+class ReportPublication {
+
+    private static final Logger LOGGER = Logger.getLogger(ReportPublication.class.getName());
+
+
+    final HtmlPublisherTarget target;
+
+    private final Run<?, ?> build;
+
+    /**
+     * Receives the log output of this target, either the build listener or a buffer
+     */
+    final TaskListener listener;
+
+    private final ByteArrayOutputStream logBuffer;
+
+    FilePath archiveDir;
+
+    /**
+     * The temporary directory of the workspace, for the files written while copying, or null
+     */
+    FilePath tempDir;
+
+    /**
+     * The report directory within the archived artifacts of the build, if the report is copied from there instead of
+     * {@link #archiveDir}, otherwise null
+     */
+    VirtualFile artifactsDir;
+
+    /**
+     * The report directory, with parameters resolved
+     */
+    String reportDir;
+
+    FilePath targetDir;
+
+    /**
+     * The project level report directory, which {@link #targetDir} replaces once the report is complete, or null if
+     * the report is copied into place directly, see {@link #stage()}
+     */
+    FilePath liveDir;
+
+    /**
+     * The coordination with other builds publishing the project level report, if the report is staged
+     */
+    ReportCoordinator.Ticket ticket;
+
+    /**
+     * The index page patterns, with parameters resolved
+     */
+    String reportFiles;
+
+    boolean archiveDirExists;
+
+    /**
+     * Whether the report directory is a zip or tar archive, which is unpacked on the controller, see {@link ArchiveCopy}
+     */
+    boolean archiveFile;
+
+    int copied;
+
+    /**
+     * Index pages found while copying, or null if they have not been resolved
+     */
+    List<String> indexFiles;
+
+    /**
+     * The hashes of the copied files computed while copying, or null if they have to be computed from the copied
+     * files, see {@link ReportManifest}
+     */
+    Map<String, String> hashes;
+
+    /**
+     * The failure of the copy, if any
+     */
+    Exception failure;
+
+    /**
+     * Describes the files skipped because the report exceeds its budget, or null if all files have been copied
+     */
+    volatile String truncation;
+
+    /**
+     * Writes the wrapper file for the given index pages while the remaining files are still being copied, may be null
+     */
+    Consumer<List<String>> earlyPublisher;
+
+    /**
+     * The action attached to the build for this report, or null if not attached yet
+     */
+    volatile Action action;
+
+    /**
+     * The assembly of the report, if this target publishes one of its shards, otherwise null
+     */
+    ShardAssembly shard;
+
+    ReportPublication(Run<?, ?> build, HtmlPublisherTarget target, TaskListener buildListener, boolean bufferLog) {
+        this.build = build;
+        this.target = target;
+        if (bufferLog) {
+            this.logBuffer = new ByteArrayOutputStream();
+            this.listener = new StreamTaskListener(this.logBuffer, StandardCharsets.UTF_8);
+        } else {
+            this.logBuffer = null;
+            this.listener = buildListener;
+        }
+    }
+
+    /**
+     * @return identifies the copies that can share a single scan of the report directory
+     */
+    String getScanKey() {
+        // The copied files also depend on the budget, and a resumable copy keeps the files of an earlier attempt
+        ReportBudget budget = getBudget();
+        String files = this.target.getIncludes() + '\n' + this.target.getExcludes() + '\n' + budget
+                + (budget != null && budget.isTruncating() ? ", truncating" : "") + '\n' + this.target.getResumable();
+        if (!this.target.getTransformers().isEmpty()) {
+            // The copied files depend on the transformers, so they are not shared
+            files += '\n' + this.target.getReportName();
+        }
+        if (this.artifactsDir != null) {
+            return "artifacts:" + this.reportDir + '\n' + files;
+        }
+        return this.archiveDir.getRemote() + '\n' + files;
+    }
+
+    /**
+     * @return the report directory for the log
+     */
+    String describeSource() {
+        return this.artifactsDir != null ? "artifacts/" + this.reportDir : String.valueOf(this.archiveDir);
+    }
+
+    /**
+     * @return the number of copy workers, which count against the worker budget of the publishing
+     */
+    int getRequiredWorkers(int workerBudget) {
+        return Math.max(1, Math.min(this.target.getNumberOfWorkers(), workerBudget));
+    }
+
+    /**
+     * Checks whether the report directory exists, before any copy of the publishing is started
+     *
+     * @return false if publishing must stop at this target, because the directory is missing or could not be checked
+     */
+    boolean checkArchiveDir() {
+        try {
+            this.archiveDirExists = this.artifactsDir != null ? this.artifactsDir.isDirectory() : this.archiveDir.exists();
+            if (this.archiveDirExists && this.artifactsDir == null && ArchiveCopy.isArchive(this.archiveDir.getName())) {
+                this.archiveFile = !this.archiveDir.isDirectory();
+            }
+        } catch (Exception e) {
+            this.failure = e;
+            return false;
+        }
+        if (!this.archiveDirExists) {
+            if (!this.target.getAllowMissing()) {
+                return false;
+            }
+
+            this.listener.getLogger().println("[htmlpublisher] Specified HTML directory '" + describeSource() + "' does not exist.");
+        }
+        return true;
+    }
+
+    /**
+     * Copies the report directory to the archive target, recording the outcome
+     *
+     * @param executorService executes the copy workers
+     * @param maxNumberOfWorkers the maximum number of copy workers that may be used
+     * @throws InterruptedException if the copy has been cancelled, the partial report is deleted then
+     */
+    void copy(ExecutorService executorService, int maxNumberOfWorkers) throws InterruptedException {
+        if (this.ticket == null) {
+            copyReport(executorService, maxNumberOfWorkers);
+            return;
+        }
+        // A newer build cancels the copy by interrupting the worker it runs on, never the thread of this build
+        Future<?> copy = Computer.threadPoolForRemoting.submit((Callable<Void>) () -> {
+            if (!this.ticket.enterCopy()) {
+                // Superseded by a newer build before copying
+                return null;
+            }
+            try {
+                copyReport(executorService, maxNumberOfWorkers);
+            } catch (InterruptedException e) {
+                if (this.ticket.getSupersededBy() == 0) {
+                    throw e;
+                }
+                // Cancelled by a newer build, the partial report has been deleted
+            } finally {
+                this.ticket.exitCopy();
+            }
+            return null;
+        });
+        try {
+            copy.get();
+        } catch (InterruptedException e) {
+            // Cancelled, e.g. by aborting the build. The worker deletes the partial report before the build goes on
+            this.ticket.abort();
+            try {
+                copy.get(HtmlPublisher.PUBLISH_WORKER_TIMEOUT, TimeUnit.SECONDS);
+            } catch (ExecutionException | TimeoutException | InterruptedException cleanup) {
+                // Cancelled anyway
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Ends the publishing of a project level report, see {@link #stage()}
+     */
+    void release() {
+        if (this.ticket != null) {
+            this.ticket.release();
+        }
+    }
+
+    private void copyReport(ExecutorService executorService, int maxNumberOfWorkers) throws InterruptedException {
+        PrintStream logger = this.listener.getLogger();
+        this.truncation = null;
+        try {
+            if (this.artifactsDir != null) {
+                // Already on the controller, so there is nothing to resume
+                deleteProjectLevelReport();
+                this.copied = ArtifactsCopy.copy(this.artifactsDir, this.target.getIncludes(), this.target.getExcludes(), new File(this.targetDir.getRemote()),
+                        getBudget(), this::truncated, this.target.getTransformers(), logger);
+                return;
+            }
+            if (this.archiveFile) {
+                // A single sequential transfer, there is nothing to resume
+                deleteProjectLevelReport();
+                this.copied = ArchiveCopy.copy(this.archiveDir, this.target.getIncludes(), this.target.getExcludes(), new File(this.targetDir.getRemote()),
+                        getBudget(), this::truncated, this.target.getTransformers(), logger);
+                return;
+            }
+
+            PublishProgress progress = null;
+            if (this.target.getResumable() && HtmlPublisher.FOLLOW_SYMLINKS) {
+                // The files behind links cannot be compared with the copied ones
+                logger.println("[htmlpublisher] WARNING: Report '" + this.target.getReportName()
+                        + "' is copied from the start, following symbolic links does not support resuming");
+            } else if (this.target.getResumable()) {
+                progress = PublishProgress.start(new File(this.targetDir.getRemote()), getSource(), this.build.getExternalizableId());
+            }
+            this.hashes = null;
+            int landedFiles = 0;
+            if (progress != null && progress.isResuming()) {
+                landedFiles = progress.getLandedFiles().size();
+                logger.println("[htmlpublisher] Resuming publishing, " + landedFiles + " file(s) have already been copied");
+            } else {
+                deleteProjectLevelReport();
+            }
+
+            // Following links, the index pages and the manifest are resolved from the copied files afterwards
+            if (HtmlPublisher.FOLLOW_SYMLINKS && (getBudget() != null || !this.target.getTransformers().isEmpty())) {
+                DirScanner dirScanner = budgeted(HtmlPublisher.dirScannerGlob(this.target.getIncludes(), this.target.getExcludes(), true));
+                this.copied = this.archiveDir.copyRecursiveTo(transforming(dirScanner), this.targetDir, this.target.getIncludes());
+            } else if (HtmlPublisher.FOLLOW_SYMLINKS) {
+                this.copied = this.archiveDir.copyRecursiveTo(this.target.getIncludes(), this.target.getExcludes(), this.targetDir);
+            } else {
+                int numberOfWorkers = Math.min(this.target.getNumberOfWorkers(), maxNumberOfWorkers);
+                // The budget counts all files, also those already copied by an interrupted publishing
+                DirScanner dirScanner = budgeted(HtmlPublisher.dirScannerGlob(this.target.getIncludes(), this.target.getExcludes(), true, LinkOption.NOFOLLOW_LINKS));
+                if (landedFiles > 0) {
+                    dirScanner = new ResumingDirScanner(dirScanner, progress.getLandedFiles());
+                }
+                transfer(transforming(dirScanner), executorService, numberOfWorkers, this.listener, true);
+            }
+
+            if (landedFiles > 0) {
+                this.copied += landedFiles;
+                // The scan has only seen the missing files
+                this.indexFiles = null;
+                this.hashes = null;
+            }
+            if (progress != null) {
+                progress.complete();
+            }
+        } catch (InterruptedException e) {
+            throw cancel(e);
+        } catch (Exception e) {
+            if (e instanceof InterruptedIOException || Thread.currentThread().isInterrupted()) {
+                throw cancel(e);
+            }
+            if (findBudgetExceeded(e) != null) {
+                // Not published, so the files copied before the budget was exceeded are not kept
+                try {
+                    ReportTrash.delete(new File(this.targetDir.getRemote()));
+                } catch (IOException deleteFailure) {
+                    e.addSuppressed(deleteFailure);
+                }
+            }
+            this.failure = e;
+        }
+    }
+
+    /**
+     * Copies the files that have changed since the last call with the same key, while the report is still being
+     * written. The index pages are only those among the changed files.
+     *
+     * @param key identifies the files copied by the earlier calls, which are kept on the node
+     * @return the number of copied files
+     */
+    int copyChanges(ExecutorService executorService, UUID key) throws Exception {
+        // The budget counts all files of the report, also those that have not changed
+        DirScanner dirScanner = budgeted(HtmlPublisher.FOLLOW_SYMLINKS
+                ? HtmlPublisher.dirScannerGlob(this.target.getIncludes(), this.target.getExcludes(), true)
+                : HtmlPublisher.dirScannerGlob(this.target.getIncludes(), this.target.getExcludes(), true, LinkOption.NOFOLLOW_LINKS));
+        this.copied = 0;
+        this.indexFiles = null;
+        this.hashes = null;
+        this.truncation = null;
+        // The changes are logged by the caller, the copy itself is repeated too often
+        transfer(transforming(new ChangedFilesDirScanner(dirScanner, key)), executorService, this.target.getNumberOfWorkers(), TaskListener.NULL, false);
+        return this.copied;
+    }
+
+    /**
+     * @return the budget of the target combined with the global limits, or null if the report is unlimited
+     */
+    ReportBudget getBudget() {
+        int maxFiles = minLimit(this.target.getMaxFiles(), HtmlPublisherConfiguration.getConfiguredMaxReportFiles());
+        int maxSize = minLimit(this.target.getMaxSize(), HtmlPublisherConfiguration.getConfiguredMaxReportSize());
+        if (maxFiles <= 0 && maxSize <= 0) {
+            return null;
+        }
+        return new ReportBudget(maxFiles, maxSize * 1024L * 1024L, this.target.getTruncateOverLimit());
+    }
+
+    /**
+     * @return the stricter of two limits, where 0 is unlimited
+     */
+    private static int minLimit(int limit, int otherLimit) {
+        if (limit <= 0) {
+            return otherLimit;
+        }
+        return otherLimit <= 0 ? limit : Math.min(limit, otherLimit);
+    }
+
+    /**
+     * @return the scanner counting the scanned files against the budget of the target, if any
+     */
+    private DirScanner budgeted(DirScanner dirScanner) {
+        ReportBudget budget = getBudget();
+        if (budget == null) {
+            return dirScanner;
+        }
+        // The files are counted on the node, which reports a truncation back
+        ReportBudget.Listener listener = this.archiveDir.getChannel().export(ReportBudget.Listener.class, this::truncated);
+        return new BudgetedDirScanner(dirScanner, budget, listener);
+    }
+
+    private void truncated(int copiedFiles, long copiedBytes, int skippedFiles, long skippedBytes) {
+        this.truncation = String.format(Locale.ENGLISH, "%,d file(s) / %,.1f MB over the limit of %s have not been copied",
+                skippedFiles, (float) skippedBytes / 1024 / 1024, getBudget());
+    }
+
+    /**
+     * @return the exception telling that the report exceeds its budget, if it is the failure or its cause
+     */
+    static ReportBudgetExceededException findBudgetExceeded(Throwable failure) {
+        for (Throwable e = failure; e != null; e = e.getCause()) {
+            if (e instanceof ReportBudgetExceededException) {
+                return (ReportBudgetExceededException) e;
+            }
+            if (e.getCause() == e) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks the report as truncated, so its pages can tell
+     */
+    void writeTruncation() {
+        try {
+            ReportTruncation.write(new File(this.targetDir.getRemote()), this.truncation);
+        } catch (IOException e) {
+            this.listener.getLogger().println("[htmlpublisher] Could not mark '" + this.target.getReportName() + "' as truncated: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the scanner applying the transformers of the target to the scanned files, if any
+     */
+    private DirScanner transforming(DirScanner dirScanner) {
+        if (this.target.getTransformers().isEmpty()) {
+            return dirScanner;
+        }
+        return new TransformingDirScanner(dirScanner, this.target.getTransformers(), this.tempDir != null ? this.tempDir.getRemote() : null);
+    }
+
+    /**
+     * Copies the files of the scanner to the archive target, recording the number of copied files and the index pages
+     *
+     * @param showProgress whether the report is shown with its progress as soon as its index pages have been copied
+     */
+    private void transfer(DirScanner dirScanner, ExecutorService executorService, int numberOfWorkers, TaskListener listener,
+            boolean showProgress) throws IOException, InterruptedException, TimeoutException {
+        PrintStream logger = listener.getLogger();
+        boolean singleCall = this.archiveDir.isRemote() && (numberOfWorkers > 1 || HtmlPublisher.PUBLISH_SINGLE_CALL);
+        if (singleCall) {
+            // A single call to the agent, instead of one per worker and for the queue
+            if (numberOfWorkers <= 1) {
+                logger.println("[htmlpublisher] Copying recursive using current thread");
+            } else {
+                logger.println("[htmlpublisher] Copying recursive using " + numberOfWorkers + " workers");
+            }
+            PublishingStatus status = showProgress ? startPublishingStatus() : null;
+            try {
+                FileEntryQueue.Statistic statistic = MultithreadedFileCopyHelper.copyRecursiveToInSingleCall(
+                        this.archiveDir, dirScanner, this.reportFiles, this.targetDir, Math.max(1, numberOfWorkers),
+                        HtmlPublisher.PUBLISH_MULTIPLEXED && numberOfWorkers > 1, executorService, HtmlPublisher.PUBLISH_WORKER_TIMEOUT,
+                        listener, status);
+                if (statistic != null) {
+                    this.copied = statistic.getOverallCount();
+                    this.indexFiles = statistic.getIndexFiles();
+                    this.hashes = statistic.getHashes();
+                }
+            } finally {
+                finishPublishingStatus(status);
+            }
+        } else if (numberOfWorkers <= 1) {
+            logger.println("[htmlpublisher] Copying recursive using current thread");
+            this.copied = this.archiveDir.copyRecursiveTo(dirScanner, this.targetDir, this.target.getIncludes());
+        } else {
+            logger.println("[htmlpublisher] Copying recursive using " + numberOfWorkers + " workers");
+            PublishingStatus status = showProgress ? startPublishingStatus() : null;
+            try {
+                FileEntryQueue.Statistic statistic = MultithreadedFileCopyHelper.copyRecursiveTo(
+                        this.archiveDir, dirScanner, this.reportFiles, this.targetDir, this.target.getIncludes(),
+                        numberOfWorkers, executorService, HtmlPublisher.PUBLISH_WORKER_TIMEOUT, listener, status);
+                this.copied = statistic.getOverallCount();
+                this.indexFiles = statistic.getIndexFiles();
+            } finally {
+                finishPublishingStatus(status);
+            }
+        }
+    }
+
+    /**
+     * Shows the progress of the copy on the pages of the report, which is viewable as soon as its index pages have
+     * been copied
+     *
+     * @return the status, or null if the report is only shown after copying
+     */
+    private PublishingStatus startPublishingStatus() {
+        if (this.earlyPublisher == null) {
+            return null;
+        }
+        return PublishingStatus.start(new File(this.targetDir.getRemote()), this.earlyPublisher);
+    }
+
+    private void finishPublishingStatus(PublishingStatus status) {
+        if (status != null && status.finish()) {
+            this.listener.getLogger().println("[htmlpublisher] Remaining files of '" + this.target.getReportName() + "' copied");
+        }
+    }
+
+    /**
+     * Takes the files from another target with the same report directory, which has already been copied, instead of
+     * scanning and transferring the report directory again. Only the files of the report are taken, this target writes
+     * its own wrapper file and manifest.
+     */
+    void copyFrom(ReportPublication source) throws InterruptedException {
+        if (getSupersededBy() > 0) {
+            return;
+        }
+        if (source.getSupersededBy() > 0) {
+            // The source has not been copied, because the newer build publishes its report instead
+            copy(Timer.get(), 1);
+            return;
+        }
+        if (source.failure != null) {
+            this.failure = source.failure;
+            return;
+        }
+        try {
+            deleteProjectLevelReport();
+            if (this.archiveDirExists) {
+                this.listener.getLogger().println("[htmlpublisher] Copying from report '" + source.target.getReportName() + "' with the same HTML directory");
+                Map<String, String> hashes = source.hashes;
+                if (hashes != null) {
+                    // The files found by the scan of the source
+                    this.copied = copyFiles(new File(source.targetDir.getRemote()), hashes.keySet());
+                } else {
+                    this.copied = source.targetDir.copyRecursiveTo(HtmlPublisherTarget.INCLUDE_ALL_PATTERN, source.target.getWrapperName(), this.targetDir);
+                }
+                // The same files, hashed once
+                this.hashes = hashes;
+                // Truncated by the same budget
+                this.truncation = source.truncation;
+            }
+        } catch (InterruptedException e) {
+            throw cancel(e);
+        } catch (Exception e) {
+            if (e instanceof InterruptedIOException || Thread.currentThread().isInterrupted()) {
+                throw cancel(e);
+            }
+            this.failure = e;
+        }
+    }
+
+    /**
+     * Copies the given files of a report directory on the controller into the report directory of this target
+     *
+     * @param relativePaths the paths of the files relative to the directory, using '/'
+     * @return the number of copied files
+     */
+    private int copyFiles(File sourceDir, Collection<String> relativePaths) throws IOException, InterruptedException {
+        Path targetDir = new File(this.targetDir.getRemote()).toPath();
+        for (String relativePath : relativePaths) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            Path target = targetDir.resolve(relativePath);
+            Files.createDirectories(target.getParent());
+            Files.copy(sourceDir.toPath().resolve(relativePath), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+        return relativePaths.size();
+    }
+
+    /**
+     * Deletes the partial report of a cancelled copy
+     *
+     * @return the exception to rethrow
+     */
+    private InterruptedException cancel(Exception e) {
+        withdrawAction();
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (this.target.getResumable() && jenkins != null && jenkins.isTerminating()) {
+            // Interrupted by the shutdown of the controller, keep the files for resuming after the restart
+            this.listener.getLogger().println("[htmlpublisher] Copying to '" + this.targetDir.getName() + "' interrupted, it will be resumed");
+            return asInterruptedException(e);
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            // Only renamed into the trash, so the pending interrupt does not stop the cleanup
+            ReportTrash.delete(new File(this.targetDir.getRemote()));
+        } catch (IOException deleteFailure) {
+            e.addSuppressed(deleteFailure);
+        }
+        this.listener.getLogger().println("[htmlpublisher] Copying to '" + this.targetDir.getName() + "' cancelled, deleting the partial report took "
+                + (System.currentTimeMillis() - startTime) + " ms");
+
+        return asInterruptedException(e);
+    }
+
+    private static InterruptedException asInterruptedException(Exception e) {
+        if (e instanceof InterruptedException) {
+            return (InterruptedException) e;
+        }
+        InterruptedException interruptedException = new InterruptedException(e.getMessage());
+        interruptedException.initCause(e);
+        return interruptedException;
+    }
+
+    /**
+     * @return identifies the copied directory, including its node, also across reconnects of the agent
+     */
+    private String getSource() {
+        Computer computer = this.archiveDir.toComputer();
+        return (computer != null ? computer.getName() : "") + ':' + this.archiveDir.getRemote();
+    }
+
+    void deleteProjectLevelReport() throws IOException, InterruptedException {
+        // The hashes of the earlier copy would be served as ETags of the new files
+        ReportManifest.delete(new File(this.targetDir.getRemote()));
+        ReportTruncation.delete(new File(this.targetDir.getRemote()));
+        if (this.shard != null) {
+            // Only the files of this shard are replaced, the other shards are kept unless published by another build
+            this.shard.begin(this.build.getExternalizableId());
+            return;
+        }
+        if (!this.target.getKeepAll()) {
+            // We are only keeping one copy at the project level, so remove the old one.
+            // If the report is staged, this is a leftover staging directory, the old report is replaced by the swap
+            ReportTrash.delete(new File(this.targetDir.getRemote()));
+        }
+    }
+
+    /**
+     * Writes the manifest of the copied files, from the hashes computed while copying if there are any, otherwise by
+     * hashing the copied files
+     */
+    void writeManifest() {
+        File dir = new File(this.targetDir.getRemote());
+        try {
+            Map<String, String> manifest = this.hashes;
+            if (manifest == null) {
+                manifest = ReportManifest.hash(dir, this.target.getWrapperName());
+            }
+            ReportManifest.write(dir, manifest);
+        } catch (IOException e) {
+            // The report is served without ETags, and cannot be verified
+            this.listener.getLogger().println("[htmlpublisher] Could not write the manifest of '" + this.target.getReportName() + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Copies the report into a staging directory next to the project level report, so the earlier report is shown
+     * until the new one is complete, see {@link #swap()}. Like the other state kept next to the report directory, the
+     * staging directory is never served.
+     *
+     * The name only depends on the build, so an interrupted publishing can be resumed into the same directory.
+     */
+    void stage() {
+        File live = new File(this.targetDir.getRemote());
+        this.liveDir = this.targetDir;
+        this.targetDir = new FilePath(new File(live.getParentFile(), "." + live.getName() + ".staging-" + this.build.getNumber()));
+        this.ticket = ReportCoordinator.register(live, this.build.getNumber());
+    }
+
+    /**
+     * Replaces the project level report with the complete staging directory. The earlier report is moved into the
+     * {@link ReportTrash trash}, so the report is only missing between two renames.
+     *
+     * @param sidecars writes the files next to the replaced report directory, while no other build can replace it, may be null
+     * @return false if a newer build has superseded the publishing meanwhile, so the report has not been replaced
+     */
+    boolean swap(Runnable sidecars) throws IOException {
+        File live = new File(this.liveDir.getRemote());
+        File staging = new File(this.targetDir.getRemote());
+        boolean replaced = this.ticket.replace(() -> {
+            // The manifest and marker of the earlier report do not describe the new one
+            ReportManifest.delete(live);
+            ReportTruncation.delete(live);
+            ReportTrash.delete(live);
+            File legacyDir = this.target.getLegacyProjectArchiveDir(this.build.getParent());
+            if (legacyDir != null) {
+                // Published before the storage root has been configured, and replaced by the report in the storage root
+                ReportManifest.delete(legacyDir);
+                ReportTruncation.delete(legacyDir);
+                ReportTrash.delete(legacyDir);
+            }
+            if (staging.exists()) {
+                Files.move(staging.toPath(), live.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            ReportChanges.changed();
+            this.targetDir = this.liveDir;
+            this.liveDir = null;
+            if (sidecars != null) {
+                sidecars.run();
+            }
+        });
+        return replaced;
+    }
+
+    /**
+     * @return the number of the newer build that publishes the project level report instead, or 0
+     */
+    int getSupersededBy() {
+        return this.ticket != null ? this.ticket.getSupersededBy() : 0;
+    }
+
+    /**
+     * Deletes the staging directory of a report that is not published, so the earlier report is kept
+     */
+    void discardStaging() {
+        if (this.liveDir == null) {
+            return;
+        }
+        try {
+            ReportTrash.delete(new File(this.targetDir.getRemote()));
+            PublishProgress.getManifest(new File(this.targetDir.getRemote())).delete();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not delete " + this.targetDir, e);
+        }
+    }
+
+    /**
+     * Removes the copied files of a target that is not published, because publishing failed for an earlier target
+     */
+    void discard() {
+        withdrawAction();
+        try {
+            if (this.copied > 0) {
+                ReportTrash.delete(new File(this.targetDir.getRemote()));
+            }
+        } catch (IOException e) {
+            // Not attached to the build anyway
+        }
+    }
+
+    /**
+     * Removes the action of a report that has been shown while copying, but could not be published
+     */
+    void withdrawAction() {
+        Action action = this.action;
+        if (action != null) {
+            this.build.removeAction(action);
+            this.action = null;
+        }
+    }
+
+    /**
+     * Writes the buffered log output of this target to the build log
+     */
+    void flushLog(PrintStream logger) throws IOException {
+        if (this.logBuffer != null) {
+            this.listener.getLogger().flush();
+            this.logBuffer.writeTo(logger);
+            this.logBuffer.reset();
+        }
+    }
+
+}
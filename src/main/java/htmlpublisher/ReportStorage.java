@@ -0,0 +1,89 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.io.IOException;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.DescriptorExtensionList;
+import hudson.ExtensionPoint;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+import jenkins.util.VirtualFile;
+
+/**
+ * Stores the reports kept for each build through a backend, instead of keeping them in the {@code htmlreports}
+ * directory of the build, see {@link HtmlPublisherConfiguration#getReportStorage()}.
+ *
+ * Like an {@link jenkins.model.ArtifactManager}, a backend hands out its stored files as a {@link VirtualFile}, which
+ * the report pages are served from. A backend whose files have a {@link VirtualFile#toExternalURL() external URL}
+ * has the browser redirected to it, so the files do not pass through the controller.
+ *
+ * A report is published as before, and handed to the backend once it is complete. Its local copy is deleted once it
+ * has been stored, only the files next to the report directory are kept, e.g. its manifest, see
+ * {@link StoredReport}. Reports at project level are replaced by every build, so they are kept locally.
+ *
+ * Each stored report records the {@link Descriptor#getId() id} of its backend and its {@link #getLocation() location},
+ * so it is still served from there after another backend has been configured, see
+ * {@link ReportStorageDescriptor#forLocation(String)}.
+ */
+public abstract class ReportStorage extends AbstractDescribableImpl<ReportStorage> implements ExtensionPoint {
+
+    /**
+     * @return where the backend stores the reports, e.g. its root directory or bucket, without any credentials
+     */
+    @NonNull
+    public String getLocation() {
+        return "";
+    }
+
+    /**
+     * Stores the files of a published report
+     *
+     * @param reportName the name of the report directory, see {@link HtmlPublisherTarget#getSanitizedName()}
+     * @param reportDir the complete report, which is deleted once it has been stored
+     */
+    public abstract void store(@NonNull Run<?, ?> build, @NonNull String reportName, @NonNull File reportDir,
+            @NonNull TaskListener listener) throws IOException, InterruptedException;
+
+    /**
+     * @param buildId the {@link Run#getExternalizableId() id} of the build the report has been stored for
+     * @param reportName the name of the report directory
+     * @return the root of the stored report, which does not exist if the report has not been stored
+     */
+    @NonNull
+    public abstract VirtualFile root(@NonNull String buildId, @NonNull String reportName) throws IOException;
+
+    /**
+     * Deletes a stored report, e.g. because its build has been deleted
+     */
+    public abstract void delete(@NonNull String buildId, @NonNull String reportName) throws IOException, InterruptedException;
+
+    /**
+     * The descriptor of a backend, which can also resolve the reports it has stored in another location
+     */
+    public abstract static class ReportStorageDescriptor extends Descriptor<ReportStorage> {
+
+        /**
+         * @param location the {@link ReportStorage#getLocation() location} of a stored report
+         * @return a backend serving the reports stored in the location, or null if the reports of a location other
+         *         than the configured one cannot be served
+         */
+        @CheckForNull
+        public ReportStorage forLocation(@NonNull String location) {
+            return null;
+        }
+
+    }
+
+    /**
+     * @return the descriptors of all backends
+     */
+    public static DescriptorExtensionList<ReportStorage, Descriptor<ReportStorage>> all() {
+        return Jenkins.get().getDescriptorList(ReportStorage.class);
+    }
+
+}
@@ -0,0 +1,114 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import jenkins.model.Jenkins;
+
+/**
+ * Keeps the reports in the storage root in line with their jobs and builds, see
+ * {@link HtmlPublisherConfiguration#getStorageRoot()}, and deletes the reports stored for deleted builds by the
+ * {@link ReportStorage}. Reports in the directories of the jobs and builds are deleted and moved with them by Jenkins
+ * itself. The stored reports of a deleted job are left to the backend, e.g. its own retention.
+ */
+public class ReportStorageListener {
+
+    private static final Logger LOGGER = Logger.getLogger(ReportStorageListener.class.getName());
+
+    private ReportStorageListener() {
+    }
+
+    /**
+     * Deletes the reports of a deleted build, also those stored by the {@link ReportStorage}, through the backend that
+     * has stored them, see {@link StoredReport}
+     */
+    @Extension
+    public static class BuildListener extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onDeleted(@NonNull Run<?, ?> run) {
+            File reportsDir = HtmlPublisherConfiguration.getReportsDir(run);
+            for (HtmlPublisherTarget.HTMLBuildAction action : run.getActions(HtmlPublisherTarget.HTMLBuildAction.class)) {
+                try {
+                    StoredReport.delete(new File(reportsDir, action.getHTMLTarget().getSanitizedName()));
+                } catch (IOException | InterruptedException e) {
+                    LOGGER.log(Level.WARNING, "Could not delete the stored reports of " + run, e);
+                }
+            }
+            File storageRoot = HtmlPublisherConfiguration.getStorageRootDir();
+            if (storageRoot != null) {
+                delete(HtmlPublisherConfiguration.getBuildDir(storageRoot, run));
+            }
+        }
+
+    }
+
+    /**
+     * Deletes the reports of a deleted job, and moves those of a renamed or moved job
+     */
+    @Extension
+    public static class JobListener extends ItemListener {
+
+        @Override
+        public void onDeleted(Item item) {
+            File storageRoot = HtmlPublisherConfiguration.getStorageRootDir();
+            if (storageRoot != null) {
+                delete(HtmlPublisherConfiguration.getItemDir(storageRoot, item));
+            }
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            // The directories of the reports move with the job
+            ReportChanges.changed();
+            File storageRoot = HtmlPublisherConfiguration.getStorageRootDir();
+            if (storageRoot == null) {
+                return;
+            }
+            File oldDir = getItemDir(storageRoot, oldFullName);
+            if (!oldDir.exists()) {
+                return;
+            }
+            File newDir = HtmlPublisherConfiguration.getItemDir(storageRoot, item);
+            try {
+                Files.createDirectories(newDir.getParentFile().toPath());
+                Files.move(oldDir.toPath(), newDir.toPath());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not move the reports of " + oldFullName + " to " + newDir, e);
+            }
+        }
+
+    }
+
+    /**
+     * @return the directory of an item by its full name, which may not exist anymore
+     */
+    static File getItemDir(File storageRoot, String fullName) {
+        File dir = storageRoot;
+        for (String name : fullName.split("/")) {
+            dir = new File(new File(dir, "jobs"), name);
+        }
+        return dir;
+    }
+
+    private static void delete(File dir) {
+        if (Jenkins.getInstanceOrNull() == null || !dir.exists()) {
+            return;
+        }
+        try {
+            ReportTrash.delete(dir);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not delete the reports in " + dir, e);
+        }
+    }
+
+}
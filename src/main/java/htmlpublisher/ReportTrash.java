@@ -0,0 +1,206 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.Util;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+
+import htmlpublisher.util.RateLimiter;
+
+/**
+ * Deletes report directories in the background, so publishing never waits for the deletion of large reports.
+ *
+ * A report directory to delete is renamed into the trash directory right away, which takes a single rename, and
+ * deleted from there by this task. The deletion is limited to
+ * {@link HtmlPublisherConfiguration#getTrashDeletesPerSecond()} files per second, so it does not starve the other disk I/O of the controller. The trash is kept on disk, so the deletion
+ * continues after a restart of the controller.
+ *
+ * Reports in the storage root have a trash of their own there, see {@link HtmlPublisherConfiguration}. A directory
+ * that cannot be renamed into the trash, e.g. because it is on another file system, is deleted in place like before.
+ */
+@Extension
+public class ReportTrash extends AsyncPeriodicWork {
+
+    private static final Logger LOGGER = Logger.getLogger(ReportTrash.class.getName());
+
+    public ReportTrash() {
+        super("HTML Publisher report trash");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.MINUTES.toMillis(5);
+    }
+
+    /**
+     * @return the trash directories, in the Jenkins home and in the storage root if there is one, see
+     * {@link HtmlPublisherConfiguration#getStorageRoot()}
+     */
+    static List<File> getDirectories() {
+        List<File> trashDirs = new ArrayList<>();
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins != null) {
+            trashDirs.add(new File(jenkins.getRootDir(), "htmlreports-trash"));
+            File storageRoot = HtmlPublisherConfiguration.getStorageRootDir();
+            if (storageRoot != null) {
+                trashDirs.add(new File(storageRoot, ".trash"));
+            }
+        }
+        return trashDirs;
+    }
+
+    /**
+     * @return the trash directory on the same file system as the given directory, if possible, or null if not
+     * running on the controller
+     */
+    static File getDirectory(File dir) {
+        File storageRoot = HtmlPublisherConfiguration.getStorageRootDir();
+        if (storageRoot != null && dir.toPath().toAbsolutePath().startsWith(storageRoot.toPath().toAbsolutePath())) {
+            return new File(storageRoot, ".trash");
+        }
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        return jenkins != null ? new File(jenkins.getRootDir(), "htmlreports-trash") : null;
+    }
+
+    /**
+     * Moves a directory into the trash, or deletes it in place if it cannot be moved
+     */
+    static void delete(File dir) throws IOException {
+        if (!dir.exists()) {
+            return;
+        }
+        ReportChanges.changed();
+        File trash = getDirectory(dir);
+        if (trash != null) {
+            try {
+                Files.createDirectories(trash.toPath());
+                File target = new File(trash, dir.getName() + "-" + UUID.randomUUID());
+                Files.move(dir.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                // Starts the deletion, unless it is running already and picks up the directory anyway
+                ReportTrash work = ExtensionList.lookup(ReportTrash.class).get(ReportTrash.class);
+                if (work != null) {
+                    work.run();
+                }
+                return;
+            } catch (AtomicMoveNotSupportedException e) {
+                LOGGER.log(Level.FINE, "Cannot move " + dir + " into the trash, deleting it in place", e);
+            } catch (IOException e) {
+                // e.g. a file of the report is open on Windows
+                LOGGER.log(Level.FINE, "Could not move " + dir + " into the trash, deleting it in place", e);
+            }
+        }
+        Util.deleteRecursive(dir);
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        int deletesPerSecond = HtmlPublisherConfiguration.getConfiguredTrashDeletesPerSecond();
+        for (File trash : getDirectories()) {
+            if (trash.isDirectory()) {
+                empty(trash, deletesPerSecond);
+            }
+        }
+    }
+
+    private static void empty(File trash, int deletesPerSecond) throws IOException, InterruptedException {
+        // Directories moved into the trash meanwhile are picked up by the next pass, those failing by the next run
+        boolean deletedAny = true;
+        while (deletedAny) {
+            deletedAny = false;
+            try (DirectoryStream<Path> dirs = Files.newDirectoryStream(trash.toPath())) {
+                for (Path dir : dirs) {
+                    long startTime = System.currentTimeMillis();
+                    try {
+                        long deleted = deleteTree(dir, deletesPerSecond);
+                        LOGGER.log(Level.FINE, "Deleted {0} files of {1} in {2} ms",
+                                new Object[] {deleted, dir.getFileName(), System.currentTimeMillis() - startTime});
+                        deletedAny = true;
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, "Could not delete " + dir + ", retrying later", e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes a directory tree, limiting the rate of deletes
+     *
+     * @param deletesPerSecond maximum number of files and directories deleted per second, unlimited if 0
+     * @return the number of deleted files and directories
+     */
+    static long deleteTree(Path root, int deletesPerSecond) throws IOException, InterruptedException {
+        RateLimiter limiter = new RateLimiter(deletesPerSecond);
+        long[] deleted = new long[1];
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                    if (e instanceof NoSuchFileException) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    throw e;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    if (e != null && !(e instanceof NoSuchFileException)) {
+                        throw e;
+                    }
+                    delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private void delete(Path path) throws IOException {
+                    Files.deleteIfExists(path);
+                    deleted[0]++;
+                    try {
+                        limiter.acquire(1);
+                    } catch (InterruptedException e) {
+                        throw new DeleteInterruptedException(e);
+                    }
+                }
+            });
+        } catch (DeleteInterruptedException e) {
+            throw (InterruptedException) e.getCause();
+        }
+        return deleted[0];
+    }
+
+    private static final class DeleteInterruptedException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        DeleteInterruptedException(InterruptedException cause) {
+            super(cause);
+        }
+
+    }
+
+}
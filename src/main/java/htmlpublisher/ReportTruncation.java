@@ -0,0 +1,54 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+
+import htmlpublisher.util.ReportBudget;
+
+/**
+ * Marks a report that has been truncated because it exceeds its {@link ReportBudget}, so the report pages can tell.
+ *
+ * Like the manifest of {@link ReportManifest}, the marker is written next to the report directory, so it is never
+ * served as part of the report.
+ */
+class ReportTruncation {
+
+    private ReportTruncation() {
+    }
+
+    static File getFile(File targetDir) {
+        return new File(targetDir.getParentFile(), "." + targetDir.getName() + ".truncated");
+    }
+
+    /**
+     * @param message describes the skipped files
+     */
+    static void write(File targetDir, String message) throws IOException {
+        Files.writeString(getFile(targetDir).toPath(), message, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Removes the marker of a report directory that is published again
+     */
+    static void delete(File targetDir) throws IOException {
+        Files.deleteIfExists(getFile(targetDir).toPath());
+    }
+
+    /**
+     * @return the message of a truncated report, or null if the report is complete
+     */
+    static String read(File targetDir) {
+        try {
+            return Files.readString(getFile(targetDir).toPath(), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // The report is still served, only without the note
+            return null;
+        }
+    }
+
+}
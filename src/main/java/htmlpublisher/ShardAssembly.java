@@ -0,0 +1,228 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.tools.ant.types.FileSet;
+
+import hudson.Util;
+
+import htmlpublisher.HtmlPublisherTarget.ShardLayout;
+
+/**
+ * The assembly of a report from shards, which are published separately, e.g. by parallel branches on different
+ * agents, see {@link HtmlPublisherTarget#getShard()}.
+ *
+ * Each shard is copied straight from its node, either into a subdirectory of the report directory named after the
+ * shard, or into a staging directory whose files are then moved into the report directory by path. The arrival of
+ * each shard is recorded, and the wrapper file is written once the declared number of shards has arrived.
+ *
+ * Like the progress manifest of {@link PublishProgress}, the state of the assembly is kept next to the report
+ * directory, in a directory whose name starts with a dot, so it is never served as part of the report.
+ */
+class ShardAssembly {
+
+    private static final String BUILD = "build";
+
+    private static final String ARRIVED = ".arrived";
+
+    private static final String STAGING = ".staging";
+
+    /**
+     * Serializes the shards of a report directory, striped so that no lock is kept per directory
+     */
+    private static final Object[] LOCKS = new Object[64];
+
+    static {
+        Arrays.setAll(LOCKS, i -> new Object());
+    }
+
+    private final File reportDir;
+
+    private final File stateDir;
+
+    private final String shard;
+
+    private final String shardDirName;
+
+    private final int shards;
+
+    private final ShardLayout layout;
+
+    ShardAssembly(File reportDir, String shard, int shards, ShardLayout layout) {
+        this.reportDir = reportDir;
+        this.stateDir = new File(reportDir.getParentFile(), "." + reportDir.getName() + ".shards");
+        this.shard = shard;
+        this.shardDirName = HtmlPublisherTarget.sanitizeReportName(shard, true);
+        this.shards = Math.max(1, shards);
+        this.layout = layout;
+    }
+
+    /**
+     * @return the lock to hold while the report directory is assembled
+     */
+    Object getLock() {
+        return LOCKS[Math.floorMod(this.reportDir.hashCode(), LOCKS.length)];
+    }
+
+    File getReportDir() {
+        return this.reportDir;
+    }
+
+    String getShard() {
+        return this.shard;
+    }
+
+    int getShards() {
+        return this.shards;
+    }
+
+    /**
+     * @return the directory the files of this shard are copied to
+     */
+    File getCopyTarget() {
+        if (this.layout == ShardLayout.SUBDIRECTORY) {
+            return new File(this.reportDir, this.shardDirName);
+        }
+        return new File(this.stateDir, this.shardDirName + STAGING);
+    }
+
+    /**
+     * Prepares the copy of this shard. The report directory is cleared if it has been assembled by another build,
+     * which is only the case for reports at project level.
+     *
+     * @param buildId the build publishing the shard
+     */
+    void begin(String buildId) throws IOException {
+        synchronized (getLock()) {
+            File buildFile = new File(this.stateDir, BUILD);
+            if (!buildFile.isFile() || !buildId.equals(Files.readString(buildFile.toPath(), StandardCharsets.UTF_8))) {
+                ReportTrash.delete(this.reportDir);
+                ReportTrash.delete(this.stateDir);
+                Files.createDirectories(this.stateDir.toPath());
+                Files.writeString(buildFile.toPath(), buildId, StandardCharsets.UTF_8);
+            }
+            // A shard published again replaces its earlier files
+            ReportTrash.delete(getCopyTarget());
+        }
+    }
+
+    /**
+     * Records the arrival of this shard, after its files have been copied. The caller holds the {@link #getLock()
+     * lock}.
+     *
+     * @param reportFiles the index page patterns, relative to the directory of each shard
+     * @return the index pages of the assembled report, or null if shards are still missing
+     * @throws IOException if the files of the shard cannot be merged into the report directory
+     */
+    List<String> arrive(String reportFiles) throws IOException {
+        if (this.layout != ShardLayout.SUBDIRECTORY) {
+            merge(getCopyTarget());
+        }
+        Files.createDirectories(this.stateDir.toPath());
+        Files.writeString(new File(this.stateDir, this.shardDirName + ARRIVED).toPath(), this.shard, StandardCharsets.UTF_8);
+
+        List<String> arrived = getArrivedShardDirNames();
+        if (arrived.size() < this.shards) {
+            return null;
+        }
+
+        List<String> indexFiles = new ArrayList<>();
+        if (this.layout == ShardLayout.SUBDIRECTORY) {
+            // A tab per index page of each shard, in the order of the shard names
+            for (String shardDirName : arrived) {
+                File shardDir = new File(this.reportDir, shardDirName);
+                if (!shardDir.isDirectory()) {
+                    continue;
+                }
+                for (String pattern : reportFiles.split(",")) {
+                    FileSet fs = Util.createFileSet(shardDir, pattern);
+                    for (String indexFile : fs.getDirectoryScanner().getIncludedFiles()) {
+                        indexFiles.add(shardDirName + "/" + indexFile);
+                    }
+                }
+            }
+        } else {
+            for (String pattern : reportFiles.split(",")) {
+                FileSet fs = Util.createFileSet(this.reportDir, pattern);
+                indexFiles.addAll(Arrays.asList(fs.getDirectoryScanner().getIncludedFiles()));
+            }
+        }
+        return indexFiles;
+    }
+
+    /**
+     * @return the number of shards that have not arrived yet
+     */
+    int getMissingShards() throws IOException {
+        return Math.max(0, this.shards - getArrivedShardDirNames().size());
+    }
+
+    private List<String> getArrivedShardDirNames() throws IOException {
+        if (!this.stateDir.isDirectory()) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(this.stateDir.toPath())) {
+            return files.map(f -> f.getFileName().toString())
+                    .filter(name -> name.endsWith(ARRIVED))
+                    .map(name -> name.substring(0, name.length() - ARRIVED.length()))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Moves the files of the staging directory into the report directory by path, resolving conflicts with the files
+     * of other shards according to the layout
+     */
+    private void merge(File staging) throws IOException {
+        Path from = staging.toPath();
+        Path to = this.reportDir.toPath();
+        List<Path> files;
+        if (Files.isDirectory(from)) {
+            try (Stream<Path> walk = Files.walk(from)) {
+                files = walk.filter(f -> !Files.isDirectory(f, LinkOption.NOFOLLOW_LINKS)).collect(Collectors.toList());
+            }
+        } else {
+            files = List.of();
+        }
+
+        try {
+            if (this.layout == ShardLayout.MERGE_FAIL_ON_CONFLICT) {
+                List<String> conflicts = new ArrayList<>();
+                for (Path file : files) {
+                    Path relative = from.relativize(file);
+                    if (Files.exists(to.resolve(relative), LinkOption.NOFOLLOW_LINKS)) {
+                        conflicts.add(relative.toString().replace('\\', '/'));
+                    }
+                }
+                if (!conflicts.isEmpty()) {
+                    throw new IOException("Shard '" + this.shard + "' conflicts with " + conflicts.size()
+                            + " file(s) published by other shards, e.g. " + conflicts.subList(0, Math.min(10, conflicts.size())));
+                }
+            }
+
+            for (Path file : files) {
+                Path target = to.resolve(from.relativize(file));
+                if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+                    // Published by an earlier shard, which is kept
+                    continue;
+                }
+                Files.createDirectories(target.getParent());
+                Files.move(file, target);
+            }
+        } finally {
+            Util.deleteRecursive(staging);
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import hudson.model.Descriptor;
+import jenkins.model.Jenkins;
+import jenkins.util.VirtualFile;
+
+/**
+ * Marks a report that has been handed to the {@link ReportStorage}, so it is served from there.
+ *
+ * Like the marker of {@link ReportTruncation}, the marker is written next to the report directory, which no longer
+ * exists once the report has been stored. It holds the id of the build the report has been stored for, and the
+ * descriptor id and {@link ReportStorage#getLocation() location} of the backend that has stored it, never its
+ * configuration. The report is served from and deleted through the configured backend if it has the same id and
+ * location, or else through a backend for the location, see {@link ReportStorage.ReportStorageDescriptor}. Markers
+ * written before hold only the build id, and are resolved against the configured backend.
+ */
+class StoredReport {
+
+    private final File file;
+
+    private final long lastModified;
+
+    private final String buildId;
+
+    private final String storageId;
+
+    private final String location;
+
+    private StoredReport(File file, long lastModified, String buildId, String storageId, String location) {
+        this.file = file;
+        this.lastModified = lastModified;
+        this.buildId = buildId;
+        this.storageId = storageId;
+        this.location = location;
+    }
+
+    static File getFile(File targetDir) {
+        return new File(targetDir.getParentFile(), "." + targetDir.getName() + ".stored");
+    }
+
+    static boolean exists(File targetDir) {
+        return getFile(targetDir).isFile();
+    }
+
+    /**
+     * @param buildId the id of the build the report has been stored for
+     * @param storage the backend that has stored the report
+     */
+    static void write(File targetDir, String buildId, ReportStorage storage) throws IOException {
+        Files.writeString(getFile(targetDir).toPath(), buildId + "\n" + storage.getDescriptor().getId() + "\n" + storage.getLocation(),
+                StandardCharsets.UTF_8);
+        ReportChanges.changed();
+    }
+
+    /**
+     * Reads the marker of a report directory, unless the given one is still up to date
+     *
+     * @param cached the marker read before, may be null
+     * @return the marker, or null if the report has not been stored
+     */
+    static StoredReport load(File targetDir, StoredReport cached) throws IOException {
+        File file = getFile(targetDir);
+        long lastModified = file.lastModified();
+        if (lastModified == 0) {
+            return null;
+        }
+        if (cached != null && cached.file.equals(file) && cached.lastModified == lastModified) {
+            return cached;
+        }
+        String[] lines = Files.readString(file.toPath(), StandardCharsets.UTF_8).split("\n", 3);
+        if (lines.length < 3) {
+            return new StoredReport(file, lastModified, lines[0].trim(), null, null);
+        }
+        return new StoredReport(file, lastModified, lines[0].trim(), lines[1].trim(), lines[2].trim());
+    }
+
+    /**
+     * @return the backend that has stored the report, or null if it is not available anymore
+     */
+    private ReportStorage getStorage() {
+        ReportStorage configured = HtmlPublisherConfiguration.getReportStorageOrNull();
+        if (this.storageId == null) {
+            return configured;
+        }
+        if (configured != null && configured.getDescriptor().getId().equals(this.storageId)
+                && configured.getLocation().equals(this.location)) {
+            return configured;
+        }
+        Descriptor<?> descriptor = Jenkins.get().getDescriptor(this.storageId);
+        if (descriptor instanceof ReportStorage.ReportStorageDescriptor) {
+            return ((ReportStorage.ReportStorageDescriptor) descriptor).forLocation(this.location);
+        }
+        return null;
+    }
+
+    /**
+     * @return the stored report, or null if the backend that has stored it is not available anymore
+     */
+    VirtualFile root(String reportName) throws IOException {
+        ReportStorage storage = getStorage();
+        return storage != null ? storage.root(this.buildId, reportName) : null;
+    }
+
+    /**
+     * Deletes the stored report and its marker
+     */
+    static void delete(File targetDir) throws IOException, InterruptedException {
+        StoredReport stored = load(targetDir, null);
+        ReportStorage storage = stored != null ? stored.getStorage() : null;
+        if (storage != null) {
+            storage.delete(stored.buildId, targetDir.getName());
+        }
+        Files.deleteIfExists(getFile(targetDir).toPath());
+        ReportChanges.changed();
+    }
+
+}
@@ -0,0 +1,71 @@
+package htmlpublisher.util;
+
+import java.io.File;
+import java.io.IOException;
+
+import hudson.util.DirScanner;
+import hudson.util.FileVisitor;
+
+/**
+ * Counts the files found by another scanner against a {@link ReportBudget}
+ *
+ * The files are counted while the scan runs, on the node where the data is
+ * located, so a report over its budget is aborted, or truncated, before its
+ * files are written to the streams of the copy. The scan itself continues
+ * after a truncation, only to count the skipped files.
+ */
+public class BudgetedDirScanner extends DirScanner {
+
+	private final DirScanner dirScanner;
+	private final ReportBudget budget;
+	private final ReportBudget.Listener listener;
+
+	/**
+	 * @param listener told about the skipped files of a truncated scan, exported
+	 *                 to the node, may be null
+	 */
+	public BudgetedDirScanner(DirScanner dirScanner, ReportBudget budget, ReportBudget.Listener listener) {
+
+		this.dirScanner = dirScanner;
+		this.budget = budget;
+		this.listener = listener;
+
+	}
+
+	@Override
+	public void scan(File dir, FileVisitor visitor) throws IOException {
+
+		ReportBudget.Tally tally = this.budget.newTally();
+		this.dirScanner.scan(dir, new FileVisitor() {
+
+			@Override
+			public void visit(File file, String relativePath) throws IOException {
+
+				if (tally.add(file.length())) {
+					visitor.visit(file, relativePath);
+				}
+
+			}
+
+			@Override
+			public void visitSymlink(File link, String target, String relativePath) throws IOException {
+
+				if (tally.add(0)) {
+					visitor.visitSymlink(link, target, relativePath);
+				}
+
+			}
+
+			@Override
+			public boolean understandsSymlink() {
+				return visitor.understandsSymlink();
+			}
+
+		});
+		tally.complete(this.listener);
+
+	}
+
+	private static final long serialVersionUID = 1L;
+
+}
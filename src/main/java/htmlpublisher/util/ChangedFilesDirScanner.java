@@ -0,0 +1,112 @@
+package htmlpublisher.util;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DirScanner;
+import hudson.util.FileVisitor;
+
+import jenkins.security.Roles;
+
+import org.jenkinsci.remoting.RoleChecker;
+
+/**
+ * Skips the files, that have not changed since they have been visited by an
+ * earlier scan with the same key
+ *
+ * Used to copy a report repeatedly while it is still written. The size and
+ * modification time of the visited files are kept on the node, where the data
+ * is located, so they do not need to be sent with every scan. Like the queues
+ * of {@link FileEntryQueue}, the state is local to the node and must be removed
+ * with {@link Remover} when it is not needed anymore.
+ */
+public class ChangedFilesDirScanner extends DirScanner {
+
+	/**
+	 * Local cache of the visited files by key, relative path -&gt; size and
+	 * modification time
+	 */
+	private static final Map<UUID, Map<String, long[]>> visitedFiles = new ConcurrentHashMap<>();
+
+	private final DirScanner dirScanner;
+	private final UUID key;
+
+	public ChangedFilesDirScanner(DirScanner dirScanner, UUID key) {
+
+		this.dirScanner = dirScanner;
+		this.key = key;
+
+	}
+
+	@Override
+	public void scan(File dir, FileVisitor visitor) throws IOException {
+
+		Map<String, long[]> visited = visitedFiles.computeIfAbsent(this.key, key -> new ConcurrentHashMap<>());
+
+		this.dirScanner.scan(dir, new FileVisitor() {
+
+			@Override
+			public void visit(File file, String relativePath) throws IOException {
+				long[] current = new long[] { file.length(), file.lastModified() };
+				long[] previous = visited.get(relativePath);
+				if (previous != null && previous[0] == current[0] && previous[1] == current[1]) {
+					return; // Not changed since the last scan
+				}
+				visitor.visit(file, relativePath);
+				visited.put(relativePath, current);
+			}
+
+			@Override
+			public void visitSymlink(File link, String target, String relativePath) throws IOException {
+				visitor.visitSymlink(link, target, relativePath);
+			}
+
+			@Override
+			public boolean understandsSymlink() {
+				return visitor.understandsSymlink();
+			}
+
+		});
+
+	}
+
+	/**
+	 * Removes the visited files of a key on the node, so the next scan with the
+	 * key visits all files again
+	 */
+	public static class Remover implements FilePath.FileCallable<Void> {
+
+		private final UUID key;
+
+		public Remover(UUID key) {
+
+			this.key = key;
+
+		}
+
+		@Override
+		public void checkRoles(RoleChecker checker) throws SecurityException {
+			checker.check(this, Roles.SLAVE);
+		}
+
+		@Override
+		public Void invoke(File f, VirtualChannel channel) {
+
+			visitedFiles.remove(this.key);
+			return null;
+
+		}
+
+		private static final long serialVersionUID = 1L;
+
+	}
+
+	private static final long serialVersionUID = 1L;
+
+}
@@ -0,0 +1,35 @@
+package htmlpublisher.util;
+
+import java.util.List;
+import java.util.Map;
+
+import hudson.remoting.Asynchronous;
+
+/**
+ * Receives the progress of a copy from the node, where the data is located
+ *
+ * The listener is exported to the node, so the node does not wait for the
+ * controller when reporting progress.
+ */
+public interface CopyProgressListener {
+
+	/**
+	 * All index pages found so far and the files they reference have been written
+	 * to the streams of the copy, ahead of the other files
+	 * 
+	 * @param indexFiles   the index pages, relative paths using '/'
+	 * @param entryPoints  the index pages and the files they reference, relative
+	 *                     paths using '/' mapped to the file size
+	 */
+	@Asynchronous
+	void onEntryPoints(List<String> indexFiles, Map<String, Long> entryPoints);
+
+	/**
+	 * @param copiedFiles  the number of files written to the streams of the copy
+	 * @param foundFiles   the number of files found so far
+	 * @param scanComplete whether all files have been found
+	 */
+	@Asynchronous
+	void onProgress(int copiedFiles, int foundFiles, boolean scanComplete);
+
+}
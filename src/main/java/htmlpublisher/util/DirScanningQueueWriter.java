@@ -8,7 +8,6 @@ import java.util.UUID;
 import hudson.FilePath;
 import hudson.remoting.VirtualChannel;
 import hudson.util.DirScanner;
-import hudson.util.FileVisitor;
 
 import jenkins.security.Roles;
 
@@ -22,29 +21,39 @@ public class DirScanningQueueWriter implements FilePath.FileCallable<FileEntryQu
 
 	private final UUID queueKey;
 	private final DirScanner dirScanner;
+	private final String reportFiles;
+	private final CopyProgressListener progressListener;
 
-	/**
-	 * Used to collect the scanned files to a queue
-	 */
-	private static class Visitor extends FileVisitor {
+	public DirScanningQueueWriter(DirScanner dirScanner, UUID queueKey) {
 
-		private FileEntryQueue queue;
+		this(dirScanner, null, queueKey);
 
-		public Visitor(FileEntryQueue queue) {
-			this.queue = queue;
-		}
+	}
 
-		@Override
-		public void visit(File file, String relativePath) {
-			this.queue.add(file, relativePath);
-		}
+	/**
+	 * @param reportFiles comma separated patterns of the index pages to look for
+	 *                    while scanning, may be null
+	 */
+	public DirScanningQueueWriter(DirScanner dirScanner, String reportFiles, UUID queueKey) {
+
+		this(dirScanner, reportFiles, queueKey, null);
 
 	}
 
-	public DirScanningQueueWriter(DirScanner dirScanner, UUID queueKey) {
+	/**
+	 * @param reportFiles      comma separated patterns of the index pages to look
+	 *                         for while scanning, which are queued with priority
+	 *                         together with the files they reference, may be null
+	 * @param progressListener receives the progress of the copy, exported to the
+	 *                         node, may be null
+	 */
+	public DirScanningQueueWriter(DirScanner dirScanner, String reportFiles, UUID queueKey,
+			CopyProgressListener progressListener) {
 
 		this.queueKey = queueKey;
 		this.dirScanner = dirScanner;
+		this.reportFiles = reportFiles;
+		this.progressListener = progressListener;
 
 	}
 
@@ -59,9 +68,15 @@ public class DirScanningQueueWriter implements FilePath.FileCallable<FileEntryQu
 		// Find the queue
 		FileEntryQueue queue = FileEntryQueue.getOrCreateQueue(this.queueKey);
 
+		ReportFilesMatcher reportFilesMatcher = this.reportFiles != null ? new ReportFilesMatcher(this.reportFiles)
+				: null;
+
+		PrioritizingVisitor visitor = new PrioritizingVisitor(queue, reportFilesMatcher, this.progressListener);
+
 		try {
 			// Find the files use the provided dir scanner
-			this.dirScanner.scan(f, new Visitor(queue));
+			// The files are transformed by the readers of the queue
+			TransformingDirScanner.forQueue(this.dirScanner).scan(f, visitor);
 		} catch (IOException e) {
 			// Signal final end of queue, so our workers should exit now
 			queue.shutdownNow();
@@ -70,8 +85,13 @@ public class DirScanningQueueWriter implements FilePath.FileCallable<FileEntryQu
 
 		// Signal normal end of queue, so our workers know when to exit
 		queue.shutdown();
+		visitor.scanComplete();
 
-		return queue.getStatistic();
+		if (reportFilesMatcher == null) {
+			return queue.getStatistic();
+		}
+		return new FileEntryQueue.Statistic(queue.getOverallCount(), queue.getOverallSize(),
+				reportFilesMatcher.getMatches());
 
 	}
 
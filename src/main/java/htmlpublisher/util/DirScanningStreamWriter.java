@@ -0,0 +1,222 @@
+package htmlpublisher.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import hudson.FilePath;
+import hudson.remoting.Pipe;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.DirScanner;
+import hudson.util.FileVisitor;
+import hudson.util.NamingThreadFactory;
+import hudson.util.io.Archiver;
+import hudson.util.io.ArchiverFactory;
+
+import jenkins.security.Roles;
+
+import org.jenkinsci.remoting.RoleChecker;
+
+/**
+ * Checks, scans and streams a directory to the controller in a single call on
+ * the node, where the data is located
+ *
+ * The scanned files are collected into a queue local to this call, and read
+ * from the queue by one reader thread per pipe. Each reader writes the files it
+ * takes as a compressed tar stream into its pipe, which is extracted on the
+ * controller. Existence check, scanning and queue teardown need no further
+ * calls to the node.
+ * 
+ * If the streams are multiplexed, all readers write into a single pipe, see
+ * {@link MultiplexedStream}.
+ * 
+ * The index pages and the files they reference are streamed first, see
+ * {@link PrioritizingVisitor}.
+ * 
+ * The hash of each file is computed while it is streamed, see
+ * {@link HashingArchiver}.
+ */
+public class DirScanningStreamWriter implements FilePath.FileCallable<FileEntryQueue.Statistic> {
+
+	private final DirScanner dirScanner;
+	private final String reportFiles;
+	private final List<Pipe> pipes;
+	private final int numberOfStreams;
+	private final boolean multiplexed;
+	private final CopyProgressListener progressListener;
+
+	/**
+	 * @param reportFiles comma separated patterns of the index pages to look for
+	 *                    while scanning, may be null
+	 * @param pipes       one pipe per reader, created with
+	 *                    {@link Pipe#createRemoteToLocal()}
+	 * @param progressListener receives the progress of the copy, exported to the
+	 *                    node, may be null
+	 */
+	public DirScanningStreamWriter(DirScanner dirScanner, String reportFiles, List<Pipe> pipes,
+			CopyProgressListener progressListener) {
+
+		this.dirScanner = dirScanner;
+		this.reportFiles = reportFiles;
+		this.pipes = pipes;
+		this.numberOfStreams = pipes.size();
+		this.multiplexed = false;
+		this.progressListener = progressListener;
+
+	}
+
+	/**
+	 * @param reportFiles     comma separated patterns of the index pages to look
+	 *                        for while scanning, may be null
+	 * @param pipe            the single pipe for all readers, created with
+	 *                        {@link Pipe#createRemoteToLocal()}
+	 * @param numberOfStreams the number of readers, multiplexed into the pipe
+	 * @param progressListener receives the progress of the copy, exported to the
+	 *                        node, may be null
+	 */
+	public DirScanningStreamWriter(DirScanner dirScanner, String reportFiles, Pipe pipe, int numberOfStreams,
+			CopyProgressListener progressListener) {
+
+		this.dirScanner = dirScanner;
+		this.reportFiles = reportFiles;
+		this.pipes = Collections.singletonList(pipe);
+		this.numberOfStreams = numberOfStreams;
+		this.multiplexed = true;
+		this.progressListener = progressListener;
+
+	}
+
+	/**
+	 * @return one output stream per reader
+	 */
+	private List<OutputStream> openStreams() {
+
+		if (!this.multiplexed) {
+			List<OutputStream> streams = new ArrayList<>();
+			for (Pipe pipe : this.pipes) {
+				streams.add(pipe.getOut());
+			}
+			return streams;
+		}
+		return MultiplexedStream.multiplex(this.pipes.get(0).getOut(), this.numberOfStreams);
+
+	}
+
+	@Override
+	public void checkRoles(RoleChecker checker) throws SecurityException {
+		checker.check(this, Roles.SLAVE);
+	}
+
+	/**
+	 * @return the statistic of the scan, or null if the directory does not exist
+	 */
+	@Override
+	public FileEntryQueue.Statistic invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+
+		if (!f.exists()) {
+			// Nothing to stream, end the streams so the controller stops waiting
+			for (OutputStream out : openStreams()) {
+				ArchiverFactory.TARGZ.create(out).close();
+			}
+			return null;
+		}
+
+		FileEntryQueue queue = new FileEntryQueue();
+		Map<String, String> hashes = new ConcurrentHashMap<>();
+
+		ReportFilesMatcher reportFilesMatcher = this.reportFiles != null ? new ReportFilesMatcher(this.reportFiles)
+				: null;
+
+		// -------------------------------------------------------
+		// Start the readers, streaming files from the queue
+		// -------------------------------------------------------
+		ExecutorService readers = Executors.newFixedThreadPool(this.numberOfStreams,
+				new NamingThreadFactory(new DaemonThreadFactory(), "HtmlPublisher stream writer"));
+		List<Future<Integer>> streamed = new ArrayList<>();
+		try {
+			for (OutputStream out : openStreams()) {
+				streamed.add(readers.submit(() -> stream(queue, out, this.dirScanner, hashes)));
+			}
+
+			PrioritizingVisitor visitor = new PrioritizingVisitor(queue, reportFilesMatcher, this.progressListener);
+			try {
+				// Find the files use the provided dir scanner
+				TransformingDirScanner.forQueue(this.dirScanner).scan(f, visitor);
+			} catch (IOException e) {
+				// Signal final end of queue, so our readers should exit now
+				queue.shutdownNow();
+				throw e;
+			}
+
+			// Signal normal end of queue, so our readers know when to exit
+			queue.shutdown();
+			visitor.scanComplete();
+
+			int streamedFiles = 0;
+			for (Future<Integer> reader : streamed) {
+				try {
+					streamedFiles += reader.get();
+				} catch (ExecutionException e) {
+					queue.shutdownNow();
+					throw new IOException(e.getCause());
+				}
+			}
+
+			if (streamedFiles != queue.getOverallCount()) {
+				throw new IOException("Streamed " + streamedFiles + " of " + queue.getOverallCount() + " file(s)");
+			}
+		} finally {
+			queue.shutdownNow();
+			readers.shutdownNow();
+		}
+
+		return new FileEntryQueue.Statistic(queue.getOverallCount(), queue.getOverallSize(),
+				reportFilesMatcher != null ? reportFilesMatcher.getMatches() : null, new HashMap<>(hashes));
+
+	}
+
+	/**
+	 * Writes the files taken from the queue as tar stream into the pipe,
+	 * transforming them if the scanner is a {@link TransformingDirScanner}
+	 * 
+	 * @param hashes receives the hashes of the written files
+	 * @return the number of written files
+	 */
+	private static int stream(FileEntryQueue queue, OutputStream out, DirScanner dirScanner,
+			Map<String, String> hashes) throws IOException {
+
+		try (Archiver archiver = new HashingArchiver(out, hashes)) {
+			FileVisitor visitor = TransformingDirScanner.forReader(dirScanner, archiver);
+			try {
+				while (true) {
+					FileEntryQueue.FileEntry entry = queue.take(); // throws InterruptedException on the end of the
+																	// queue
+					visitor.visit(entry.getFile(), entry.getRelativePath());
+					queue.done(entry);
+				}
+			} catch (InterruptedException e) {
+				// noop, just exit
+			} catch (IOException e) {
+				queue.shutdownNow(); // Clear all later tasks and signal shutdown
+				throw e;
+			}
+			return archiver.countEntries();
+		}
+
+	}
+
+	private static final long serialVersionUID = 1L;
+
+}
@@ -3,9 +3,12 @@ package htmlpublisher.util;
 import java.io.File;
 import java.io.Serializable;
 
+import java.util.List;
+
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.UUID;
 import java.util.Map;
@@ -15,7 +18,9 @@ import java.util.Map;
  *
  * When reading entries, the queue returns a file or waits until a file is
  * added.<br>
- * Also implements signaling the end of the queue with shutdown operations.
+ * Also implements signaling the end of the queue with shutdown operations.<br>
+ * Files added with priority, like the index pages of a report, are returned
+ * before all other files that are waiting in the queue.
  */
 public class FileEntryQueue {
 
@@ -24,6 +29,11 @@ public class FileEntryQueue {
 	 */
 	private static final FileEntry POISON_PILL = new FileEntry(null, null);
 
+	/**
+	 * Marker for an entry added to the priority lane, wakes up a waiting reader
+	 */
+	private static final FileEntry PRIORITY_MARKER = new FileEntry(null, null);
+
 	/**
 	 * Local cache that contains queues
 	 */
@@ -34,6 +44,11 @@ public class FileEntryQueue {
 	 */
 	private final LinkedBlockingQueue<FileEntry> queue = new LinkedBlockingQueue<>();
 
+	/**
+	 * Entries that are read before the entries of the internal queue
+	 */
+	private final ConcurrentLinkedQueue<FileEntry> priorityQueue = new ConcurrentLinkedQueue<>();
+
 	/**
 	 * Number of all added files since the creation of this queue
 	 */
@@ -44,6 +59,30 @@ public class FileEntryQueue {
 	 */
 	private final AtomicLong overallSize = new AtomicLong(0);
 
+	/**
+	 * Number of files that have been read and processed completely
+	 */
+	private final AtomicInteger doneCount = new AtomicInteger(0);
+
+	/**
+	 * Number of files with priority that have not been processed completely
+	 */
+	private final AtomicInteger pendingPriorityCount = new AtomicInteger(0);
+
+	/**
+	 * Notified about each processed file, may be null
+	 */
+	private volatile Observer observer;
+
+	/**
+	 * Gets notified when a file of the queue has been processed completely
+	 */
+	public interface Observer {
+
+		void done(FileEntryQueue queue, FileEntry entry);
+
+	}
+
 	/**
 	 * An entry in a queue
 	 */
@@ -51,6 +90,7 @@ public class FileEntryQueue {
 
 		private File file;
 		private String relativePath;
+		private boolean priority;
 
 		public FileEntry(File file, String relativePath) {
 
@@ -67,6 +107,10 @@ public class FileEntryQueue {
 			return this.relativePath;
 		}
 
+		public boolean isPriority() {
+			return this.priority;
+		}
+
 		private static final long serialVersionUID = 1L;
 
 	}
@@ -78,10 +122,26 @@ public class FileEntryQueue {
 
 		private int overallCount;
 		private long overallSize;
+		private List<String> indexFiles;
+		private Map<String, String> hashes;
 
 		public Statistic(int overallCount, long overallSize) {
+			this(overallCount, overallSize, null);
+		}
+
+		public Statistic(int overallCount, long overallSize, List<String> indexFiles) {
 			this.overallCount = overallCount;
 			this.overallSize = overallSize;
+			this.indexFiles = indexFiles;
+		}
+
+		/**
+		 * @param hashes the hashes of the copied files, see
+		 *               {@link #getHashes()}
+		 */
+		public Statistic(int overallCount, long overallSize, List<String> indexFiles, Map<String, String> hashes) {
+			this(overallCount, overallSize, indexFiles);
+			this.hashes = hashes;
 		}
 
 		public int getOverallCount() {
@@ -92,6 +152,23 @@ public class FileEntryQueue {
 			return this.overallSize;
 		}
 
+		/**
+		 * @return the scanned files matching the index page patterns, or null if
+		 *         no patterns were given to the scan
+		 */
+		public List<String> getIndexFiles() {
+			return this.indexFiles;
+		}
+
+		/**
+		 * @return the hex encoded {@value HashingArchiver#ALGORITHM} hashes of the
+		 *         copied files by relative path using '/', computed while they
+		 *         were copied, or null if they have not been computed
+		 */
+		public Map<String, String> getHashes() {
+			return this.hashes;
+		}
+
 		private static final long serialVersionUID = 1L;
 
 	}
@@ -140,23 +217,98 @@ public class FileEntryQueue {
 
 	}
 
+	/**
+	 * Inserts the specified file into the priority lane of this queue, so it is
+	 * returned before all files without priority
+	 * 
+	 * @return the newly created file entry
+	 */
+	public FileEntry addPriority(File file, String relativePath) {
+
+		FileEntry entry = new FileEntry(file, relativePath);
+		entry.priority = true;
+
+		this.pendingPriorityCount.incrementAndGet();
+		this.priorityQueue.add(entry);
+		this.queue.add(PRIORITY_MARKER);
+
+		this.overallCount.incrementAndGet();
+		this.overallSize.addAndGet(file.length());
+
+		return entry;
+
+	}
+
+	/**
+	 * Moves an entry, that has been added without priority, to the priority lane
+	 * 
+	 * @return false if the entry has already been read from the queue
+	 */
+	public boolean promote(FileEntry entry) {
+
+		if (entry.priority || !this.queue.remove(entry)) {
+			return false;
+		}
+		entry.priority = true;
+
+		this.pendingPriorityCount.incrementAndGet();
+		this.priorityQueue.add(entry);
+		this.queue.add(PRIORITY_MARKER);
+
+		return true;
+
+	}
+
 	/**
 	 * Retrieves and removes the head of this queue, waiting if necessary until an
-	 * element becomes available.
+	 * element becomes available. Entries with priority are returned first.
 	 * 
 	 * @throws InterruptedException if the queue is closed
 	 * 
 	 */
 	public FileEntry take() throws InterruptedException {
 
-		FileEntry entry = this.queue.take();
+		while (true) {
+			FileEntry entry = this.priorityQueue.poll();
+			if (entry != null) {
+				return entry;
+			}
+
+			entry = this.queue.take();
 
-		if (entry == POISON_PILL) {
-			this.queue.add(FileEntryQueue.POISON_PILL);
-			throw new InterruptedException();
+			if (entry == POISON_PILL) {
+				this.queue.add(FileEntryQueue.POISON_PILL);
+				throw new InterruptedException();
+			}
+
+			if (entry != PRIORITY_MARKER) {
+				return entry;
+			}
+			// The entry of the marker might have been taken by another reader already
 		}
 
-		return entry;
+	}
+
+	/**
+	 * Signals that a file taken from this queue has been processed completely
+	 */
+	public void done(FileEntry entry) {
+
+		this.doneCount.incrementAndGet();
+		if (entry.priority) {
+			this.pendingPriorityCount.decrementAndGet();
+		}
+
+		Observer observer = this.observer;
+		if (observer != null) {
+			observer.done(this, entry);
+		}
+
+	}
+
+	public void setObserver(Observer observer) {
+
+		this.observer = observer;
 
 	}
 
@@ -177,6 +329,7 @@ public class FileEntryQueue {
 	public void shutdownNow() {
 
 		// Remove all upcoming work
+		this.priorityQueue.clear();
 		this.queue.clear();
 
 		// Signal, that this is the end and no more work will come
@@ -202,6 +355,25 @@ public class FileEntryQueue {
 
 	}
 
+	/**
+	 * @return the number of files that have been processed completely
+	 */
+	public int getDoneCount() {
+
+		return this.doneCount.get();
+
+	}
+
+	/**
+	 * @return the number of files with priority that have not been processed
+	 *         completely
+	 */
+	public int getPendingPriorityCount() {
+
+		return this.pendingPriorityCount.get();
+
+	}
+
 	/**
 	 * @return some statistic about this queue
 	 */
@@ -0,0 +1,50 @@
+package htmlpublisher.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * Transforms the files of a copy on the node, where the data is located,
+ * before they are written to the streams of the copy
+ *
+ * Transformers are sent to the node, so they must be serializable and must not
+ * refer to anything that is only available on the controller.
+ *
+ * @see TransformingDirScanner
+ */
+public interface FileTransformer extends Serializable {
+
+	/**
+	 * @param relativePath the path of the file, relative to the copied directory
+	 *                     using '/'
+	 * @return whether the file is left out of the copy
+	 */
+	default boolean drops(String relativePath) {
+		return false;
+	}
+
+	/**
+	 * @param relativePath the path of the file, relative to the copied directory
+	 *                     using '/'
+	 * @return whether the content of the file is transformed by
+	 *         {@link #transform}
+	 */
+	default boolean transforms(String relativePath) {
+		return false;
+	}
+
+	/**
+	 * Writes the transformed content of a file
+	 *
+	 * @param relativePath the path of the file, relative to the copied directory
+	 *                     using '/'
+	 * @param in           the content of the file, or the output of the previous
+	 *                     transformer
+	 */
+	default void transform(String relativePath, InputStream in, OutputStream out) throws IOException {
+		in.transferTo(out);
+	}
+
+}
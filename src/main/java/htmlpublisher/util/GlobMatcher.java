@@ -0,0 +1,247 @@
+package htmlpublisher.util;
+
+import java.io.Serializable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Matches relative paths against comma separated Ant patterns, which are
+ * compiled once into their path segments
+ *
+ * Besides matching a path, the patterns tell whether a directory can hold any
+ * matching path at all, and whether all paths below a directory match, so a
+ * scan can prune whole directories, see {@link PruningGlobDirScanner}.
+ */
+public class GlobMatcher implements Serializable {
+
+	private final Segment[][] patterns;
+
+	/**
+	 * @param patterns comma separated Ant patterns, relative paths using '/' or
+	 *                 '\', a pattern ending with a separator matches everything
+	 *                 below
+	 */
+	public GlobMatcher(String patterns) {
+
+		this(split(patterns));
+
+	}
+
+	public GlobMatcher(List<String> patterns) {
+
+		List<Segment[]> compiled = new ArrayList<>();
+		for (String pattern : patterns) {
+			String normalized = pattern.trim().replace('\\', '/');
+			if (normalized.isEmpty()) {
+				continue;
+			}
+			if (normalized.endsWith("/")) {
+				normalized += "**";
+			}
+			List<Segment> segments = new ArrayList<>();
+			for (String segment : normalized.split("/")) {
+				if (segment.isEmpty()) {
+					continue;
+				}
+				if (segment.equals("**") && !segments.isEmpty() && segments.get(segments.size() - 1).anyDepth) {
+					continue; // "**/**" is the same as "**"
+				}
+				segments.add(new Segment(segment));
+			}
+			compiled.add(segments.toArray(new Segment[0]));
+		}
+		this.patterns = compiled.toArray(new Segment[0][]);
+
+	}
+
+	private static List<String> split(String patterns) {
+
+		List<String> split = new ArrayList<>();
+		if (patterns != null) {
+			for (String pattern : patterns.split(",")) {
+				split.add(pattern);
+			}
+		}
+		return split;
+
+	}
+
+	/**
+	 * @return whether there are no patterns, so no path matches
+	 */
+	public boolean isEmpty() {
+		return this.patterns.length == 0;
+	}
+
+	/**
+	 * @param relativePath a relative path using '/' or '\'
+	 * @return whether a pattern matches the path
+	 */
+	public boolean matches(String relativePath) {
+
+		String[] segments = relativePath.replace('\\', '/').split("/");
+		return matches(segments, segments.length);
+
+	}
+
+	/**
+	 * @param segments the segments of a relative path, only the first
+	 *                 {@code length} are used
+	 * @return whether a pattern matches the path
+	 */
+	public boolean matches(String[] segments, int length) {
+
+		for (Segment[] pattern : this.patterns) {
+			if (match(pattern, 0, pattern.length, segments, 0, length)) {
+				return true;
+			}
+		}
+		return false;
+
+	}
+
+	/**
+	 * @param segments the segments of the relative path of a directory, only the
+	 *                 first {@code length} are used
+	 * @return whether a pattern can match a path below the directory, otherwise
+	 *         the directory can be skipped
+	 */
+	public boolean couldMatchBelow(String[] segments, int length) {
+
+		for (Segment[] pattern : this.patterns) {
+			if (matchStart(pattern, segments, length)) {
+				return true;
+			}
+		}
+		return false;
+
+	}
+
+	/**
+	 * @param segments the segments of the relative path of a directory, only the
+	 *                 first {@code length} are used
+	 * @return whether a pattern matches all paths below the directory, like
+	 *         {@code dir/**}
+	 */
+	public boolean matchesAllBelow(String[] segments, int length) {
+
+		for (Segment[] pattern : this.patterns) {
+			if (pattern.length > 0 && pattern[pattern.length - 1].anyDepth
+					&& match(pattern, 0, pattern.length - 1, segments, 0, length)) {
+				return true;
+			}
+		}
+		return false;
+
+	}
+
+	private static boolean match(Segment[] pattern, int patternIndex, int patternEnd, String[] segments,
+			int segmentIndex, int length) {
+
+		while (patternIndex < patternEnd) {
+			Segment segment = pattern[patternIndex];
+			if (segment.anyDepth) {
+				if (patternIndex == patternEnd - 1) {
+					return true;
+				}
+				for (int next = segmentIndex; next <= length; next++) {
+					if (match(pattern, patternIndex + 1, patternEnd, segments, next, length)) {
+						return true;
+					}
+				}
+				return false;
+			}
+			if (segmentIndex >= length || !segment.matches(segments[segmentIndex])) {
+				return false;
+			}
+			patternIndex++;
+			segmentIndex++;
+		}
+		return segmentIndex == length;
+
+	}
+
+	private static boolean matchStart(Segment[] pattern, String[] segments, int length) {
+
+		int patternIndex = 0;
+		for (int segmentIndex = 0; segmentIndex < length; segmentIndex++) {
+			if (patternIndex >= pattern.length) {
+				return false;
+			}
+			Segment segment = pattern[patternIndex];
+			if (segment.anyDepth) {
+				return true;
+			}
+			if (!segment.matches(segments[segmentIndex])) {
+				return false;
+			}
+			patternIndex++;
+		}
+		// Some of the pattern is left for the paths below
+		return patternIndex < pattern.length;
+
+	}
+
+	/**
+	 * A segment of a pattern, either {@code **}, a literal name, or a name with
+	 * wildcards
+	 */
+	private static final class Segment implements Serializable {
+
+		private final boolean anyDepth;
+		private final String literal;
+		private final Pattern wildcard;
+
+		Segment(String segment) {
+
+			this.anyDepth = segment.equals("**");
+			if (this.anyDepth || segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0) {
+				this.literal = null;
+				this.wildcard = this.anyDepth ? null : Pattern.compile(toRegex(segment));
+			} else {
+				this.literal = segment;
+				this.wildcard = null;
+			}
+
+		}
+
+		private static String toRegex(String segment) {
+
+			StringBuilder regex = new StringBuilder();
+			StringBuilder literal = new StringBuilder();
+			for (char c : segment.toCharArray()) {
+				if (c == '*' || c == '?') {
+					if (literal.length() > 0) {
+						regex.append(Pattern.quote(literal.toString()));
+						literal.setLength(0);
+					}
+					regex.append(c == '*' ? ".*" : ".");
+				} else {
+					literal.append(c);
+				}
+			}
+			if (literal.length() > 0) {
+				regex.append(Pattern.quote(literal.toString()));
+			}
+			return regex.toString();
+
+		}
+
+		boolean matches(String name) {
+
+			if (this.literal != null) {
+				return this.literal.equals(name);
+			}
+			return this.wildcard.matcher(name).matches();
+
+		}
+
+		private static final long serialVersionUID = 1L;
+
+	}
+
+	private static final long serialVersionUID = 1L;
+
+}
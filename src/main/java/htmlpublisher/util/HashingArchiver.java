@@ -0,0 +1,140 @@
+package htmlpublisher.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import hudson.util.IOUtils;
+import hudson.util.io.Archiver;
+import hudson.util.io.ArchiverFactory;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+
+/**
+ * Writes a compressed tar stream like {@link ArchiverFactory#TARGZ}, computing
+ * the SHA-256 hash of each file while its content is written to the stream
+ *
+ * The hashes are computed from the very bytes that are transferred, so they
+ * need no further read of the files, neither on the node nor on the controller.
+ */
+public class HashingArchiver extends Archiver {
+
+	public static final String ALGORITHM = "SHA-256";
+
+	private final TarArchiveOutputStream tar;
+	private final Map<String, String> hashes;
+	private final MessageDigest digest;
+	private final byte[] buffer = new byte[64 * 1024];
+
+	/**
+	 * @param hashes receives the hashes of the written files, relative path using
+	 *               '/' -&gt; hex encoded hash, may be shared by several archivers
+	 */
+	public HashingArchiver(OutputStream out, Map<String, String> hashes) {
+
+		this.tar = new TarArchiveOutputStream(new GZIPOutputStream(new BufferedOutputStream(out), true),
+				StandardCharsets.UTF_8.name());
+		this.tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+		this.tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+		this.hashes = hashes;
+		try {
+			this.digest = MessageDigest.getInstance(ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			// cannot happen because SHA-256 is guaranteed to exist
+			throw new IllegalStateException(e);
+		}
+
+	}
+
+	@Override
+	public void visit(File file, String relativePath) throws IOException {
+
+		String name = relativePath.replace('\\', '/');
+		BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class,
+				LinkOption.NOFOLLOW_LINKS);
+		boolean directory = attributes.isDirectory();
+
+		TarArchiveEntry entry = new TarArchiveEntry(directory ? name + '/' : name);
+		int mode = IOUtils.mode(file);
+		if (mode != -1) {
+			entry.setMode(mode);
+		}
+		entry.setModTime(attributes.lastModifiedTime().toMillis());
+		if (!directory) {
+			entry.setSize(attributes.size());
+		}
+
+		this.tar.putArchiveEntry(entry);
+		try {
+			if (!directory) {
+				this.hashes.put(name, write(file, attributes.size()));
+			}
+		} finally {
+			this.tar.closeArchiveEntry();
+		}
+		this.entriesWritten++;
+
+	}
+
+	/**
+	 * Writes the content of the file as declared in the entry, hashing it
+	 * 
+	 * @return the hex encoded hash of the written content
+	 */
+	private String write(File file, long size) throws IOException {
+
+		this.digest.reset();
+		long remaining = size;
+		try (InputStream in = Files.newInputStream(file.toPath())) {
+			int read;
+			while (remaining > 0
+					&& (read = in.read(this.buffer, 0, (int) Math.min(this.buffer.length, remaining))) != -1) {
+				this.tar.write(this.buffer, 0, read);
+				this.digest.update(this.buffer, 0, read);
+				remaining -= read;
+			}
+		}
+		if (remaining > 0) {
+			throw new IOException("File " + file + " has been truncated while it was copied");
+		}
+		return HexFormat.of().formatHex(this.digest.digest());
+
+	}
+
+	@Override
+	public void visitSymlink(File link, String target, String relativePath) throws IOException {
+
+		TarArchiveEntry entry = new TarArchiveEntry(relativePath.replace('\\', '/'), TarConstants.LF_SYMLINK);
+		entry.setLinkName(target);
+		entry.setModTime(link.lastModified());
+		this.tar.putArchiveEntry(entry);
+		this.tar.closeArchiveEntry();
+		this.entriesWritten++;
+
+	}
+
+	@Override
+	public boolean understandsSymlink() {
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.tar.close();
+	}
+
+}
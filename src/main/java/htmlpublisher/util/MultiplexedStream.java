@@ -0,0 +1,179 @@
+package htmlpublisher.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import hudson.remoting.FastPipedOutputStream;
+
+/**
+ * Carries several logical streams over one shared stream, so parallel copy
+ * workers need a single pipe instead of one pipe each
+ *
+ * Each logical stream is written as frames of a stream id, a length and up to
+ * {@link #CHUNK_SIZE} bytes of data. A frame with length 0 ends its logical
+ * stream. The shared stream is closed once all logical streams are closed.
+ */
+public class MultiplexedStream {
+
+	/**
+	 * Maximum number of data bytes in a frame
+	 */
+	static final int CHUNK_SIZE = 64 * 1024;
+
+	private final DataOutputStream shared;
+
+	private int openStreams;
+
+	private MultiplexedStream(OutputStream shared, int count) {
+
+		this.shared = new DataOutputStream(shared);
+		this.openStreams = count;
+
+	}
+
+	/**
+	 * Opens the logical streams, writing into the shared stream
+	 * 
+	 * @return the logical streams, index is the stream id
+	 */
+	public static List<OutputStream> multiplex(OutputStream shared, int count) {
+
+		MultiplexedStream multiplexedStream = new MultiplexedStream(shared, count);
+		List<OutputStream> streams = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			streams.add(multiplexedStream.new LogicalOutputStream(i));
+		}
+		return streams;
+
+	}
+
+	/**
+	 * Reads the frames from the shared stream and writes them into the sinks
+	 * until all logical streams are ended. Sinks of unended logical streams
+	 * receive the failure, if the shared stream ends early or cannot be read.
+	 * 
+	 * @param sinks the sinks, index is the stream id
+	 */
+	public static void demultiplex(InputStream shared, List<FastPipedOutputStream> sinks) throws IOException {
+
+		boolean[] ended = new boolean[sinks.size()];
+		int openStreams = sinks.size();
+		byte[] buffer = new byte[CHUNK_SIZE];
+		try (DataInputStream in = new DataInputStream(shared)) {
+			while (openStreams > 0) {
+				int streamId = in.readInt();
+				int length = in.readInt();
+				if (streamId < 0 || streamId >= sinks.size() || ended[streamId] || length < 0 || length > CHUNK_SIZE) {
+					throw new IOException("Invalid frame for stream " + streamId + " with length " + length);
+				}
+				if (length == 0) {
+					ended[streamId] = true;
+					openStreams--;
+					sinks.get(streamId).close();
+				} else {
+					in.readFully(buffer, 0, length);
+					sinks.get(streamId).write(buffer, 0, length);
+				}
+			}
+		} catch (IOException e) {
+			IOException failure = e instanceof EOFException
+					? new IOException("Multiplexed stream ended before all logical streams", e)
+					: e;
+			for (int i = 0; i < sinks.size(); i++) {
+				if (!ended[i]) {
+					sinks.get(i).error(failure);
+				}
+			}
+			throw failure;
+		}
+
+	}
+
+	private synchronized void writeFrame(int streamId, byte[] data, int length) throws IOException {
+
+		this.shared.writeInt(streamId);
+		this.shared.writeInt(length);
+		this.shared.write(data, 0, length);
+
+	}
+
+	private synchronized void end(int streamId) throws IOException {
+
+		writeFrame(streamId, new byte[0], 0);
+		this.shared.flush();
+		if (--this.openStreams == 0) {
+			this.shared.close();
+		}
+
+	}
+
+	/**
+	 * A logical stream, collecting written data into frames
+	 */
+	private class LogicalOutputStream extends OutputStream {
+
+		private final int streamId;
+		private final byte[] buffer = new byte[CHUNK_SIZE];
+		private int count;
+		private boolean closed;
+
+		LogicalOutputStream(int streamId) {
+			this.streamId = streamId;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (this.count == this.buffer.length) {
+				flushBuffer();
+			}
+			this.buffer[this.count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (this.count == this.buffer.length) {
+					flushBuffer();
+				}
+				int n = Math.min(len, this.buffer.length - this.count);
+				System.arraycopy(b, off, this.buffer, this.count, n);
+				this.count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			flushBuffer();
+			synchronized (MultiplexedStream.this) {
+				MultiplexedStream.this.shared.flush();
+			}
+		}
+
+		private void flushBuffer() throws IOException {
+			if (this.count > 0) {
+				writeFrame(this.streamId, this.buffer, this.count);
+				this.count = 0;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!this.closed) {
+				this.closed = true;
+				flushBuffer();
+				end(this.streamId);
+			}
+		}
+
+	}
+
+}
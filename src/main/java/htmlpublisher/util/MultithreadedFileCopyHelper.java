@@ -1,20 +1,29 @@
 package htmlpublisher.util;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintStream;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
 import hudson.FilePath;
+import hudson.remoting.FastPipedInputStream;
+import hudson.remoting.FastPipedOutputStream;
+import hudson.remoting.Pipe;
 import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.DirScanner;
+import hudson.util.NamingThreadFactory;
 
 /**
  * Provides copying of files from the node (controller or agent) to the
@@ -29,6 +38,17 @@ import hudson.util.DirScanner;
  * node and transfers them to the controller. <br>
  * Finally, the node (controller or agent) is requested to cleanup the queue as
  * it is not needed anymore.
+ * 
+ * For agents, {@link #copyRecursiveToInSingleCall} does all of this with a
+ * single call, streaming the files through pipes.
+ * 
+ * The index pages and the files they reference are copied first. An optional
+ * {@link CopyProgressListener} is told when they have been copied, and about
+ * the progress of the whole copy.
+ * 
+ * If the calling thread is interrupted, e.g. by aborting the build, the
+ * workers are cancelled and the queue is cleared on the node right away. The
+ * time this takes is written to the log.
  */
 public class MultithreadedFileCopyHelper {
 
@@ -39,6 +59,40 @@ public class MultithreadedFileCopyHelper {
 			String description, int numberOfWorkers, ExecutorService executorService, int workerTimeoutInSeconds,
 			TaskListener listener) throws IOException, InterruptedException, TimeoutException {
 
+		return copyRecursiveTo(archiveDir, dirScanner, null, targetDir, description, numberOfWorkers,
+				executorService, workerTimeoutInSeconds, listener).getOverallCount();
+
+	}
+
+	/**
+	 * Copies files according to a specified scanner to the controller and
+	 * resolves the index pages during the same scan
+	 * 
+	 * @param reportFiles comma separated patterns of the index pages, may be null
+	 * @return the statistic of the scan, including the matched index pages if
+	 *         patterns were given
+	 */
+	static public FileEntryQueue.Statistic copyRecursiveTo(FilePath archiveDir, DirScanner dirScanner,
+			String reportFiles, FilePath targetDir, String description, int numberOfWorkers,
+			ExecutorService executorService, int workerTimeoutInSeconds, TaskListener listener)
+			throws IOException, InterruptedException, TimeoutException {
+
+		return copyRecursiveTo(archiveDir, dirScanner, reportFiles, targetDir, description, numberOfWorkers,
+				executorService, workerTimeoutInSeconds, listener, null);
+
+	}
+
+	/**
+	 * Copies files according to a specified scanner to the controller, reporting
+	 * the progress of the copy
+	 * 
+	 * @param progressListener receives the progress of the copy, may be null
+	 */
+	static public FileEntryQueue.Statistic copyRecursiveTo(FilePath archiveDir, DirScanner dirScanner,
+			String reportFiles, FilePath targetDir, String description, int numberOfWorkers,
+			ExecutorService executorService, int workerTimeoutInSeconds, TaskListener listener,
+			CopyProgressListener progressListener) throws IOException, InterruptedException, TimeoutException {
+
 		PrintStream logger = listener.getLogger();
 
 		long startTime = System.currentTimeMillis();
@@ -49,13 +103,16 @@ public class MultithreadedFileCopyHelper {
 		// for finding our queue
 		UUID queueKey = UUID.randomUUID();
 
+		long cancelStartTime = 0;
+
 		try {
 			// -------------------------------------------------------------
 			// Start multiple copy workers on the node (controller or agent)
 			// -------------------------------------------------------------
 			for (int i = 0; i < numberOfWorkers; i++) {
 				workers.add(executorService.submit(() -> {
-					QueueReadingDirScanner queueReadingDirScanner = new QueueReadingDirScanner(queueKey);
+					DirScanner queueReadingDirScanner = TransformingDirScanner.forReader(dirScanner,
+							new QueueReadingDirScanner(queueKey));
 					return archiveDir.copyRecursiveTo(queueReadingDirScanner, targetDir, description);
 				}));
 			}
@@ -63,15 +120,16 @@ public class MultithreadedFileCopyHelper {
 			// ---------------------------------------------------------
 			// Scan files / Fill queue on the node (controller or agent)
 			// ---------------------------------------------------------
-			FileEntryQueue.Statistic queueStatistic = archiveDir.act(new DirScanningQueueWriter(dirScanner, queueKey));
+			FileEntryQueue.Statistic queueStatistic = archiveDir
+					.act(new DirScanningQueueWriter(dirScanner, reportFiles, queueKey,
+							export(archiveDir, progressListener)));
 
 			// --------------------------------------------
 			// Collect the results on the controller
 			// --------------------------------------------
-			int transferredFiles = 0;
 			for (Future<Integer> worker : workers) {
 				try {
-					transferredFiles += worker.get(workerTimeoutInSeconds, TimeUnit.SECONDS); // Wait workers to finish
+					worker.get(workerTimeoutInSeconds, TimeUnit.SECONDS); // Wait workers to finish
 				} catch (ExecutionException e) {
 					throw new IOException(e);
 				}
@@ -85,21 +143,251 @@ public class MultithreadedFileCopyHelper {
 			logger.format("Copied %,d file(s) / %,.1f MB --> %,.1f MB/s", queueStatistic.getOverallCount(),
 					overallSizeInMB, overallSizeInMB / overallDurationInSeconds).println();
 
-			// Returning number of transfered files
-			return transferredFiles;
+			return queueStatistic;
 
+		} catch (InterruptedException e) {
+			cancelStartTime = System.currentTimeMillis();
+			throw e;
+		} catch (IOException e) {
+			if (!isCancellation(e)) {
+				throw e;
+			}
+			cancelStartTime = System.currentTimeMillis();
+			throw asInterruptedException(e);
 		} finally {
+			// Ensure, that all workers are stopped
+			for (Future<?> worker : workers) {
+				worker.cancel(true);
+			}
+
 			// ----------------------------------------------------------------------------
 			// Remove queue as we are ended, especially on previous errors that might leave
 			// a corrupt state
 			// ----------------------------------------------------------------------------
-			archiveDir.act(new QueueShutdownAndRemover(queueKey));
-			
+			removeQueue(archiveDir, queueKey);
+
+			logCancellation(logger, cancelStartTime);
+		}
+
+	}
+
+
+	/**
+	 * Copies files according to a specified scanner from an agent to the
+	 * controller with a single call to the agent
+	 * 
+	 * The agent checks and scans the directory and streams the files through one
+	 * pipe per worker, while the workers on the controller extract them. Unlike
+	 * {@link #copyRecursiveTo(FilePath, DirScanner, String, FilePath, String, int, ExecutorService, int, TaskListener)}
+	 * no calls are needed to start the workers or to cleanup the queue.
+	 * 
+	 * @param reportFiles comma separated patterns of the index pages, may be null
+	 * @return the statistic of the scan, including the matched index pages if
+	 *         patterns were given, or null if the directory does not exist
+	 */
+	static public FileEntryQueue.Statistic copyRecursiveToInSingleCall(FilePath archiveDir, DirScanner dirScanner,
+			String reportFiles, FilePath targetDir, int numberOfWorkers, ExecutorService executorService,
+			int workerTimeoutInSeconds, TaskListener listener)
+			throws IOException, InterruptedException, TimeoutException {
+
+		return copyRecursiveToInSingleCall(archiveDir, dirScanner, reportFiles, targetDir, numberOfWorkers, false,
+				executorService, workerTimeoutInSeconds, listener);
+
+	}
+
+	/**
+	 * Copies files according to a specified scanner from an agent to the
+	 * controller with a single call to the agent, optionally multiplexing the
+	 * streams of all workers into a single pipe
+	 * 
+	 * @param multiplexed whether the workers share a single pipe, see
+	 *                    {@link MultiplexedStream}. The demultiplexing needs
+	 *                    all workers running at the same time, so they get
+	 *                    their own threads instead of the executor service.
+	 * @return the statistic of the scan, or null if the directory does not exist
+	 */
+	static public FileEntryQueue.Statistic copyRecursiveToInSingleCall(FilePath archiveDir, DirScanner dirScanner,
+			String reportFiles, FilePath targetDir, int numberOfWorkers, boolean multiplexed,
+			ExecutorService executorService, int workerTimeoutInSeconds, TaskListener listener)
+			throws IOException, InterruptedException, TimeoutException {
+
+		return copyRecursiveToInSingleCall(archiveDir, dirScanner, reportFiles, targetDir, numberOfWorkers,
+				multiplexed, executorService, workerTimeoutInSeconds, listener, null);
+
+	}
+
+	/**
+	 * Copies files according to a specified scanner from an agent to the
+	 * controller with a single call to the agent, reporting the progress of the
+	 * copy
+	 * 
+	 * @param progressListener receives the progress of the copy, may be null
+	 * @return the statistic of the scan, or null if the directory does not exist
+	 */
+	static public FileEntryQueue.Statistic copyRecursiveToInSingleCall(FilePath archiveDir, DirScanner dirScanner,
+			String reportFiles, FilePath targetDir, int numberOfWorkers, boolean multiplexed,
+			ExecutorService executorService, int workerTimeoutInSeconds, TaskListener listener,
+			CopyProgressListener progressListener) throws IOException, InterruptedException, TimeoutException {
+
+		PrintStream logger = listener.getLogger();
+
+		long startTime = System.currentTimeMillis();
+
+		List<Future<Void>> workers = new ArrayList<>();
+
+		ExecutorService multiplexedExecutorService = null;
+
+		long cancelStartTime = 0;
+
+		CopyProgressListener exportedProgressListener = export(archiveDir, progressListener);
+
+		try {
+			// ------------------------------------------------------------
+			// Start multiple extracting workers on the controller, one per stream
+			// ------------------------------------------------------------
+			DirScanningStreamWriter streamWriter;
+			if (multiplexed) {
+				multiplexedExecutorService = Executors.newFixedThreadPool(numberOfWorkers + 1,
+						new NamingThreadFactory(new DaemonThreadFactory(), "HtmlPublisher demultiplexer"));
+				Pipe pipe = Pipe.createRemoteToLocal();
+				List<FastPipedOutputStream> sinks = new ArrayList<>();
+				for (int i = 0; i < numberOfWorkers; i++) {
+					FastPipedInputStream in = new FastPipedInputStream();
+					sinks.add(new FastPipedOutputStream(in));
+					workers.add(multiplexedExecutorService.submit(() -> {
+						targetDir.untarFrom(in, FilePath.TarCompression.GZIP);
+						return null;
+					}));
+				}
+				workers.add(multiplexedExecutorService.submit(() -> {
+					MultiplexedStream.demultiplex(pipe.getIn(), sinks);
+					return null;
+				}));
+				streamWriter = new DirScanningStreamWriter(dirScanner, reportFiles, pipe, numberOfWorkers,
+						exportedProgressListener);
+			} else {
+				List<Pipe> pipes = new ArrayList<>();
+				for (int i = 0; i < numberOfWorkers; i++) {
+					Pipe pipe = Pipe.createRemoteToLocal();
+					pipes.add(pipe);
+					workers.add(executorService.submit(() -> {
+						targetDir.untarFrom(pipe.getIn(), FilePath.TarCompression.GZIP);
+						return null;
+					}));
+				}
+				streamWriter = new DirScanningStreamWriter(dirScanner, reportFiles, pipes, exportedProgressListener);
+			}
+
+			// -------------------------------------------------
+			// Check, scan and stream the files on the agent
+			// -------------------------------------------------
+			FileEntryQueue.Statistic queueStatistic = archiveDir.act(streamWriter);
+
+			// --------------------------------------------
+			// Wait until all streams are extracted
+			// --------------------------------------------
+			for (Future<Void> worker : workers) {
+				try {
+					worker.get(workerTimeoutInSeconds, TimeUnit.SECONDS);
+				} catch (ExecutionException e) {
+					throw new IOException(e);
+				}
+			}
+
+			if (queueStatistic == null) {
+				return null;
+			}
+
+			// ---------------------------------------------------
+			// Print some statistic about the overall copy process
+			// ---------------------------------------------------
+			float overallSizeInMB = (float) queueStatistic.getOverallSize() / 1024 / 1024;
+			float overallDurationInSeconds = (float) (System.currentTimeMillis() - startTime) / 1000;
+			logger.format("Copied %,d file(s) / %,.1f MB --> %,.1f MB/s", queueStatistic.getOverallCount(),
+					overallSizeInMB, overallSizeInMB / overallDurationInSeconds).println();
+
+			return queueStatistic;
+
+		} catch (InterruptedException e) {
+			// The interrupted call cancels the scanning and streaming on the agent
+			cancelStartTime = System.currentTimeMillis();
+			throw e;
+		} catch (IOException e) {
+			if (!isCancellation(e)) {
+				throw e;
+			}
+			cancelStartTime = System.currentTimeMillis();
+			throw asInterruptedException(e);
+		} finally {
 			// Ensure, that all workers are stopped
-	        for (Future<?> worker : workers) {
-	            worker.cancel(true);
-	        }
+			for (Future<?> worker : workers) {
+				worker.cancel(true);
+			}
+			if (multiplexedExecutorService != null) {
+				multiplexedExecutorService.shutdownNow();
+			}
+
+			logCancellation(logger, cancelStartTime);
+		}
+
+	}
+
+	/**
+	 * @return the progress listener, callable from the node
+	 */
+	private static CopyProgressListener export(FilePath archiveDir, CopyProgressListener progressListener) {
+
+		if (progressListener == null) {
+			return null;
+		}
+		return archiveDir.getChannel().export(CopyProgressListener.class, progressListener);
+
+	}
+
+	/**
+	 * Removes the queue on the node, even if the current thread is interrupted
+	 */
+	private static void removeQueue(FilePath archiveDir, UUID queueKey) throws IOException, InterruptedException {
+
+		// A call to the node fails right away, while the interrupt is pending
+		boolean interrupted = Thread.interrupted();
+		try {
+			archiveDir.act(new QueueShutdownAndRemover(queueKey));
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+	}
+
+	/**
+	 * @return whether the exception is caused by interrupting the copy, where the
+	 *         interruption might be wrapped by a call to the node
+	 */
+	private static boolean isCancellation(IOException e) {
+
+		return e instanceof InterruptedIOException || e.getCause() instanceof InterruptedIOException
+				|| Thread.currentThread().isInterrupted();
+
+	}
+
+	private static InterruptedException asInterruptedException(Exception e) {
+
+		if (e instanceof InterruptedException) {
+			return (InterruptedException) e;
+		}
+		InterruptedException interruptedException = new InterruptedException(e.getMessage());
+		interruptedException.initCause(e);
+		return interruptedException;
+
+	}
+
+	private static void logCancellation(PrintStream logger, long cancelStartTime) {
 
+		if (cancelStartTime > 0) {
+			logger.println("[htmlpublisher] Copy cancelled, stopping the workers took "
+					+ (System.currentTimeMillis() - cancelStartTime) + " ms");
 		}
 
 	}
@@ -0,0 +1,271 @@
+package htmlpublisher.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import hudson.util.FileVisitor;
+
+/**
+ * Collects the scanned files to a queue, where the index pages and the files
+ * they reference are added with priority
+ *
+ * So the entry points of a report are copied first and the report can be shown
+ * while the other files are still copied. Progress is reported to an optional
+ * {@link CopyProgressListener}.
+ */
+class PrioritizingVisitor extends FileVisitor implements FileEntryQueue.Observer {
+
+	/**
+	 * Minimum interval between two progress reports
+	 */
+	static final long PROGRESS_INTERVAL_MILLIS = 1000;
+
+	/**
+	 * Only the beginning of large index pages is searched for references
+	 */
+	private static final int MAX_INDEX_FILE_BYTES = 1024 * 1024;
+
+	/**
+	 * Relative references in src and href attributes, without query and fragment
+	 */
+	private static final Pattern REFERENCE = Pattern
+			.compile("\\b(?:src|href)\\s*=\\s*[\"']([^\"'#?]+)", Pattern.CASE_INSENSITIVE);
+
+	private final FileEntryQueue queue;
+	private final ReportFilesMatcher reportFilesMatcher;
+	private final CopyProgressListener progressListener;
+
+	/**
+	 * Entries added without priority, which might be referenced by an index page
+	 * found later
+	 */
+	private final Map<String, FileEntryQueue.FileEntry> queued = new HashMap<>();
+
+	/**
+	 * Files referenced by the index pages, that have not been found yet
+	 */
+	private final Set<String> referenced = new HashSet<>();
+
+	/**
+	 * Files added with priority
+	 */
+	private final Set<String> prioritized = new HashSet<>();
+
+	/**
+	 * Entries with priority that have been processed, relative paths mapped to the
+	 * file size
+	 */
+	private final Map<String, Long> entryPoints = new LinkedHashMap<>();
+
+	private boolean indexFileFound;
+	private boolean entryPointsReported;
+	private boolean scanComplete;
+	private long lastProgressReport;
+
+	/**
+	 * @param reportFilesMatcher the matcher of the index pages, no files are
+	 *                           prioritized if null
+	 * @param progressListener   receives the progress, may be null
+	 */
+	PrioritizingVisitor(FileEntryQueue queue, ReportFilesMatcher reportFilesMatcher,
+			CopyProgressListener progressListener) {
+
+		this.queue = queue;
+		this.reportFilesMatcher = reportFilesMatcher;
+		this.progressListener = progressListener;
+		if (progressListener != null) {
+			queue.setObserver(this);
+		}
+
+	}
+
+	@Override
+	public void visit(File file, String relativePath) throws IOException {
+
+		if (Thread.currentThread().isInterrupted()) {
+			// The copy has been cancelled, e.g. by aborting the build
+			throw new InterruptedIOException("Scanning cancelled at " + relativePath);
+		}
+		if (this.reportFilesMatcher == null) {
+			this.queue.add(file, relativePath);
+			return;
+		}
+
+		boolean indexFile = this.reportFilesMatcher.match(relativePath);
+		List<String> references = indexFile ? findReferences(file, relativePath) : null;
+
+		synchronized (this) {
+			if (indexFile || this.referenced.remove(relativePath)) {
+				this.queue.addPriority(file, relativePath);
+				this.prioritized.add(relativePath);
+			} else {
+				this.queued.put(relativePath, this.queue.add(file, relativePath));
+			}
+			if (indexFile) {
+				this.indexFileFound = true;
+				for (String reference : references) {
+					FileEntryQueue.FileEntry entry = this.queued.remove(reference);
+					if (entry != null) {
+						if (this.queue.promote(entry)) {
+							this.prioritized.add(reference);
+						}
+					} else if (!this.prioritized.contains(reference)) {
+						this.referenced.add(reference);
+					}
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Signals that all files have been found
+	 */
+	void scanComplete() {
+
+		synchronized (this) {
+			this.scanComplete = true;
+			// Files that have not been found will not come anymore
+			this.referenced.clear();
+			this.queued.clear();
+		}
+		reportProgress(true);
+
+	}
+
+	@Override
+	public void done(FileEntryQueue queue, FileEntryQueue.FileEntry entry) {
+
+		if (entry.isPriority()) {
+			synchronized (this) {
+				this.entryPoints.put(toUrlPath(entry.getRelativePath()), entry.getFile().length());
+			}
+		}
+		reportProgress(false);
+
+	}
+
+	private void reportProgress(boolean force) {
+
+		if (this.progressListener == null) {
+			return;
+		}
+
+		List<String> indexFiles = null;
+		Map<String, Long> reportedEntryPoints = null;
+		int copiedFiles;
+		int foundFiles;
+		boolean complete;
+		synchronized (this) {
+			if (!this.entryPointsReported && this.indexFileFound && this.referenced.isEmpty()
+					&& this.queue.getPendingPriorityCount() == 0) {
+				this.entryPointsReported = true;
+				indexFiles = new ArrayList<>();
+				for (String indexFile : this.reportFilesMatcher.getMatches()) {
+					indexFiles.add(toUrlPath(indexFile));
+				}
+				reportedEntryPoints = new LinkedHashMap<>(this.entryPoints);
+			}
+
+			long now = System.currentTimeMillis();
+			if (!force && reportedEntryPoints == null && now - this.lastProgressReport < PROGRESS_INTERVAL_MILLIS) {
+				return;
+			}
+			this.lastProgressReport = now;
+			copiedFiles = this.queue.getDoneCount();
+			foundFiles = this.queue.getOverallCount();
+			complete = this.scanComplete;
+		}
+
+		if (reportedEntryPoints != null) {
+			this.progressListener.onEntryPoints(indexFiles, reportedEntryPoints);
+		}
+		this.progressListener.onProgress(copiedFiles, foundFiles, complete);
+
+	}
+
+	/**
+	 * @return the relative paths (using the platform separator) of the files
+	 *         referenced by an index page, which are located in the scanned
+	 *         directory
+	 */
+	private static List<String> findReferences(File file, String relativePath) {
+
+		String content;
+		try (InputStream in = Files.newInputStream(file.toPath())) {
+			content = new String(in.readNBytes(MAX_INDEX_FILE_BYTES), StandardCharsets.ISO_8859_1);
+		} catch (IOException e) {
+			// Not prioritizing the references does not affect the copy
+			return new ArrayList<>();
+		}
+
+		int parentEnd = relativePath.lastIndexOf(File.separatorChar);
+		String parent = parentEnd < 0 ? "" : relativePath.substring(0, parentEnd);
+
+		List<String> references = new ArrayList<>();
+		Matcher matcher = REFERENCE.matcher(content);
+		while (matcher.find()) {
+			String reference = matcher.group(1).trim();
+			if (reference.isEmpty() || reference.startsWith("/") || reference.indexOf(':') >= 0) {
+				// Absolute or with a scheme, not a file of the report
+				continue;
+			}
+			String resolved = resolve(parent, reference);
+			if (resolved != null) {
+				references.add(resolved);
+			}
+		}
+		return references;
+
+	}
+
+	/**
+	 * @return the normalized path, or null if it leaves the scanned directory
+	 */
+	private static String resolve(String parent, String reference) {
+
+		Deque<String> segments = new ArrayDeque<>();
+		String path = parent.isEmpty() ? reference : parent.replace(File.separatorChar, '/') + '/' + reference;
+		for (String segment : path.split("/")) {
+			if (segment.isEmpty() || segment.equals(".")) {
+				continue;
+			}
+			if (segment.equals("..")) {
+				if (segments.pollLast() == null) {
+					return null;
+				}
+				continue;
+			}
+			segments.addLast(segment);
+		}
+		if (segments.isEmpty()) {
+			return null;
+		}
+		return String.join(File.separator, segments);
+
+	}
+
+	private static String toUrlPath(String relativePath) {
+
+		return relativePath.replace(File.separatorChar, '/');
+
+	}
+
+}
@@ -0,0 +1,119 @@
+package htmlpublisher.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.tools.ant.DirectoryScanner;
+
+import hudson.util.DirScanner;
+import hudson.util.FileVisitor;
+
+/**
+ * Scans the files matching includes and excludes like {@link DirScanner.Glob},
+ * but prunes directories while walking the tree
+ *
+ * A directory is not entered when no include can match anything below it, e.g.
+ * all of {@code src} for {@code target/site/**}, or when an exclude matches
+ * everything below it, e.g. {@code **}{@code /node_modules/**}. Files are
+ * visited as they are found, instead of collecting all paths first.
+ *
+ * When links are not followed, symbolic links are neither visited nor entered,
+ * so nothing outside the scanned directory is read through them. When they are
+ * followed, a directory reached again through a link is not entered twice.
+ */
+public class PruningGlobDirScanner extends DirScanner {
+
+	private final GlobMatcher includes;
+	private final GlobMatcher excludes;
+	private final boolean followLinks;
+
+	/**
+	 * @param includes           comma separated Ant patterns, everything if
+	 *                           empty
+	 * @param excludes           comma separated Ant patterns, may be null
+	 * @param useDefaultExcludes whether to exclude the Ant default excludes, like
+	 *                           {@code .git}
+	 * @param followLinks        whether to follow symbolic links
+	 */
+	public PruningGlobDirScanner(String includes, String excludes, boolean useDefaultExcludes, boolean followLinks) {
+
+		this.includes = new GlobMatcher(includes == null || includes.trim().isEmpty() ? "**" : includes);
+		String allExcludes = excludes == null ? "" : excludes;
+		if (useDefaultExcludes) {
+			allExcludes += "," + String.join(",", DirectoryScanner.getDefaultExcludes());
+		}
+		this.excludes = new GlobMatcher(allExcludes);
+		this.followLinks = followLinks;
+
+	}
+
+	@Override
+	public void scan(File dir, FileVisitor visitor) throws IOException {
+
+		if (!dir.isDirectory()) {
+			return;
+		}
+		Set<Path> visitedDirs = this.followLinks ? new HashSet<>() : null;
+		if (visitedDirs != null) {
+			visitedDirs.add(dir.toPath().toRealPath());
+		}
+		walk(dir.toPath(), new String[16], 0, "", visitor, visitedDirs);
+
+	}
+
+	private void walk(Path dir, String[] segments, int depth, String relativeDir, FileVisitor visitor,
+			Set<Path> visitedDirs) throws IOException {
+
+		try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+			for (Path child : children) {
+				String name = child.getFileName().toString();
+				if (depth == segments.length) {
+					segments = Arrays.copyOf(segments, depth * 2);
+				}
+				segments[depth] = name;
+				int length = depth + 1;
+
+				BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class,
+						LinkOption.NOFOLLOW_LINKS);
+				if (attributes.isSymbolicLink()) {
+					if (!this.followLinks) {
+						continue;
+					}
+					try {
+						attributes = Files.readAttributes(child, BasicFileAttributes.class);
+					} catch (NoSuchFileException e) {
+						continue; // dangling link
+					}
+				}
+
+				String relativePath = relativeDir.isEmpty() ? name : relativeDir + File.separatorChar + name;
+				if (attributes.isDirectory()) {
+					if (!this.includes.couldMatchBelow(segments, length)
+							|| this.excludes.matchesAllBelow(segments, length)) {
+						continue;
+					}
+					if (visitedDirs != null && !visitedDirs.add(child.toRealPath())) {
+						continue; // a cycle of links
+					}
+					walk(child, segments, length, relativePath, visitor, visitedDirs);
+				} else if (this.includes.matches(segments, length) && !this.excludes.matches(segments, length)) {
+					visitor.visit(child.toFile(), relativePath);
+				}
+			}
+		}
+
+	}
+
+	private static final long serialVersionUID = 1L;
+
+}
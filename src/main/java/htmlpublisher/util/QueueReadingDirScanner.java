@@ -32,6 +32,7 @@ public class QueueReadingDirScanner extends DirScanner {
 				FileEntryQueue.FileEntry entry = queue.take(); // throws InterruptedException on the end of the
 																// queue
 				visitor.visit(entry.getFile(), entry.getRelativePath());
+				queue.done(entry);
 			}
 		} catch (InterruptedException e) {
 			// noop, just exit
@@ -0,0 +1,48 @@
+package htmlpublisher.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of a background task, e.g. the files it deletes or the bytes
+ * it reads and writes per second
+ *
+ * The permits are spread evenly since the limiter has been created, so a task
+ * that has been idle for a while may catch up in a short burst. The limiter is
+ * meant for a single thread.
+ */
+public class RateLimiter {
+
+	private final long permitsPerSecond;
+	private final long startNanos;
+	private long acquired;
+
+	/**
+	 * @param permitsPerSecond the maximum number of permits per second,
+	 *                         unlimited if 0 or less
+	 */
+	public RateLimiter(long permitsPerSecond) {
+
+		this.permitsPerSecond = permitsPerSecond;
+		this.startNanos = System.nanoTime();
+
+	}
+
+	/**
+	 * Waits until the permits are available
+	 */
+	public void acquire(long permits) throws InterruptedException {
+
+		if (this.permitsPerSecond <= 0) {
+			return;
+		}
+		this.acquired += permits;
+		long dueNanos = this.startNanos
+				+ (long) ((double) this.acquired * TimeUnit.SECONDS.toNanos(1) / this.permitsPerSecond);
+		long waitNanos = dueNanos - System.nanoTime();
+		if (waitNanos > 0) {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+
+	}
+
+}
@@ -0,0 +1,182 @@
+package htmlpublisher.util;
+
+import java.io.Serializable;
+
+import java.util.Locale;
+
+/**
+ * Limits the number of files and bytes of a report
+ *
+ * The files are counted while they are found, see {@link BudgetedDirScanner},
+ * so a copy exceeding the budget is stopped before the bulk of its bytes has
+ * been transferred. Depending on the budget, the copy is then either aborted
+ * with a {@link ReportBudgetExceededException}, or truncated: the files found
+ * after the budget is exhausted are skipped, and reported to a
+ * {@link Listener}.
+ */
+public class ReportBudget implements Serializable {
+
+	private final int maxFiles;
+	private final long maxBytes;
+	private final boolean truncating;
+
+	/**
+	 * @param maxFiles   the maximum number of files, unlimited if 0 or less
+	 * @param maxBytes   the maximum number of bytes, unlimited if 0 or less
+	 * @param truncating whether to skip the files over the budget, instead of
+	 *                   aborting
+	 */
+	public ReportBudget(int maxFiles, long maxBytes, boolean truncating) {
+
+		this.maxFiles = maxFiles;
+		this.maxBytes = maxBytes;
+		this.truncating = truncating;
+
+	}
+
+	public int getMaxFiles() {
+		return this.maxFiles;
+	}
+
+	public long getMaxBytes() {
+		return this.maxBytes;
+	}
+
+	public boolean isTruncating() {
+		return this.truncating;
+	}
+
+	/**
+	 * @return whether the budget allows the given totals
+	 */
+	public boolean allows(int files, long bytes) {
+
+		return (this.maxFiles <= 0 || files <= this.maxFiles) && (this.maxBytes <= 0 || bytes <= this.maxBytes);
+
+	}
+
+	/**
+	 * @return a new count of the files of a single copy
+	 */
+	public Tally newTally() {
+
+		return new Tally();
+
+	}
+
+	/**
+	 * @return the limits for the log, like "1,000 file(s) / 50.0 MB"
+	 */
+	@Override
+	public String toString() {
+
+		StringBuilder limits = new StringBuilder();
+		if (this.maxFiles > 0) {
+			limits.append(String.format(Locale.ENGLISH, "%,d file(s)", this.maxFiles));
+		}
+		if (this.maxBytes > 0) {
+			if (limits.length() > 0) {
+				limits.append(" / ");
+			}
+			limits.append(String.format(Locale.ENGLISH, "%,.1f MB", (float) this.maxBytes / 1024 / 1024));
+		}
+		return limits.length() > 0 ? limits.toString() : "unlimited";
+
+	}
+
+	/**
+	 * Gets told about the files skipped by a truncated copy
+	 *
+	 * The listener is exported to the node, where the files are counted, see
+	 * {@link hudson.remoting.VirtualChannel#export}.
+	 */
+	public interface Listener {
+
+		/**
+		 * @param copiedFiles  the number of files within the budget
+		 * @param copiedBytes  the bytes of the files within the budget
+		 * @param skippedFiles the number of files over the budget
+		 * @param skippedBytes the bytes of the files over the budget
+		 */
+		void truncated(int copiedFiles, long copiedBytes, int skippedFiles, long skippedBytes);
+
+	}
+
+	/**
+	 * Counts the files of a single copy against the budget
+	 *
+	 * Once a file exceeds the budget, all later files are skipped too, so a
+	 * truncated report is the beginning of the scan.
+	 */
+	public final class Tally {
+
+		private int files;
+		private long bytes;
+		private int skippedFiles;
+		private long skippedBytes;
+
+		private Tally() {
+		}
+
+		/**
+		 * Counts a file
+		 *
+		 * @param size the size of the file
+		 * @return whether the file is within the budget, false if it is skipped
+		 * @throws ReportBudgetExceededException if the file exceeds the budget,
+		 *                                       which is not truncating
+		 */
+		public boolean add(long size) throws ReportBudgetExceededException {
+
+			if (this.skippedFiles == 0 && allows(this.files + 1, this.bytes + size)) {
+				this.files++;
+				this.bytes += size;
+				return true;
+			}
+			if (!ReportBudget.this.truncating) {
+				throw new ReportBudgetExceededException(String.format(Locale.ENGLISH,
+						"The report exceeds its limit of %s, aborted after %,d file(s) / %,.1f MB", ReportBudget.this,
+						this.files + 1, (float) (this.bytes + size) / 1024 / 1024));
+			}
+			this.skippedFiles++;
+			this.skippedBytes += size;
+			return false;
+
+		}
+
+		/**
+		 * Tells the listener about the skipped files, if any
+		 *
+		 * @param listener may be null
+		 */
+		public void complete(Listener listener) {
+
+			if (this.skippedFiles > 0 && listener != null) {
+				listener.truncated(this.files, this.bytes, this.skippedFiles, this.skippedBytes);
+			}
+
+		}
+
+		/**
+		 * @return the most bytes the next file may have to be within the budget,
+		 *         {@link Long#MAX_VALUE} if unlimited, or -1 if it is over the
+		 *         budget anyway
+		 */
+		public long getRemainingBytes() {
+
+			if (this.skippedFiles > 0 || !allows(this.files + 1, this.bytes)) {
+				return -1;
+			}
+			return ReportBudget.this.maxBytes > 0 ? ReportBudget.this.maxBytes - this.bytes : Long.MAX_VALUE;
+
+		}
+
+		public int getSkippedFiles() {
+			return this.skippedFiles;
+		}
+
+	}
+
+	private static final long serialVersionUID = 1L;
+
+}
@@ -0,0 +1,19 @@
+package htmlpublisher.util;
+
+import java.io.IOException;
+
+/**
+ * Signals that a report has more files or bytes than its {@link ReportBudget}
+ * allows, so the copy has been aborted
+ */
+public class ReportBudgetExceededException extends IOException {
+
+	public ReportBudgetExceededException(String message) {
+
+		super(message);
+
+	}
+
+	private static final long serialVersionUID = 1L;
+
+}
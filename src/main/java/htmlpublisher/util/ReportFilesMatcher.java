@@ -0,0 +1,82 @@
+package htmlpublisher.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+/**
+ * Matches relative paths against the comma separated Ant patterns of the index
+ * pages (reportFiles) while files are scanned, so the report directory does not
+ * need to be scanned again after copying.
+ *
+ * Follows the semantics of one Ant file set per pattern: matches are collected
+ * per pattern in scan order, and an empty pattern matches every file.
+ */
+public class ReportFilesMatcher {
+
+	private final String[] patterns;
+	private final List<List<String>> matches = new ArrayList<>();
+
+	public ReportFilesMatcher(String reportFiles) {
+
+		String[] splitPatterns = reportFiles.split(",");
+		this.patterns = new String[splitPatterns.length];
+		for (int i = 0; i < splitPatterns.length; i++) {
+			this.patterns[i] = normalizePattern(splitPatterns[i]);
+			this.matches.add(new ArrayList<>());
+		}
+
+	}
+
+	/**
+	 * Same normalization as the Ant directory scanner
+	 */
+	private static String normalizePattern(String pattern) {
+
+		if (pattern.isEmpty()) {
+			return null; // No include pattern at all, the file set includes everything
+		}
+		String normalized = pattern.trim().replace('/', File.separatorChar).replace('\\', File.separatorChar);
+		if (normalized.endsWith(File.separator)) {
+			normalized += "**";
+		}
+		return normalized;
+
+	}
+
+	/**
+	 * Records the relative path (using the platform separator) for each pattern it
+	 * matches
+	 * 
+	 * @return whether any pattern matches
+	 */
+	public synchronized boolean match(String relativePath) {
+
+		boolean matched = false;
+		for (int i = 0; i < this.patterns.length; i++) {
+			String pattern = this.patterns[i];
+			if (pattern == null || SelectorUtils.matchPath(pattern, relativePath, true)) {
+				this.matches.get(i).add(relativePath);
+				matched = true;
+			}
+		}
+		return matched;
+
+	}
+
+	/**
+	 * @return the matched paths, grouped by pattern in the order of the patterns
+	 */
+	public synchronized List<String> getMatches() {
+
+		List<String> result = new ArrayList<>();
+		for (List<String> patternMatches : this.matches) {
+			result.addAll(patternMatches);
+		}
+		return result;
+
+	}
+
+}
@@ -0,0 +1,96 @@
+package htmlpublisher.util;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import hudson.util.DirScanner;
+import hudson.util.FileVisitor;
+
+/**
+ * Skips the files, that have already been copied by an earlier, interrupted
+ * attempt of publishing the same report
+ *
+ * A file is skipped, if a copy with the same size and modification time
+ * exists in the target directory. Copies that were only partly written have a
+ * different size, and the modification time is set only once a file is
+ * completely written, so they are copied again.
+ */
+public class ResumingDirScanner extends DirScanner {
+
+	private final DirScanner dirScanner;
+
+	/**
+	 * Relative path using '/' -&gt; size and modification time in seconds
+	 */
+	private final HashMap<String, long[]> landedFiles;
+
+	public ResumingDirScanner(DirScanner dirScanner, Map<String, long[]> landedFiles) {
+
+		this.dirScanner = dirScanner;
+		this.landedFiles = new HashMap<>(landedFiles);
+
+	}
+
+	/**
+	 * Collects the files of a target directory on the controller
+	 * 
+	 * @return relative path using '/' -&gt; size and modification time in
+	 *         seconds, the granularity kept by the copy
+	 */
+	public static Map<String, long[]> collectLandedFiles(File targetDir) throws IOException {
+
+		Map<String, long[]> landedFiles = new HashMap<>();
+		if (!targetDir.isDirectory()) {
+			return landedFiles;
+		}
+		Path root = targetDir.toPath();
+		try (Stream<Path> paths = Files.walk(root)) {
+			for (Path path : (Iterable<Path>) paths::iterator) {
+				File file = path.toFile();
+				if (file.isFile()) {
+					String relativePath = root.relativize(path).toString().replace(File.separatorChar, '/');
+					landedFiles.put(relativePath, new long[] { file.length(), file.lastModified() / 1000 });
+				}
+			}
+		}
+		return landedFiles;
+
+	}
+
+	@Override
+	public void scan(File dir, FileVisitor visitor) throws IOException {
+
+		this.dirScanner.scan(dir, new FileVisitor() {
+
+			@Override
+			public void visit(File file, String relativePath) throws IOException {
+				long[] landed = ResumingDirScanner.this.landedFiles.get(relativePath.replace('\\', '/'));
+				if (landed != null && landed[0] == file.length() && landed[1] == file.lastModified() / 1000) {
+					return; // Already copied
+				}
+				visitor.visit(file, relativePath);
+			}
+
+			@Override
+			public void visitSymlink(File link, String target, String relativePath) throws IOException {
+				visitor.visitSymlink(link, target, relativePath);
+			}
+
+			@Override
+			public boolean understandsSymlink() {
+				return visitor.understandsSymlink();
+			}
+
+		});
+
+	}
+
+	private static final long serialVersionUID = 1L;
+
+}
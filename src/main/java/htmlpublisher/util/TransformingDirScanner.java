@@ -0,0 +1,289 @@
+package htmlpublisher.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import hudson.util.DirScanner;
+import hudson.util.FileVisitor;
+
+/**
+ * Applies a chain of {@link FileTransformer}s to the files found by another
+ * scanner
+ *
+ * Files dropped by any transformer are not visited. The content of the other
+ * files is passed through the transformers that apply to them, in order, and
+ * the visitor is given a temporary file with the result instead of the original
+ * file. The temporary file is deleted once the visitor returns, so it must be
+ * read while visiting, as an archiver does. An archiver needs the size of each
+ * file before its content, so the result is not streamed. The temporary files
+ * are created in the given directory, e.g. the temporary directory of the
+ * workspace, so they are cleaned up with it if the agent is lost meanwhile.
+ *
+ * A scan that only collects the files into a {@link FileEntryQueue} must not
+ * transform them: {@link #forQueue} only drops files, and
+ * {@link #forReader} transforms them in the threads reading the queue, so the
+ * transformations run in parallel, right before the files are written to the
+ * streams of the copy.
+ */
+public class TransformingDirScanner extends DirScanner {
+
+	private final DirScanner dirScanner;
+	private final List<FileTransformer> transformers;
+	private final String tempDir;
+	private final boolean dropping;
+	private final boolean transforming;
+
+	public TransformingDirScanner(DirScanner dirScanner, List<? extends FileTransformer> transformers) {
+
+		this(dirScanner, transformers, null);
+
+	}
+
+	/**
+	 * @param tempDir the directory for the transformed files on the node, or
+	 *                null for the default temporary directory
+	 */
+	public TransformingDirScanner(DirScanner dirScanner, List<? extends FileTransformer> transformers,
+			String tempDir) {
+
+		this(dirScanner, transformers, tempDir, true, true);
+
+	}
+
+	private TransformingDirScanner(DirScanner dirScanner, List<? extends FileTransformer> transformers,
+			String tempDir, boolean dropping, boolean transforming) {
+
+		this.dirScanner = dirScanner;
+		this.transformers = new ArrayList<>(transformers);
+		this.tempDir = tempDir;
+		this.dropping = dropping;
+		this.transforming = transforming;
+
+	}
+
+	/**
+	 * @return the scanner to collect the files into a queue, which only drops
+	 *         files
+	 */
+	public static DirScanner forQueue(DirScanner dirScanner) {
+
+		if (dirScanner instanceof TransformingDirScanner) {
+			TransformingDirScanner transformingDirScanner = (TransformingDirScanner) dirScanner;
+			return new TransformingDirScanner(transformingDirScanner.dirScanner, transformingDirScanner.transformers,
+					transformingDirScanner.tempDir, true, false);
+		}
+		return dirScanner;
+
+	}
+
+	/**
+	 * @param reader the scanner reading the files from the queue
+	 * @return the scanner reading the files from the queue, which transforms them
+	 */
+	public static DirScanner forReader(DirScanner dirScanner, DirScanner reader) {
+
+		if (dirScanner instanceof TransformingDirScanner) {
+			TransformingDirScanner transformingDirScanner = (TransformingDirScanner) dirScanner;
+			return new TransformingDirScanner(reader, transformingDirScanner.transformers,
+					transformingDirScanner.tempDir, false, true);
+		}
+		return reader;
+
+	}
+
+	/**
+	 * @param visitor the visitor of the files read from the queue
+	 * @return the visitor of the files read from the queue, which transforms them
+	 */
+	public static FileVisitor forReader(DirScanner dirScanner, FileVisitor visitor) {
+
+		if (dirScanner instanceof TransformingDirScanner) {
+			TransformingDirScanner transformingDirScanner = (TransformingDirScanner) dirScanner;
+			return new TransformingVisitor(visitor, transformingDirScanner.transformers, transformingDirScanner.tempDir,
+					false, true);
+		}
+		return visitor;
+
+	}
+
+	/**
+	 * @param relativePath the path of the file, relative to the copied directory
+	 *                     using '/'
+	 * @return whether any of the transformers leaves the file out of the copy
+	 */
+	public static boolean drops(List<? extends FileTransformer> transformers, String relativePath) {
+
+		for (FileTransformer transformer : transformers) {
+			if (transformer.drops(relativePath)) {
+				return true;
+			}
+		}
+		return false;
+
+	}
+
+	/**
+	 * @param relativePath the path of the file, relative to the copied directory
+	 *                     using '/'
+	 * @return whether any of the transformers transforms the content of the file
+	 */
+	public static boolean transforms(List<? extends FileTransformer> transformers, String relativePath) {
+
+		for (FileTransformer transformer : transformers) {
+			if (transformer.transforms(relativePath)) {
+				return true;
+			}
+		}
+		return false;
+
+	}
+
+	/**
+	 * Replaces a file that has already been copied with its transformed content,
+	 * for copies that do not scan a directory, e.g. one unpacking an archive
+	 *
+	 * @param relativePath the path of the file, relative to the copied directory
+	 *                     using '/'
+	 * @param file         the copied file, which is replaced and not written to,
+	 *                     so a hard link to the original file is left unchanged
+	 */
+	public static void transform(List<? extends FileTransformer> transformers, String relativePath, File file)
+			throws IOException {
+
+		long lastModified = file.lastModified();
+		for (FileTransformer transformer : transformers) {
+			if (!transformer.transforms(relativePath)) {
+				continue;
+			}
+			Path next = Files.createTempFile(file.getParentFile().toPath(), ".htmlpublisher", ".transformed");
+			try {
+				try (InputStream in = Files.newInputStream(file.toPath());
+						OutputStream out = Files.newOutputStream(next)) {
+					transformer.transform(relativePath, in, out);
+				}
+				Files.move(next, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(next);
+			}
+		}
+		if (lastModified > 0) {
+			file.setLastModified(lastModified);
+		}
+
+	}
+
+	@Override
+	public void scan(File dir, FileVisitor visitor) throws IOException {
+
+		this.dirScanner.scan(dir,
+				new TransformingVisitor(visitor, this.transformers, this.tempDir, this.dropping, this.transforming));
+
+	}
+
+	private static final class TransformingVisitor extends FileVisitor {
+
+		private final FileVisitor visitor;
+		private final List<FileTransformer> transformers;
+		private final String tempDir;
+		private final boolean dropping;
+		private final boolean transforming;
+
+		TransformingVisitor(FileVisitor visitor, List<FileTransformer> transformers, String tempDir,
+				boolean dropping, boolean transforming) {
+
+			this.visitor = visitor;
+			this.transformers = transformers;
+			this.tempDir = tempDir;
+			this.dropping = dropping;
+			this.transforming = transforming;
+
+		}
+
+		@Override
+		public void visit(File file, String relativePath) throws IOException {
+
+			String path = relativePath.replace('\\', '/');
+			if (isDropped(path)) {
+				return;
+			}
+			if (!this.transforming) {
+				this.visitor.visit(file, relativePath);
+				return;
+			}
+
+			File current = file;
+			try {
+				for (FileTransformer transformer : this.transformers) {
+					if (!transformer.transforms(path)) {
+						continue;
+					}
+					File next = createTempFile();
+					try (InputStream in = Files.newInputStream(current.toPath());
+							OutputStream out = Files.newOutputStream(next.toPath())) {
+						transformer.transform(path, in, out);
+					} catch (IOException | RuntimeException e) {
+						Files.deleteIfExists(next.toPath());
+						throw e;
+					}
+					if (current != file) {
+						Files.deleteIfExists(current.toPath());
+					}
+					current = next;
+				}
+				if (current != file) {
+					// The transformed file is copied as if it was the original one
+					current.setLastModified(file.lastModified());
+				}
+				this.visitor.visit(current, relativePath);
+			} finally {
+				if (current != file) {
+					Files.deleteIfExists(current.toPath());
+				}
+			}
+
+		}
+
+		private File createTempFile() throws IOException {
+
+			if (this.tempDir == null) {
+				return Files.createTempFile("htmlpublisher", ".transformed").toFile();
+			}
+			Path dir = Files.createDirectories(Paths.get(this.tempDir));
+			return Files.createTempFile(dir, "htmlpublisher", ".transformed").toFile();
+
+		}
+
+		@Override
+		public void visitSymlink(File link, String target, String relativePath) throws IOException {
+
+			if (!isDropped(relativePath.replace('\\', '/'))) {
+				this.visitor.visitSymlink(link, target, relativePath);
+			}
+
+		}
+
+		@Override
+		public boolean understandsSymlink() {
+			return this.visitor.understandsSymlink();
+		}
+
+		private boolean isDropped(String path) {
+
+			return this.dropping && drops(this.transformers, path);
+
+		}
+
+	}
+
+	private static final long serialVersionUID = 1L;
+
+}
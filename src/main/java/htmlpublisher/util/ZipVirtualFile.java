@@ -0,0 +1,264 @@
+package htmlpublisher.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import jenkins.util.VirtualFile;
+
+/**
+ * The files of a report compacted into a zip archive, served without unpacking
+ * it
+ *
+ * The entries of the archive are read once, and shared by all files of the
+ * archive. Each file opens the archive again when its content is read, so no
+ * file handle is kept open between requests. Paths escaping the archive, e.g.
+ * with "..", never match an entry, so they do not exist.
+ */
+public class ZipVirtualFile extends VirtualFile {
+
+	private final Index index;
+	private final String path;
+
+	/**
+	 * Reads the entries of the archive
+	 */
+	public ZipVirtualFile(File archive) throws IOException {
+
+		this(new Index(archive), "");
+
+	}
+
+	private ZipVirtualFile(Index index, String path) {
+
+		this.index = index;
+		this.path = path;
+
+	}
+
+	/**
+	 * @return whether this is the root of the given archive, and the archive has
+	 *         not been replaced since its entries have been read
+	 */
+	public boolean isCurrent(File archive) {
+
+		return this.index.archive.equals(archive) && this.index.lastModified == archive.lastModified();
+
+	}
+
+	@NonNull
+	@Override
+	public String getName() {
+
+		if (this.path.isEmpty()) {
+			return this.index.archive.getName();
+		}
+		return this.path.substring(this.path.lastIndexOf('/') + 1);
+
+	}
+
+	@NonNull
+	@Override
+	public URI toURI() {
+
+		try {
+			return new URI("jar", this.index.archive.toURI() + "!/" + this.path, null);
+		} catch (URISyntaxException e) {
+			throw new IllegalStateException(e);
+		}
+
+	}
+
+	@Override
+	public VirtualFile getParent() {
+
+		if (this.path.isEmpty()) {
+			return VirtualFile.forFile(this.index.archive.getParentFile());
+		}
+		int slash = this.path.lastIndexOf('/');
+		return new ZipVirtualFile(this.index, slash < 0 ? "" : this.path.substring(0, slash));
+
+	}
+
+	@Override
+	public boolean isDirectory() {
+		return this.index.children.containsKey(this.path);
+	}
+
+	@Override
+	public boolean isFile() {
+		return this.index.entries.containsKey(this.path);
+	}
+
+	@Override
+	public boolean exists() {
+		return isDirectory() || isFile();
+	}
+
+	@NonNull
+	@Override
+	public VirtualFile[] list() {
+
+		TreeSet<String> names = this.index.children.get(this.path);
+		if (names == null) {
+			return new VirtualFile[0];
+		}
+		List<VirtualFile> children = new ArrayList<>(names.size());
+		for (String name : names) {
+			children.add(child(name));
+		}
+		return children.toArray(new VirtualFile[0]);
+
+	}
+
+	@NonNull
+	@Override
+	public VirtualFile child(@NonNull String name) {
+		return resolve(name);
+	}
+
+	private ZipVirtualFile resolve(String name) {
+
+		StringBuilder childPath = new StringBuilder(this.path);
+		for (String segment : name.split("/")) {
+			if (segment.isEmpty() || segment.equals(".")) {
+				continue;
+			}
+			// ".." is kept, so the path matches no entry
+			if (childPath.length() > 0) {
+				childPath.append('/');
+			}
+			childPath.append(segment);
+		}
+		return new ZipVirtualFile(this.index, childPath.toString());
+
+	}
+
+	@Override
+	public long length() {
+
+		ZipEntry entry = this.index.entries.get(this.path);
+		return entry != null ? entry.getSize() : 0;
+
+	}
+
+	@Override
+	public long lastModified() {
+
+		ZipEntry entry = this.index.entries.get(this.path);
+		return entry != null ? entry.getTime() : 0;
+
+	}
+
+	@Override
+	public boolean canRead() {
+		return exists();
+	}
+
+	@Override
+	public boolean supportIsDescendant() {
+		return true;
+	}
+
+	@Override
+	public boolean isDescendant(String childRelativePath) {
+
+		// An archive has no links, so every existing entry is a descendant
+		return resolve(childRelativePath).exists();
+
+	}
+
+	@Override
+	public InputStream open() throws IOException {
+
+		if (!isFile()) {
+			throw new FileNotFoundException(this.path + " not found in " + this.index.archive);
+		}
+		ZipFile zip = new ZipFile(this.index.archive);
+		try {
+			ZipEntry entry = zip.getEntry(this.path);
+			if (entry == null) {
+				throw new FileNotFoundException(this.path + " not found in " + this.index.archive);
+			}
+			return new FilterInputStream(zip.getInputStream(entry)) {
+
+				@Override
+				public void close() throws IOException {
+
+					try {
+						super.close();
+					} finally {
+						zip.close();
+					}
+
+				}
+
+			};
+		} catch (IOException | RuntimeException e) {
+			zip.close();
+			throw e;
+		}
+
+	}
+
+	/**
+	 * The entries of an archive, and the names within each directory
+	 */
+	private static final class Index {
+
+		private final File archive;
+		private final long lastModified;
+		private final Map<String, ZipEntry> entries = new HashMap<>();
+		private final Map<String, TreeSet<String>> children = new HashMap<>();
+
+		private Index(File archive) throws IOException {
+
+			this.archive = archive;
+			this.lastModified = archive.lastModified();
+			this.children.put("", new TreeSet<>());
+			try (ZipFile zip = new ZipFile(archive)) {
+				Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+				while (zipEntries.hasMoreElements()) {
+					ZipEntry entry = zipEntries.nextElement();
+					String name = entry.getName();
+					if (entry.isDirectory() || name.startsWith("/") || name.isEmpty()) {
+						continue;
+					}
+					this.entries.put(name, entry);
+					addToParents(name);
+				}
+			}
+
+		}
+
+		private void addToParents(String name) {
+
+			String child = name;
+			while (true) {
+				int slash = child.lastIndexOf('/');
+				String parent = slash < 0 ? "" : child.substring(0, slash);
+				TreeSet<String> names = this.children.computeIfAbsent(parent, k -> new TreeSet<>());
+				if (!names.add(child.substring(slash + 1)) || parent.isEmpty()) {
+					return;
+				}
+				child = parent;
+			}
+
+		}
+
+	}
+
+}
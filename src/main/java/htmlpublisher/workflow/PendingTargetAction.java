@@ -0,0 +1,64 @@
+package htmlpublisher.workflow;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import htmlpublisher.HtmlPublisherTarget;
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Keeps the target of a Pipeline step with its build until the step has completed, so the step can still publish the
+ * report after a restart of the controller. The target is saved with the build like any other action, the execution
+ * of the step only keeps the id of the action.
+ */
+@Restricted(NoExternalUse.class)
+public class PendingTargetAction extends InvisibleAction {
+
+    private final String id;
+
+    private final HtmlPublisherTarget target;
+
+    private PendingTargetAction(String id, HtmlPublisherTarget target) {
+        this.id = id;
+        this.target = target;
+    }
+
+    /**
+     * @return the id to get the target by after a restart
+     */
+    static String add(Run<?, ?> run, HtmlPublisherTarget target) throws IOException {
+        String id = UUID.randomUUID().toString();
+        run.addAction(new PendingTargetAction(id, target));
+        run.save();
+        return id;
+    }
+
+    /**
+     * @return the target, or null if it is not pending anymore
+     */
+    static HtmlPublisherTarget get(Run<?, ?> run, String id) {
+        for (PendingTargetAction action : run.getActions(PendingTargetAction.class)) {
+            if (action.id.equals(id)) {
+                return action.target;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops the target once the step has completed
+     */
+    static void remove(Run<?, ?> run, String id) throws IOException {
+        for (PendingTargetAction action : run.getActions(PendingTargetAction.class)) {
+            if (action.id.equals(id)) {
+                run.removeAction(action);
+                run.save();
+                return;
+            }
+        }
+    }
+
+}
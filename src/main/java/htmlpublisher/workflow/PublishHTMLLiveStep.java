@@ -0,0 +1,89 @@
+package htmlpublisher.workflow;
+
+import htmlpublisher.HtmlPublisherTarget;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Publishes an HTML report while the block is still writing it, so it can be followed during long builds.
+ */
+public class PublishHTMLLiveStep extends Step {
+
+    public static final int DEFAULT_INTERVAL = 30;
+
+    private final HtmlPublisherTarget target;
+
+    private int interval = DEFAULT_INTERVAL;
+
+    /**
+     * Constructor.
+     * @param target Target report to be published.
+     */
+    @DataBoundConstructor
+    public PublishHTMLLiveStep(@CheckForNull HtmlPublisherTarget target) {
+        this.target = target;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new PublishHTMLLiveStepExecution(this, context);
+    }
+
+    @CheckForNull
+    public HtmlPublisherTarget getTarget() {
+        return target;
+    }
+
+    /**
+     * @return the seconds between two updates of the report
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    @DataBoundSetter
+    public void setInterval(int interval) {
+        this.interval = interval > 0 ? interval : DEFAULT_INTERVAL;
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            Set<Class<?>> context = new HashSet<>();
+            Collections.addAll(context, FilePath.class, Run.class, TaskListener.class);
+            return Collections.unmodifiableSet(context);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "publishHTMLLive";
+        }
+
+        @Override
+        public boolean takesImplicitBlockArgument() {
+            return true;
+        }
+
+        @Override
+        @NonNull
+        public String getDisplayName() {
+            return "Publish an HTML report while it is written";
+        }
+    }
+}
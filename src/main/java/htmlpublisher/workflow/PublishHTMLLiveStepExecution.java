@@ -0,0 +1,145 @@
+package htmlpublisher.workflow;
+
+import java.util.Collections;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+
+import htmlpublisher.HtmlPublisher;
+import htmlpublisher.HtmlPublisherTarget;
+import htmlpublisher.LivePublishing;
+import hudson.AbortException;
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+
+/**
+ * Execution for {@link PublishHTMLLiveStep}.
+ *
+ * The report is updated in the background while the body runs, and sealed once the body has completed, also if it
+ * failed. After a restart of the controller the updates are not resumed, the report is published when the body
+ * completes.
+ */
+public class PublishHTMLLiveStepExecution extends StepExecution {
+    private static final long serialVersionUID = 1L;
+
+    private final transient PublishHTMLLiveStep step;
+
+    private transient LivePublishing live;
+
+    PublishHTMLLiveStepExecution(PublishHTMLLiveStep step, @NonNull StepContext context) {
+        super(context);
+        this.step = step;
+    }
+
+    @Override
+    public boolean start() throws Exception {
+        HtmlPublisherTarget target = step.getTarget();
+        if (target == null) {
+            throw new AbortException("Cannot publish the report. Target is not specified");
+        }
+        live = HtmlPublisher.startLivePublishing(
+                getContext().get(Run.class),
+                getContext().get(FilePath.class),
+                getContext().get(TaskListener.class),
+                target,
+                step.getInterval());
+        // Kept with the build, so the report is still published once the body completes after a restart
+        String pendingTarget = PendingTargetAction.add(getContext().get(Run.class), target);
+        getContext().newBodyInvoker().withCallback(new Callback(target, pendingTarget, live)).start();
+        return false;
+    }
+
+    @Override
+    public void stop(@NonNull Throwable cause) throws Exception {
+        LivePublishing live = this.live;
+        if (live != null) {
+            live.cancel();
+        }
+        super.stop(cause);
+    }
+
+    /**
+     * Seals the report once the body has completed
+     */
+    private static class Callback extends BodyExecutionCallback {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Lost with a restart of the controller, see {@link #pendingTarget}
+         */
+        private transient HtmlPublisherTarget target;
+
+        /**
+         * The id of the {@link PendingTargetAction} of the target
+         */
+        private final String pendingTarget;
+
+        /**
+         * Lost with a restart of the controller
+         */
+        private transient LivePublishing live;
+
+        Callback(HtmlPublisherTarget target, String pendingTarget, LivePublishing live) {
+            this.target = target;
+            this.pendingTarget = pendingTarget;
+            this.live = live;
+        }
+
+        @Override
+        public void onSuccess(StepContext context, Object result) {
+            seal(context, null, result);
+        }
+
+        @Override
+        public void onFailure(StepContext context, Throwable t) {
+            seal(context, t, null);
+        }
+
+        /**
+         * Copies the last changes without blocking the body, and completes the step with the outcome of the body
+         */
+        private void seal(StepContext context, Throwable bodyFailure, Object result) {
+            Computer.threadPoolForRemoting.submit(() -> {
+                try {
+                    boolean res;
+                    Run<?, ?> run = context.get(Run.class);
+                    if (live != null) {
+                        res = live.seal();
+                    } else {
+                        HtmlPublisherTarget target = this.target != null ? this.target : PendingTargetAction.get(run, pendingTarget);
+                        if (target == null) {
+                            throw new AbortException("Cannot publish the report. Target is not specified");
+                        }
+                        res = HtmlPublisher.publishReports(
+                                run,
+                                context.get(FilePath.class),
+                                context.get(TaskListener.class),
+                                Collections.singletonList(target),
+                                HtmlPublisher.class);
+                    }
+                    PendingTargetAction.remove(run, pendingTarget);
+                    if (bodyFailure != null) {
+                        context.onFailure(bodyFailure);
+                    } else if (!res) {
+                        context.onFailure(new AbortException("Cannot publish HTML files"));
+                    } else {
+                        context.onSuccess(result);
+                    }
+                } catch (Exception e) {
+                    if (bodyFailure != null) {
+                        bodyFailure.addSuppressed(e);
+                        context.onFailure(bodyFailure);
+                    } else {
+                        context.onFailure(e);
+                    }
+                }
+            });
+        }
+    }
+
+}
@@ -24,36 +24,150 @@
 package htmlpublisher.workflow;
 
 import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
 
 import org.jenkinsci.plugins.workflow.steps.StepContext;
-import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.springframework.security.core.Authentication;
 
 import htmlpublisher.HtmlPublisher;
 import htmlpublisher.HtmlPublisherTarget;
 import hudson.AbortException;
 import hudson.FilePath;
+import hudson.init.Terminator;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
 
 /**
  * Execution for {@link PublishHTMLStep}.
+ *
+ * The report is published on a thread of its own, so the CPS VM thread is not blocked. The publishing of a resumable
+ * target is interrupted when the controller shuts down, and only its copy is started again after the restart, which
+ * copies the files that are still missing.
+ *
  * @author Oleg Nenashev
  */
-public class PublishHTMLStepExecution extends SynchronousNonBlockingStepExecution<Void> {
+public class PublishHTMLStepExecution extends StepExecution {
     private static final long serialVersionUID = 1L;
 
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), "PublishHTMLStepExecution"));
+
+    /**
+     * The executions publishing a resumable target, interrupted when the controller shuts down
+     */
+    private static final Set<PublishHTMLStepExecution> RESUMABLE = ConcurrentHashMap.newKeySet();
+
     private final transient PublishHTMLStep step;
 
+    /**
+     * The id of the {@link PendingTargetAction} of a resumable target, so the publishing can continue after a restart
+     * of the controller
+     */
+    private String pendingTarget;
+
+    private transient volatile Future<?> task;
+
+    /**
+     * Whether the publishing has been interrupted by the shutdown of the controller, so it is left to {@link #onResume()}
+     */
+    private transient volatile boolean shuttingDown;
+
     PublishHTMLStepExecution(PublishHTMLStep step, @NonNull StepContext context) {
         super(context);
         this.step = step;
     }
 
     @Override
-    protected Void run() throws Exception {             
-        final HtmlPublisherTarget target = step.getTarget();
+    public boolean start() throws Exception {
+        HtmlPublisherTarget target = step.getTarget();
+        if (target != null && target.getResumable()) {
+            pendingTarget = PendingTargetAction.add(getContext().get(Run.class), target);
+        }
+        publish();
+        return false;
+    }
+
+    @Override
+    public void onResume() {
+        if (pendingTarget == null) {
+            getContext().onFailure(new AbortException("Resume after a restart is only supported for resumable reports"));
+            return;
+        }
+        // The step itself has been lost, its target is pending with the build
+        publish();
+    }
+
+    @Override
+    public void stop(@NonNull Throwable cause) throws Exception {
+        Future<?> task = this.task;
+        if (task != null) {
+            task.cancel(true);
+        }
+        super.stop(cause);
+    }
+
+    private void publish() {
+        Authentication auth = Jenkins.getAuthentication2();
+        if (pendingTarget != null) {
+            RESUMABLE.add(this);
+        }
+        task = EXECUTOR.submit(() -> {
+            try (ACLContext acl = ACL.as2(auth)) {
+                run();
+                getContext().onSuccess(null);
+            } catch (Throwable e) {
+                if (shuttingDown) {
+                    // The copy is resumed after the restart
+                    return;
+                }
+                getContext().onFailure(e);
+            } finally {
+                RESUMABLE.remove(this);
+            }
+        });
+    }
+
+    /**
+     * Interrupts the publishing of resumable targets, so their partial reports are kept for resuming after the restart
+     */
+    @Terminator
+    @Restricted(NoExternalUse.class)
+    public static void interruptResumable() {
+        for (PublishHTMLStepExecution execution : RESUMABLE) {
+            execution.shuttingDown = true;
+            Future<?> task = execution.task;
+            if (task != null) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * @return the target of the step, or after a restart that of a resumable step
+     */
+    private HtmlPublisherTarget getTarget() throws Exception {
+        if (step != null) {
+            return step.getTarget();
+        }
+        return pendingTarget != null ? PendingTargetAction.get(getContext().get(Run.class), pendingTarget) : null;
+    }
+
+    private void run() throws Exception {
+        final HtmlPublisherTarget target = getTarget();
         if (target == null) {
             throw new AbortException("Cannot publish the report. Target is not specified");
         }
@@ -65,10 +179,12 @@ public class PublishHTMLStepExecution extends SynchronousNonBlockingStepExecutio
                         getContext().get(TaskListener.class),
                         Collections.singletonList(target),
                         HtmlPublisher.class);
+        if (pendingTarget != null) {
+            PendingTargetAction.remove(getContext().get(Run.class), pendingTarget);
+        }
         if (!res) {
             throw new AbortException("Cannot publish HTML files");
         }      
-        return null;
     }
 
 }
@@ -13,7 +13,7 @@ st = namespace("jelly:stapler")
 
 Functions.initPageVariables(context)
 
-def text = new File(my.dir(), my.getHTMLTarget().getWrapperName()).text
+def text = my.readReportFile(my.getHTMLTarget().getWrapperName())
 
 def actual = Util.toHexString(MessageDigest.getInstance("SHA-1").digest(text.getBytes("UTF-8")))
 
@@ -31,8 +31,8 @@ def serveWrapper() {
     raw(header)
     script(src: "${resURL}/plugin/htmlpublisher/js/htmlpublisher.js", type: "text/javascript")
 
-    def legacyFile = new File(my.dir(), "htmlpublisher-wrapper.html")
-    def matcher = legacyFile.text =~ /<li id="tab\d+" class="unselected"(?: onclick="updateBody\('tab\d+'\);")? value="([^"]+)">([^<]+)<\/li>/
+    def legacyText = my.readReportFile("htmlpublisher-wrapper.html")
+    def matcher = legacyText =~ /<li id="tab\d+" class="unselected"(?: onclick="updateBody\('tab\d+'\);")? value="([^"]+)">([^<]+)<\/li>/
 
     def items = []
     def itemsTitle = []
@@ -47,6 +47,20 @@ def serveWrapper() {
         idx++
     }
 
+    def publishingStatus = my.publishingStatus
+    if (publishingStatus != null) {
+        // the report is shown while its remaining files are still being copied
+        span(class: "htmlpublisher-publishing", style: "float: right; font: bold 11px verdana, arial, sans-serif; padding: 3px 10px;",
+                publishingStatus.live ? _("live") : _("publishing", publishingStatus.percentComplete))
+    }
+
+    def truncation = my.truncation
+    if (truncation != null) {
+        // some files of the report have not been published because of its limits
+        span(class: "htmlpublisher-truncated", style: "float: right; font: bold 11px verdana, arial, sans-serif; padding: 3px 10px; color: #c4000a;",
+                _("truncated", truncation))
+    }
+
     span(class: "links-data-holder", 
             "data-back-to-name": "${my.backToName}",
             "data-root-url": "${rootURL}",
@@ -61,33 +75,33 @@ def serveWrapperLegacyDirectly() {
     // this minimized the potential for mischief in the case of legacy archives without checksum
     st.contentType(value: "text/html;charset=UTF-8")
 
-    def legacyFile = new File(my.dir(), "htmlpublisher-wrapper.html")
+    def legacyText = my.readReportFile("htmlpublisher-wrapper.html")
 
-    def scriptPattern = legacyFile.text =~ /(<script type="text\/javascript">document.getElementById\("hudson_link"\).innerHTML="Back to )(.*[<>"\\].*)(";<\/script>)/
+    def scriptPattern = legacyText =~ /(<script type="text\/javascript">document.getElementById\("hudson_link"\).innerHTML="Back to )(.*[<>"\\].*)(";<\/script>)/
 
     if (scriptPattern.find()) {
         throw new Descriptor.FormException("Can't use illegal character in the Job Name", "JobName")
     }
 
-    def tabPattern = legacyFile.text =~ /(<li id="tab\d+" class="unselected" onclick="updateBody\('tab\d+'\);" value=")(.*[<>"\\].*)(">)(.*[<>"\\].*)(<\/li>)/
+    def tabPattern = legacyText =~ /(<li id="tab\d+" class="unselected" onclick="updateBody\('tab\d+'\);" value=")(.*[<>"\\].*)(">)(.*[<>"\\].*)(<\/li>)/
 
     if (tabPattern.find()) {
         throw new Descriptor.FormException("Can't use illegal character in the Report Name", "ReportName")
     }
 
-    def valuePattern = legacyFile.text =~ /(<li id="tab\d+" class="unselected" onclick="updateBody\('tab\d+'\);" value=")([^<]+)(">)(.*[<>"\\].*)(<\/li>)/
+    def valuePattern = legacyText =~ /(<li id="tab\d+" class="unselected" onclick="updateBody\('tab\d+'\);" value=")([^<]+)(">)(.*[<>"\\].*)(<\/li>)/
 
     if (valuePattern.find()) {
         throw new Descriptor.FormException("Can't use illegal character in the Report Name", "ReportName")
     }
 
-    def titlePattern = legacyFile.text =~ /(<li id="tab\d+" class="unselected" onclick="updateBody\('tab\d+'\);" value=")(.*[<>"\\].*)(">)([^<]+)(<\/li>)/
+    def titlePattern = legacyText =~ /(<li id="tab\d+" class="unselected" onclick="updateBody\('tab\d+'\);" value=")(.*[<>"\\].*)(">)([^<]+)(<\/li>)/
 
     if (titlePattern.find()) {
         throw new Descriptor.FormException("Can't use illegal character in the Report Name", "ReportName")
     }
 
-    raw(legacyFile.text)
+    raw(legacyText)
 }
 
 if (my instanceof HtmlPublisherTarget.HTMLBuildAction) {
@@ -0,0 +1,27 @@
+package htmlpublisher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactJsonTransformerTest {
+
+    @Test
+    void testWhitespaceOutsideStringsRemoved() throws Exception {
+        CompactJsonTransformer transformer = new CompactJsonTransformer();
+        assertTrue(transformer.transforms("data/coverage.JSON"));
+        assertFalse(transformer.transforms("index.html"));
+
+        String json = "{\n  \"name\" : \"a \\\"quoted\\\" value\",\r\n\t\"list\": [ 1, 2 ],\n  \"\u00fc\": \" x \"\n}\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transformer.transform("data.json", new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), out);
+        assertEquals("{\"name\":\"a \\\"quoted\\\" value\",\"list\":[1,2],\"\u00fc\":\" x \"}", out.toString(StandardCharsets.UTF_8));
+    }
+
+}
@@ -1,5 +1,6 @@
 package htmlpublisher;
 
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
@@ -10,8 +11,12 @@ import hudson.slaves.DumbSlave;
 import hudson.slaves.EnvironmentVariablesNodeProperty;
 import hudson.slaves.JNLPLauncher;
 import hudson.slaves.RetentionStrategy;
+import hudson.tasks.ArtifactArchiver;
 import jenkins.MasterToSlaveFileCallable;
 import org.apache.commons.io.FileUtils;
+import org.htmlunit.HttpMethod;
+import org.htmlunit.WebRequest;
+import org.htmlunit.WebResponse;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,12 +24,15 @@ import org.jvnet.hudson.test.Issue;
 import org.jvnet.hudson.test.JenkinsRule;
 import org.jvnet.hudson.test.TemporaryDirectoryAllocator;
 import org.jvnet.hudson.test.TestBuilder;
+import org.jvnet.hudson.test.TestExtension;
 import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
 import org.testcontainers.DockerClientFactory;
 import org.testcontainers.containers.GenericContainer;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -32,9 +40,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.collection.IsEmptyCollection.empty;
+import static org.hamcrest.core.StringContains.containsString;
 import static org.hamcrest.core.IsNot.not;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.junit.jupiter.api.Assertions.*;
@@ -121,6 +134,322 @@ class HtmlPublisherIntegrationTest {
         assertFalse(tab2Files.contains("dummy.html"));
     }
 
+    @Test
+    void testFromArtifacts() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("artifacts_job");
+        final String reportDir = "autogen";
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher,
+                    BuildListener listener) throws InterruptedException, IOException {
+                FilePath ws = build.getWorkspace().child(reportDir);
+                ws.child("index.html").write("hello", "UTF-8");
+                ws.child("css/style.css").write("body {}", "UTF-8");
+                return true;
+            }
+        });
+        p.getPublishersList().add(new ArtifactArchiver(reportDir + "/**"));
+        HtmlPublisherTarget target = new HtmlPublisherTarget("tab1", reportDir, "index.html", true, true, false);
+        target.setFromArtifacts(true);
+        p.getPublishersList().add(new HtmlPublisher(List.of(target)));
+        FreeStyleBuild build = j.buildAndAssertSuccess(p);
+        j.assertLogContains("Copied 2 file(s) from the artifacts of the build", build);
+
+        File report = new File(build.getRootDir(), "htmlreports/tab1");
+        assertTrue(new File(report, "htmlpublisher-wrapper.html").isFile());
+        assertNotNull(build.getAction(HtmlPublisherTarget.HTMLBuildAction.class));
+        // Linked to the artifact on the standard storage, not stored twice
+        assertTrue(Files.isSameFile(new File(report, "css/style.css").toPath(),
+                new File(build.getArtifactsDir(), reportDir + "/css/style.css").toPath()));
+    }
+
+    @Test
+    void testArchive() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("archive_job");
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher,
+                    BuildListener listener) throws InterruptedException, IOException {
+                try (OutputStream out = build.getWorkspace().child("report.zip").write();
+                        ZipOutputStream zip = new ZipOutputStream(out)) {
+                    for (String name : new String[] {"index.html", "css/style.css", "data.bin", "../outside.html", ".git/index.html", "css/._style.css"}) {
+                        zip.putNextEntry(new ZipEntry(name));
+                        zip.write(name.getBytes(StandardCharsets.UTF_8));
+                        zip.closeEntry();
+                    }
+                }
+                return true;
+            }
+        });
+        HtmlPublisherTarget target = new HtmlPublisherTarget("tab1", "report.zip", "index.html", true, true, false);
+        target.setIncludes("**/*.html,**/*.css");
+        p.getPublishersList().add(new HtmlPublisher(List.of(target)));
+        FreeStyleBuild build = j.buildAndAssertSuccess(p);
+
+        File report = new File(build.getRootDir(), "htmlreports/tab1");
+        assertTrue(new File(report, "index.html").isFile());
+        assertTrue(new File(report, "css/style.css").isFile());
+        assertTrue(new File(report, "htmlpublisher-wrapper.html").isFile());
+        // Not included
+        assertFalse(new File(report, "data.bin").exists());
+        // Not within the report directory
+        assertFalse(new File(report.getParentFile(), "outside.html").exists());
+        // Ant default excludes
+        assertFalse(new File(report, ".git").exists());
+        assertFalse(new File(report, "css/._style.css").exists());
+    }
+
+    @Test
+    void testReportBudget() throws Exception {
+        TestBuilder writeReport = new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher,
+                    BuildListener listener) throws InterruptedException, IOException {
+                for (int i = 0; i < 5; i++) {
+                    build.getWorkspace().child("report/page" + i + ".html").write("page " + i, "UTF-8");
+                }
+                return true;
+            }
+        };
+
+        FreeStyleProject truncating = j.createFreeStyleProject("truncating_job");
+        truncating.getBuildersList().add(writeReport);
+        HtmlPublisherTarget target = new HtmlPublisherTarget("tab1", "report", "page0.html", true, true, false);
+        target.setMaxFiles(3);
+        target.setTruncateOverLimit(true);
+        truncating.getPublishersList().add(new HtmlPublisher(List.of(target)));
+        FreeStyleBuild build = j.buildAndAssertSuccess(truncating);
+        j.assertLogContains("Report 'tab1' truncated: 2 file(s)", build);
+        File report = new File(build.getRootDir(), "htmlreports/tab1");
+        assertEquals(3, report.list((dir, name) -> name.startsWith("page")).length);
+        assertNotNull(ReportTruncation.read(report));
+
+        FreeStyleProject aborting = j.createFreeStyleProject("aborting_job");
+        aborting.getBuildersList().add(writeReport);
+        target = new HtmlPublisherTarget("tab1", "report", "page0.html", true, true, false);
+        target.setMaxFiles(3);
+        aborting.getPublishersList().add(new HtmlPublisher(List.of(target)));
+        build = j.buildAndAssertStatus(Result.FAILURE, aborting);
+        j.assertLogContains("exceeds its limit of 3 file(s)", build);
+        assertFalse(new File(build.getRootDir(), "htmlreports/tab1").exists());
+    }
+
+    @Test
+    void testArchiveBudget() throws Exception {
+        TestBuilder writeArchive = new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher,
+                    BuildListener listener) throws InterruptedException, IOException {
+                // Streamed entries, so their size is not known before they are read
+                try (OutputStream out = build.getWorkspace().child("report.zip").write();
+                        ZipOutputStream zip = new ZipOutputStream(out)) {
+                    zip.putNextEntry(new ZipEntry("index.html"));
+                    zip.write("index".getBytes(StandardCharsets.UTF_8));
+                    zip.closeEntry();
+                    zip.putNextEntry(new ZipEntry("large.html"));
+                    zip.write(new byte[2 * 1024 * 1024]);
+                    zip.closeEntry();
+                }
+                return true;
+            }
+        };
+
+        FreeStyleProject truncating = j.createFreeStyleProject("truncating_archive_job");
+        truncating.getBuildersList().add(writeArchive);
+        HtmlPublisherTarget target = new HtmlPublisherTarget("tab1", "report.zip", "index.html", true, true, false);
+        target.setMaxSize(1);
+        target.setTruncateOverLimit(true);
+        truncating.getPublishersList().add(new HtmlPublisher(List.of(target)));
+        FreeStyleBuild build = j.buildAndAssertSuccess(truncating);
+        File report = new File(build.getRootDir(), "htmlreports/tab1");
+        assertTrue(new File(report, "index.html").isFile());
+        assertFalse(new File(report, "large.html").exists());
+        assertNotNull(ReportTruncation.read(report));
+
+        FreeStyleProject aborting = j.createFreeStyleProject("aborting_archive_job");
+        aborting.getBuildersList().add(writeArchive);
+        target = new HtmlPublisherTarget("tab1", "report.zip", "index.html", true, true, false);
+        target.setMaxSize(1);
+        aborting.getPublishersList().add(new HtmlPublisher(List.of(target)));
+        build = j.buildAndAssertStatus(Result.FAILURE, aborting);
+        j.assertLogContains("exceeds its limit of 1.0 MB", build);
+        assertFalse(new File(build.getRootDir(), "htmlreports/tab1").exists());
+    }
+
+    @Test
+    void testProjectLevelReportReplacedWhenComplete() throws Exception {
+        AtomicInteger pages = new AtomicInteger(2);
+        FreeStyleProject p = j.createFreeStyleProject("staging_job");
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher,
+                    BuildListener listener) throws InterruptedException, IOException {
+                build.getWorkspace().child("report").deleteRecursive();
+                for (int i = 0; i < pages.get(); i++) {
+                    build.getWorkspace().child("report/page" + i + ".html").write("build " + build.getNumber(), "UTF-8");
+                }
+                return true;
+            }
+        });
+        HtmlPublisherTarget target = new HtmlPublisherTarget("tab1", "report", "page0.html", false, false, false);
+        target.setMaxFiles(2);
+        p.getPublishersList().add(new HtmlPublisher(List.of(target)));
+        File report = new File(p.getRootDir(), "htmlreports/tab1");
+
+        j.buildAndAssertSuccess(p);
+        assertEquals("build 1", Files.readString(new File(report, "page0.html").toPath(), StandardCharsets.UTF_8));
+        j.buildAndAssertSuccess(p);
+        assertEquals("build 2", Files.readString(new File(report, "page0.html").toPath(), StandardCharsets.UTF_8));
+        assertTrue(new File(report, target.getWrapperName()).isFile());
+        assertEquals(0, report.getParentFile().list((dir, name) -> name.contains(".staging-")).length);
+
+        // A failed copy keeps the earlier report
+        pages.set(3);
+        j.buildAndAssertStatus(Result.FAILURE, p);
+        assertEquals("build 2", Files.readString(new File(report, "page0.html").toPath(), StandardCharsets.UTF_8));
+        assertEquals(0, report.getParentFile().list((dir, name) -> name.contains(".staging-")).length);
+    }
+
+    @Test
+    void testVerifyManifest() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("verified_job");
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher,
+                    BuildListener listener) throws InterruptedException, IOException {
+                build.getWorkspace().child("report/index.html").write("index", "UTF-8");
+                build.getWorkspace().child("report/css/style.css").write("style", "UTF-8");
+                return true;
+            }
+        });
+        p.getPublishersList().add(new HtmlPublisher(List.of(new HtmlPublisherTarget("tab1", "report", "index.html", true, true, false))));
+        FreeStyleBuild build = j.buildAndAssertSuccess(p);
+
+        JenkinsRule.WebClient webClient = j.createWebClient();
+        WebRequest verify = new WebRequest(new URL(j.getURL(), build.getUrl() + "tab1/verifyManifest"), HttpMethod.POST);
+        assertEquals("OK: 2 file(s) match the manifest",
+                webClient.getPage(webClient.addCrumb(verify)).getWebResponse().getContentAsString().trim());
+
+        Files.writeString(new File(build.getRootDir(), "htmlreports/tab1/css/style.css").toPath(), "changed");
+        webClient.setThrowExceptionOnFailingStatusCode(false);
+        WebResponse response = webClient.getPage(webClient.addCrumb(verify)).getWebResponse();
+        assertEquals(409, response.getStatusCode());
+        assertThat(response.getContentAsString(), containsString("css/style.css"));
+
+        // Not on GET
+        assertEquals(405, webClient.getPage(build, "tab1/verifyManifest").getWebResponse().getStatusCode());
+    }
+
+    @Test
+    void testStorageRoot() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("storage_job");
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher,
+                    BuildListener listener) throws InterruptedException, IOException {
+                build.getWorkspace().child("report/index.html").write("build " + build.getNumber(), "UTF-8");
+                return true;
+            }
+        });
+        p.getPublishersList().add(new HtmlPublisher(List.of(new HtmlPublisherTarget("tab1", "report", "index.html", true, true, false))));
+
+        // Published before the storage root is configured
+        FreeStyleBuild legacy = j.buildAndAssertSuccess(p);
+        assertTrue(new File(legacy.getRootDir(), "htmlreports/tab1/index.html").isFile());
+
+        File storageRoot = tmp.allocate();
+        HtmlPublisherConfiguration.getInstance().setStorageRoot(storageRoot.getAbsolutePath());
+        FreeStyleBuild build = j.buildAndAssertSuccess(p);
+        File report = new File(storageRoot, "jobs/storage_job/builds/" + build.getNumber() + "/htmlreports/tab1");
+        assertTrue(new File(report, "index.html").isFile());
+        assertFalse(new File(build.getRootDir(), "htmlreports").exists());
+
+        // Both reports are shown
+        JenkinsRule.WebClient webClient = j.createWebClient();
+        assertEquals("build 1", webClient.getPage(legacy, "tab1/index.html").getWebResponse().getContentAsString());
+        assertEquals("build 2", webClient.getPage(build, "tab1/index.html").getWebResponse().getContentAsString());
+
+        build.delete();
+        assertFalse(report.exists());
+    }
+
+    @Test
+    void testReportStorage() throws Exception {
+        File storageDir = tmp.allocate();
+        HtmlPublisherConfiguration.getInstance().setReportStorage(new LocalReportStorage(storageDir.getAbsolutePath()));
+        FreeStyleProject p = j.createFreeStyleProject("stored_job");
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher,
+                    BuildListener listener) throws InterruptedException, IOException {
+                build.getWorkspace().child("report/index.html").write("build " + build.getNumber(), "UTF-8");
+                return true;
+            }
+        });
+        p.getPublishersList().add(new HtmlPublisher(List.of(new HtmlPublisherTarget("tab1", "report", "index.html", true, true, false))));
+
+        FreeStyleBuild build = j.buildAndAssertSuccess(p);
+        j.assertLogContains("Stored 2 file(s) of report 'tab1'", build);
+        File stored = new File(storageDir, "jobs/stored_job/builds/1/tab1");
+        assertTrue(new File(stored, "index.html").isFile());
+        assertFalse(new File(build.getRootDir(), "htmlreports/tab1").exists());
+
+        // Served from the storage, with the wrapper file
+        JenkinsRule.WebClient webClient = j.createWebClient();
+        assertEquals("build 1", webClient.getPage(build, "tab1/index.html").getWebResponse().getContentAsString());
+        webClient.getPage(build, "tab1/");
+
+        // Still served from and deleted by the backend that has stored it, after another one has been configured
+        HtmlPublisherConfiguration.getInstance().setReportStorage(new LocalReportStorage(tmp.allocate().getAbsolutePath()));
+        assertEquals("build 1", webClient.getPage(build, "tab1/index.html").getWebResponse().getContentAsString());
+
+        build.delete();
+        assertFalse(stored.exists());
+    }
+
+    @Test
+    void testReportLifecycleConfiguration() throws Exception {
+        HtmlPublisherConfiguration configuration = HtmlPublisherConfiguration.getInstance();
+        configuration.setRawReportBuilds(5);
+        configuration.setKeepReportBuilds(20);
+        j.configRoundtrip();
+        assertEquals(5, configuration.getRawReportBuilds());
+        assertEquals(20, configuration.getKeepReportBuilds());
+        assertEquals(5, HtmlPublisherConfiguration.getEffectiveRawReportBuilds());
+
+        // The system property overrides the configuration
+        Integer rawReportBuilds = HtmlPublisher.RAW_REPORT_BUILDS;
+        HtmlPublisher.RAW_REPORT_BUILDS = 2;
+        try {
+            assertEquals(2, HtmlPublisherConfiguration.getEffectiveRawReportBuilds());
+            assertEquals(20, HtmlPublisherConfiguration.getEffectiveKeepReportBuilds());
+        } finally {
+            HtmlPublisher.RAW_REPORT_BUILDS = rawReportBuilds;
+        }
+    }
+
+    @Test
+    void testGlobalReportLimits() throws Exception {
+        HtmlPublisherConfiguration configuration = HtmlPublisherConfiguration.getInstance();
+        configuration.setMaxReportFiles(2);
+        configuration.setTrashDeletesPerSecond(0);
+        j.configRoundtrip();
+        assertEquals(2, configuration.getMaxReportFiles());
+        assertEquals(0, configuration.getMaxReportSize());
+        assertEquals(0, configuration.getTrashDeletesPerSecond());
+
+        FreeStyleProject p = j.createFreeStyleProject("limited_job");
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                for (int i = 0; i < 5; i++) {
+                    build.getWorkspace().child("report/page" + i + ".html").write("page " + i, "UTF-8");
+                }
+                return true;
+            }
+        });
+        // Limited by the global configuration only
+        HtmlPublisherTarget target = new HtmlPublisherTarget("limited", "report", "page0.html", true, true, false);
+        target.setTruncateOverLimit(true);
+        p.getPublishersList().add(new HtmlPublisher(List.of(target)));
+
+        FreeStyleBuild build = j.buildAndAssertSuccess(p);
+        File report = new File(build.getRootDir(), "htmlreports/limited");
+        assertEquals(2, report.list((dir, name) -> name.startsWith("page")).length);
+        assertNotNull(ReportTruncation.read(report));
+    }
+
     @Test
     @Issue("SECURITY-3303")
     void testNotFollowingSymlinks() throws Exception {
@@ -182,6 +511,38 @@ class HtmlPublisherIntegrationTest {
         assertTrue(tab2Files.contains("afile.html"));
     }
 
+    @Test
+    void testEnvironmentComputedOncePerPublish() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("variable_job");
+        addEnvironmentVariable("MYREPORTFILES", "afile.html");
+        addEnvironmentVariable("MYREPORTTITLE", "A Title");
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher,
+                    BuildListener listener) throws InterruptedException, IOException {
+                build.getWorkspace().child("autogen").child("afile.html").write("hello", "UTF-8");
+                CountingEnvironmentContributor.calls.set(0);
+                return true;
+            }
+        });
+        HtmlPublisherTarget target1 = new HtmlPublisherTarget("reportname1", "autogen", "${MYREPORTFILES}", true, true, false);
+        target1.setReportTitles("${MYREPORTTITLE}, ${MYREPORTTITLE}, ${MYREPORTTITLE}");
+        HtmlPublisherTarget target2 = new HtmlPublisherTarget("reportname2", "autogen", "${MYREPORTFILES}", true, true, false);
+        target2.setReportTitles("${MYREPORTTITLE}");
+        p.getPublishersList().add(new HtmlPublisher(Arrays.asList(target1, target2)));
+        j.buildAndAssertSuccess(p);
+        assertEquals(1, CountingEnvironmentContributor.calls.get());
+    }
+
+    @TestExtension("testEnvironmentComputedOncePerPublish")
+    public static class CountingEnvironmentContributor extends EnvironmentContributor {
+        static final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public void buildEnvironmentFor(@NonNull Run r, @NonNull EnvVars envs, @NonNull TaskListener listener) {
+            calls.incrementAndGet();
+        }
+    }
+
     @Test
     void testWithWildcardPatterns() throws Exception {
         FreeStyleProject p = j.createFreeStyleProject("variable_job");
@@ -364,6 +725,79 @@ class HtmlPublisherIntegrationTest {
         assertTrue(new File(build.getRootDir(), "htmlreports/reportnameB/htmlpublisher-wrapper.html").exists());
     }
 
+    @Test
+    void testReportsSharingReportDir() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("variable_job");
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                FilePath ws = build.getWorkspace();
+                ws.child("dirA").child("afile.html").write("hello", "UTF-8");
+                ws.child("dirA").child("bfile.html").write("goodbye", "UTF-8");
+                ws.child("dirB").child("cfile.html").write("hello again", "UTF-8");
+                return true;
+            }
+        });
+        HtmlPublisherTarget target1 = new HtmlPublisherTarget("reportnameA", "dirA", "afile.html", true, true, false);
+        target1.setNumberOfWorkers(4);
+        HtmlPublisherTarget target2 = new HtmlPublisherTarget("reportnameB", "dirA", "bfile.html", true, true, false);
+        HtmlPublisherTarget target3 = new HtmlPublisherTarget("reportnameC", "dirB", "cfile.html", true, true, false);
+
+        p.getPublishersList().add(new HtmlPublisher(Arrays.asList(target1, target2, target3)));
+        AbstractBuild build = j.buildAndAssertSuccess(p);
+        for (String reportName : Arrays.asList("reportnameA", "reportnameB")) {
+            assertTrue(new File(build.getRootDir(), "htmlreports/" + reportName + "/htmlpublisher-wrapper.html").exists(), reportName + "/htmlpublisher-wrapper.html must exist");
+            assertTrue(new File(build.getRootDir(), "htmlreports/" + reportName + "/afile.html").exists(), reportName + "/afile.html must exist");
+            assertTrue(new File(build.getRootDir(), "htmlreports/" + reportName + "/bfile.html").exists(), reportName + "/bfile.html must exist");
+        }
+        assertTrue(new File(build.getRootDir(), "htmlreports/reportnameC/cfile.html").exists(), "reportnameC/cfile.html must exist");
+        // Only the files of the report are taken from reportnameA, not its wrapper file
+        File reportB = new File(build.getRootDir(), "htmlreports/reportnameB");
+        assertEquals(Set.of("afile.html", "bfile.html"), ReportManifest.load(reportB, null).getHashes().keySet());
+        assertTrue(ReportManifest.load(reportB, null).verify(reportB, target2.getWrapperName()).isEmpty());
+
+        // The log of each target is reported in the order of the targets
+        String log = JenkinsRule.getLog(build);
+        int a = log.indexOf("to reportnameA");
+        int b = log.indexOf("to reportnameB");
+        int c = log.indexOf("to reportnameC");
+        assertTrue(a >= 0 && a < b && b < c, "targets must be logged in order");
+        assertTrue(log.contains("[htmlpublisher] Copying from report 'reportnameA' with the same HTML directory"), "reportnameB must reuse the copy of reportnameA");
+    }
+
+    @Test
+    void testReportsSharingReportDirWithDifferentBudgets() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("budget_job");
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                for (int i = 0; i < 5; i++) {
+                    build.getWorkspace().child("report/page" + i + ".html").write("page " + i, "UTF-8");
+                }
+                return true;
+            }
+        });
+        HtmlPublisherTarget truncated = new HtmlPublisherTarget("truncated", "report", "page0.html", true, true, false);
+        truncated.setMaxFiles(2);
+        truncated.setTruncateOverLimit(true);
+        HtmlPublisherTarget unlimited = new HtmlPublisherTarget("unlimited", "report", "page0.html", true, true, false);
+        HtmlPublisherTarget alsoTruncated = new HtmlPublisherTarget("alsoTruncated", "report", "page0.html", true, true, false);
+        alsoTruncated.setMaxFiles(2);
+        alsoTruncated.setTruncateOverLimit(true);
+
+        p.getPublishersList().add(new HtmlPublisher(Arrays.asList(truncated, unlimited, alsoTruncated)));
+        FreeStyleBuild build = j.buildAndAssertSuccess(p);
+        File reports = new File(build.getRootDir(), "htmlreports");
+        assertEquals(2, new File(reports, "truncated").list((dir, name) -> name.startsWith("page")).length);
+        assertNotNull(ReportTruncation.read(new File(reports, "truncated")));
+        // Not limited by the budget of the other target
+        assertEquals(5, new File(reports, "unlimited").list((dir, name) -> name.startsWith("page")).length);
+        assertNull(ReportTruncation.read(new File(reports, "unlimited")));
+        // The same budget shares the copy, and its truncation
+        j.assertLogContains("[htmlpublisher] Copying from report 'truncated' with the same HTML directory", build);
+        j.assertLogNotContains("[htmlpublisher] Copying from report 'unlimited'", build);
+        assertEquals(2, new File(reports, "alsoTruncated").list((dir, name) -> name.startsWith("page")).length);
+        assertNotNull(ReportTruncation.read(new File(reports, "alsoTruncated")));
+    }
+
     private void addEnvironmentVariable(String key, String value) {
         EnvironmentVariablesNodeProperty prop = new EnvironmentVariablesNodeProperty();
         EnvVars envVars = prop.getEnvVars();
@@ -37,6 +37,19 @@ HtmlPublisherTest {
 
     }
 
+    @Test
+    void testSanitizedNameFollowsChanges() {
+        HtmlPublisherTarget target = new HtmlPublisherTarget("foo_bar baz", "target", "tab1.html", true, true, false);
+        assertEquals("foo_5fbar_20baz", target.getSanitizedName());
+
+        target.setEscapeUnderscores(false);
+        assertEquals("foo_bar_20baz", target.getSanitizedName());
+
+        target.setReportName("Report");
+        assertEquals("Report", target.getSanitizedName());
+        assertEquals("_e2_9c_93", HtmlPublisherTarget.sanitizeReportName("\u2713", true));
+    }
+
     @Test
     void testNumberOfWorkers() {
         HtmlPublisherTarget target = new HtmlPublisherTarget("tab1", "target", "tab1.html", true, true, false);
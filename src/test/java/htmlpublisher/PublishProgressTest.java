@@ -0,0 +1,68 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import htmlpublisher.util.ResumingDirScanner;
+import hudson.util.FileVisitor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublishProgressTest {
+
+    @TempDir
+    private File tmp;
+
+    @Test
+    void testResumeSkipsLandedFiles() throws Exception {
+        File reportDir = new File(tmp, "report");
+        for (String name : new String[] {"index.html", "css/style.css", "partial.js", "missing.html"}) {
+            File file = new File(reportDir, name);
+            file.getParentFile().mkdirs();
+            Files.writeString(file.toPath(), "content of " + name, StandardCharsets.UTF_8);
+        }
+        File targetDir = new File(tmp, "htmlreports/My_20Report");
+
+        // First attempt, interrupted after some files have landed
+        PublishProgress progress = PublishProgress.start(targetDir, ":" + reportDir, "job#1");
+        assertFalse(progress.isResuming());
+        assertTrue(PublishProgress.getManifest(targetDir).isFile());
+        for (String name : new String[] {"index.html", "css/style.css"}) {
+            File landed = new File(targetDir, name);
+            landed.getParentFile().mkdirs();
+            Files.copy(new File(reportDir, name).toPath(), landed.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+        }
+        Files.writeString(new File(targetDir, "partial.js").toPath(), "cont", StandardCharsets.UTF_8);
+
+        // The same build resumes, copying only the missing and partial files
+        progress = PublishProgress.start(targetDir, ":" + reportDir, "job#1");
+        assertTrue(progress.isResuming());
+        List<String> scanned = new ArrayList<>();
+        new ResumingDirScanner(HtmlPublisher.dirScannerGlob("**/*", null, true, LinkOption.NOFOLLOW_LINKS),
+                progress.getLandedFiles()).scan(reportDir, new FileVisitor() {
+                    @Override
+                    public void visit(File f, String relativePath) {
+                        scanned.add(relativePath);
+                    }
+                });
+        scanned.sort(null);
+        assertEquals(List.of("missing.html", "partial.js"), scanned);
+
+        // Another build starts from scratch
+        assertFalse(PublishProgress.start(targetDir, ":" + reportDir, "job#2").isResuming());
+
+        progress.complete();
+        assertFalse(PublishProgress.getManifest(targetDir).exists());
+    }
+
+}
@@ -0,0 +1,104 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReportCoordinatorTest {
+
+    @TempDir
+    private File tmp;
+
+    @Test
+    void testNewerBuildSupersedesOlder() throws Exception {
+        File reportDir = new File(tmp, "htmlreports/Tests");
+        List<Integer> replaced = new ArrayList<>();
+
+        ReportCoordinator.Ticket first = ReportCoordinator.register(reportDir, 1);
+        ReportCoordinator.Ticket second = ReportCoordinator.register(reportDir, 2);
+        assertEquals(2, first.getSupersededBy());
+        assertEquals(0, second.getSupersededBy());
+
+        // The older build neither copies nor replaces the report anymore
+        assertFalse(first.enterCopy());
+        assertFalse(first.replace(() -> replaced.add(1)));
+        assertTrue(second.replace(() -> replaced.add(2)));
+
+        // An older build finishing later does not replace the newer report
+        ReportCoordinator.Ticket late = ReportCoordinator.register(reportDir, 1);
+        assertEquals(2, late.getSupersededBy());
+        assertEquals(List.of(2), replaced);
+
+        // Other reports are independent
+        assertEquals(0, ReportCoordinator.register(new File(tmp, "htmlreports/Coverage"), 1).getSupersededBy());
+    }
+
+    @Test
+    void testRunningCopyIsCancelled() throws Exception {
+        File reportDir = new File(tmp, "htmlreports/Tests");
+        ReportCoordinator.Ticket first = ReportCoordinator.register(reportDir, 1);
+        CountDownLatch copying = new CountDownLatch(1);
+        boolean[] cancelled = new boolean[1];
+        Thread copy = new Thread(() -> {
+            assertTrue(first.enterCopy());
+            try {
+                copying.countDown();
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                cancelled[0] = true;
+            } finally {
+                first.exitCopy();
+            }
+        });
+        copy.start();
+        assertTrue(copying.await(1, TimeUnit.MINUTES));
+
+        ReportCoordinator.register(reportDir, 2);
+        copy.join(TimeUnit.MINUTES.toMillis(1));
+        assertTrue(cancelled[0]);
+        assertEquals(2, first.getSupersededBy());
+    }
+
+    @Test
+    void testAbortedCopyIsNotStarted() {
+        ReportCoordinator.Ticket ticket = ReportCoordinator.register(new File(tmp, "htmlreports/Tests"), 1);
+        ticket.abort();
+        assertFalse(ticket.enterCopy());
+        assertFalse(Thread.currentThread().isInterrupted());
+        ticket.release();
+    }
+
+    @Test
+    void testReleasedEntriesAreDropped() throws Exception {
+        File reportDir = new File(tmp, "htmlreports/Tests");
+        assertTrue(reportDir.getParentFile().mkdirs());
+        int size = ReportCoordinator.size();
+
+        ReportCoordinator.Ticket first = ReportCoordinator.register(reportDir, 1);
+        ReportCoordinator.Ticket second = ReportCoordinator.register(reportDir, 2);
+        assertEquals(size + 1, ReportCoordinator.size());
+        assertTrue(second.replace(() -> {}));
+        second.release();
+        // Still published by the older build
+        assertEquals(size + 1, ReportCoordinator.size());
+        first.release();
+        first.release();
+        assertEquals(size, ReportCoordinator.size());
+
+        // The newer report is still known once the entry is dropped
+        ReportCoordinator.Ticket late = ReportCoordinator.register(reportDir, 1);
+        assertEquals(2, late.getSupersededBy());
+        late.release();
+        assertEquals(size, ReportCoordinator.size());
+    }
+
+}
@@ -0,0 +1,94 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import htmlpublisher.util.RateLimiter;
+import htmlpublisher.util.ZipVirtualFile;
+import jenkins.util.VirtualFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ReportLifecycleTest {
+
+    @TempDir
+    private File tmp;
+
+    @Test
+    void testCompactedReportIsServedFromArchive() throws Exception {
+        File reportDir = new File(tmp, "builds/1/htmlreports/Tests");
+        write(reportDir, "index.html", "index");
+        write(reportDir, "css/style.css", "style");
+        write(reportDir, "js/lib/app.js", "app");
+
+        ReportLifecycle.compact(reportDir, new RateLimiter(0));
+
+        assertFalse(reportDir.exists());
+        File archive = ReportLifecycle.getArchive(reportDir);
+        assertTrue(archive.isFile());
+
+        ZipVirtualFile root = new ZipVirtualFile(archive);
+        assertTrue(root.isCurrent(archive));
+        assertEquals(List.of("css", "index.html", "js"), names(root.list()));
+        assertTrue(root.child("js").isDirectory());
+        assertEquals(List.of("app.js"), names(root.child("js/lib").list()));
+        assertEquals("app", read(root.child("js").child("lib/app.js")));
+        assertEquals(5, root.child("css/style.css").length());
+
+        // Paths escaping the archive do not exist
+        assertFalse(root.child("../Tests/index.html").exists());
+        assertFalse(root.child("js/../index.html").exists());
+        assertFalse(root.child("missing.html").exists());
+    }
+
+    @Test
+    void testLinksAreNotCompacted() throws Exception {
+        File outside = new File(tmp, "secrets");
+        write(outside, "secret.txt", "secret");
+        File reportDir = new File(tmp, "builds/1/htmlreports/Tests");
+        write(reportDir, "index.html", "index");
+        try {
+            Files.createSymbolicLink(new File(reportDir, "secret.txt").toPath(), new File(outside, "secret.txt").toPath());
+            Files.createSymbolicLink(new File(reportDir, "secrets").toPath(), outside.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            assumeTrue(false, "Needs symbolic links");
+        }
+
+        ReportLifecycle.compact(reportDir, new RateLimiter(0));
+
+        ZipVirtualFile root = new ZipVirtualFile(ReportLifecycle.getArchive(reportDir));
+        assertEquals(List.of("index.html"), names(root.list()));
+        assertFalse(root.child("secret.txt").exists());
+        assertFalse(root.child("secrets/secret.txt").exists());
+        // The targets of the links are left alone
+        assertTrue(new File(outside, "secret.txt").isFile());
+    }
+
+    private static List<String> names(VirtualFile[] files) {
+        return Arrays.stream(files).map(VirtualFile::getName).toList();
+    }
+
+    private static String read(VirtualFile file) throws IOException {
+        try (InputStream in = file.open()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void write(File dir, String name, String content) throws IOException {
+        File file = new File(dir, name);
+        file.getParentFile().mkdirs();
+        Files.writeString(file.toPath(), content, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,67 @@
+package htmlpublisher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import htmlpublisher.util.HashingArchiver;
+import hudson.FilePath;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ReportManifestTest {
+
+    @TempDir
+    private File tmp;
+
+    @Test
+    void testHashesComputedWhileStreamed() throws Exception {
+        File reportDir = new File(tmp, "report");
+        for (String name : new String[] {"index.html", "css/style.css"}) {
+            File file = new File(reportDir, name);
+            file.getParentFile().mkdirs();
+            Files.writeString(file.toPath(), "content of " + name, StandardCharsets.UTF_8);
+        }
+
+        // Streamed like a copy from an agent
+        Map<String, String> hashes = new TreeMap<>();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (HashingArchiver archiver = new HashingArchiver(stream, hashes)) {
+            archiver.visit(new File(reportDir, "index.html"), "index.html");
+            archiver.visit(new File(reportDir, "css/style.css"), "css/style.css");
+        }
+        File targetDir = new File(tmp, "htmlreports/Report");
+        new FilePath(targetDir).untarFrom(new ByteArrayInputStream(stream.toByteArray()), FilePath.TarCompression.GZIP);
+
+        // The same hashes as reading the landed files, except for the wrapper
+        Files.writeString(new File(targetDir, "htmlpublisher-wrapper.html").toPath(), "wrapper", StandardCharsets.UTF_8);
+        assertEquals(ReportManifest.hash(targetDir, "htmlpublisher-wrapper.html"), hashes);
+
+        ReportManifest.write(targetDir, hashes);
+        ReportManifest manifest = ReportManifest.load(targetDir, null);
+        assertNotNull(manifest);
+        assertEquals(hashes, manifest.getHashes());
+        assertSame(manifest, ReportManifest.load(targetDir, manifest));
+        assertEquals(List.of(), manifest.verify(targetDir, "htmlpublisher-wrapper.html"));
+
+        // Changed and added files are found on demand
+        Files.writeString(new File(targetDir, "index.html").toPath(), "changed", StandardCharsets.UTF_8);
+        Files.writeString(new File(targetDir, "added.html").toPath(), "added", StandardCharsets.UTF_8);
+        assertEquals(List.of("index.html", "added.html"), manifest.verify(targetDir, "htmlpublisher-wrapper.html"));
+
+        ReportManifest.delete(targetDir);
+        assertNull(ReportManifest.load(targetDir, manifest));
+    }
+
+}
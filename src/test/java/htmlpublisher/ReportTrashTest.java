@@ -0,0 +1,58 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReportTrashTest {
+
+    @TempDir
+    private File tmp;
+
+    @Test
+    void testDeleteTree() throws Exception {
+        File root = createTree(10);
+        assertEquals(10 + 3, ReportTrash.deleteTree(root.toPath(), 0));
+        assertFalse(root.exists());
+    }
+
+    @Test
+    void testDeleteTreeRateLimited() throws Exception {
+        File root = createTree(20);
+        long startTime = System.nanoTime();
+        assertEquals(20 + 3, ReportTrash.deleteTree(root.toPath(), 100));
+        // 23 deletes at 100 per second take at least 230 ms
+        assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(230));
+        assertFalse(root.exists());
+    }
+
+    @Test
+    void testDeleteWithoutJenkins() throws Exception {
+        File root = createTree(5);
+        // Not running on the controller, so there is no trash and the directory is deleted in place
+        ReportTrash.delete(root);
+        assertFalse(root.exists());
+    }
+
+    /**
+     * @return a report directory with the files in two subdirectories
+     */
+    private File createTree(int files) throws Exception {
+        File root = new File(tmp, "report");
+        for (int i = 0; i < files; i++) {
+            File file = new File(root, (i % 2 == 0 ? "css" : "js") + "/file" + i);
+            file.getParentFile().mkdirs();
+            Files.writeString(file.toPath(), "content " + i, StandardCharsets.UTF_8);
+        }
+        return root;
+    }
+
+}
@@ -0,0 +1,69 @@
+package htmlpublisher;
+
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleProject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static hudson.Functions.isWindows;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+@WithJenkins
+class Security3303Test {
+
+    private JenkinsRule j;
+
+    @TempDir
+    private File tmp;
+
+    @BeforeEach
+    void setUp(JenkinsRule rule) {
+        j = rule;
+    }
+
+    @Test
+    void artifactLinksAreNotFollowed() throws Exception {
+        assumeFalse(isWindows());
+        File outside = new File(tmp, "outside");
+        Files.createDirectories(outside.toPath());
+        Files.writeString(new File(outside, "secret.html").toPath(), "secret", StandardCharsets.UTF_8);
+
+        FreeStyleProject p = j.createFreeStyleProject();
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
+                    throws InterruptedException, IOException {
+                // Like archived artifacts, which may keep the links of the workspace
+                File report = new File(build.getArtifactsDir(), "report");
+                Files.createDirectories(report.toPath());
+                Files.writeString(new File(report, "index.html").toPath(), "index", StandardCharsets.UTF_8);
+                Files.createSymbolicLink(new File(report, "secret.html").toPath(), new File(outside, "secret.html").toPath());
+                Files.createSymbolicLink(new File(report, "linked").toPath(), outside.toPath());
+                return true;
+            }
+        });
+        HtmlPublisherTarget target = new HtmlPublisherTarget("tab1", "report", "index.html", true, true, false);
+        target.setFromArtifacts(true);
+        p.getPublishersList().add(new HtmlPublisher(List.of(target)));
+
+        AbstractBuild<?, ?> build = j.buildAndAssertSuccess(p);
+        File report = new File(build.getRootDir(), "htmlreports/tab1");
+        assertTrue(new File(report, "index.html").isFile());
+        assertFalse(new File(report, "secret.html").exists());
+        assertFalse(new File(report, "linked/secret.html").exists());
+    }
+
+}
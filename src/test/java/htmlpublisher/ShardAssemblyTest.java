@@ -0,0 +1,100 @@
+package htmlpublisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import htmlpublisher.HtmlPublisherTarget.ShardLayout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardAssemblyTest {
+
+    @TempDir
+    private File tmp;
+
+    @Test
+    void testSubdirectoryPerShard() throws Exception {
+        File reportDir = new File(tmp, "htmlreports/Tests");
+
+        ShardAssembly linux = new ShardAssembly(reportDir, "linux", 2, ShardLayout.SUBDIRECTORY);
+        ShardAssembly windows = new ShardAssembly(reportDir, "windows", 2, ShardLayout.SUBDIRECTORY);
+        assertEquals(new File(reportDir, "linux"), linux.getCopyTarget());
+
+        windows.begin("job#1");
+        write(windows.getCopyTarget(), "index.html", "windows");
+        assertNull(windows.arrive("index.html"));
+        assertEquals(1, windows.getMissingShards());
+
+        linux.begin("job#1");
+        write(linux.getCopyTarget(), "index.html", "linux");
+        assertEquals(List.of("linux/index.html", "windows/index.html"), linux.arrive("index.html"));
+        assertEquals(0, linux.getMissingShards());
+
+        // The state is kept next to the report, so it is not served
+        assertEquals(List.of("linux", "windows"), List.of(reportDir.list()).stream().sorted().toList());
+
+        // The next build at project level starts over
+        new ShardAssembly(reportDir, "linux", 2, ShardLayout.SUBDIRECTORY).begin("job#2");
+        assertFalse(new File(reportDir, "windows").exists());
+    }
+
+    @Test
+    void testMergeKeepsFirst() throws Exception {
+        File reportDir = new File(tmp, "htmlreports/Coverage");
+
+        ShardAssembly first = new ShardAssembly(reportDir, "first", 2, ShardLayout.MERGE_KEEP_FIRST);
+        first.begin("job#1");
+        write(first.getCopyTarget(), "index.html", "first");
+        write(first.getCopyTarget(), "first/data.js", "first");
+        assertNull(first.arrive("index.html"));
+
+        ShardAssembly second = new ShardAssembly(reportDir, "second", 2, ShardLayout.MERGE_KEEP_FIRST);
+        second.begin("job#1");
+        write(second.getCopyTarget(), "index.html", "second");
+        write(second.getCopyTarget(), "second/data.js", "second");
+        assertEquals(List.of("index.html"), second.arrive("index.html"));
+
+        assertEquals("first", Files.readString(new File(reportDir, "index.html").toPath(), StandardCharsets.UTF_8));
+        assertTrue(new File(reportDir, "first/data.js").isFile());
+        assertTrue(new File(reportDir, "second/data.js").isFile());
+        assertFalse(second.getCopyTarget().exists());
+    }
+
+    @Test
+    void testMergeFailsOnConflict() throws Exception {
+        File reportDir = new File(tmp, "htmlreports/Coverage");
+
+        ShardAssembly first = new ShardAssembly(reportDir, "first", 2, ShardLayout.MERGE_FAIL_ON_CONFLICT);
+        first.begin("job#1");
+        write(first.getCopyTarget(), "index.html", "first");
+        assertNull(first.arrive("index.html"));
+
+        ShardAssembly second = new ShardAssembly(reportDir, "second", 2, ShardLayout.MERGE_FAIL_ON_CONFLICT);
+        second.begin("job#1");
+        write(second.getCopyTarget(), "index.html", "second");
+        write(second.getCopyTarget(), "other.html", "second");
+        assertThrows(IOException.class, () -> second.arrive("index.html"));
+
+        // Nothing of the conflicting shard has been merged, and it has not arrived
+        assertEquals("first", Files.readString(new File(reportDir, "index.html").toPath(), StandardCharsets.UTF_8));
+        assertFalse(new File(reportDir, "other.html").exists());
+        assertEquals(1, second.getMissingShards());
+    }
+
+    private static void write(File dir, String name, String content) throws IOException {
+        File file = new File(dir, name);
+        file.getParentFile().mkdirs();
+        Files.writeString(file.toPath(), content, StandardCharsets.UTF_8);
+    }
+
+}
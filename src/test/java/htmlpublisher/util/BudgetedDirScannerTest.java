@@ -0,0 +1,100 @@
+package htmlpublisher.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import hudson.util.DirScanner;
+import hudson.util.FileVisitor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BudgetedDirScannerTest {
+
+	@TempDir
+	private File tmp;
+
+	@Test
+	void testWithinBudget() throws Exception {
+
+		write(5, 10);
+
+		List<long[]> truncations = new ArrayList<>();
+		List<String> visited = scan(new BudgetedDirScanner(new DirScanner.Full(), new ReportBudget(5, 50, false),
+				(copiedFiles, copiedBytes, skippedFiles, skippedBytes) -> truncations
+						.add(new long[] { skippedFiles, skippedBytes })));
+
+		assertEquals(5, visited.size());
+		assertTrue(truncations.isEmpty());
+
+	}
+
+	@Test
+	void testAbortedOverBudget() throws Exception {
+
+		write(5, 10);
+
+		// Either limit aborts the scan
+		assertThrows(ReportBudgetExceededException.class,
+				() -> scan(new BudgetedDirScanner(new DirScanner.Full(), new ReportBudget(4, 0, false), null)));
+		assertThrows(ReportBudgetExceededException.class,
+				() -> scan(new BudgetedDirScanner(new DirScanner.Full(), new ReportBudget(0, 49, false), null)));
+
+	}
+
+	@Test
+	void testTruncatedOverBudget() throws Exception {
+
+		write(5, 10);
+
+		List<long[]> truncations = new ArrayList<>();
+		List<String> visited = scan(new BudgetedDirScanner(new DirScanner.Full(), new ReportBudget(0, 25, true),
+				(copiedFiles, copiedBytes, skippedFiles, skippedBytes) -> truncations
+						.add(new long[] { copiedFiles, copiedBytes, skippedFiles, skippedBytes })));
+
+		assertEquals(2, visited.size());
+		assertEquals(1, truncations.size());
+		assertEquals(List.of(2L, 20L, 3L, 30L), List.of(truncations.get(0)[0], truncations.get(0)[1],
+				truncations.get(0)[2], truncations.get(0)[3]));
+
+	}
+
+	@Test
+	void testDescription() {
+
+		assertEquals("1,000 file(s) / 1.5 MB", new ReportBudget(1000, 1536 * 1024, false).toString());
+		assertEquals("10 file(s)", new ReportBudget(10, 0, true).toString());
+
+	}
+
+	private void write(int files, int size) throws IOException {
+
+		for (int i = 0; i < files; i++) {
+			Files.writeString(new File(this.tmp, "file" + i + ".html").toPath(), "x".repeat(size),
+					StandardCharsets.UTF_8);
+		}
+
+	}
+
+	private List<String> scan(DirScanner dirScanner) throws IOException {
+
+		List<String> visited = new ArrayList<>();
+		dirScanner.scan(this.tmp, new FileVisitor() {
+			@Override
+			public void visit(File f, String relativePath) {
+				visited.add(relativePath);
+			}
+		});
+		return visited;
+
+	}
+
+}
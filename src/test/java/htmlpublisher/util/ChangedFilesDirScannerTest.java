@@ -0,0 +1,65 @@
+package htmlpublisher.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import hudson.util.DirScanner;
+import hudson.util.FileVisitor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChangedFilesDirScannerTest {
+
+	@TempDir
+	private File tmp;
+
+	@Test
+	void testOnlyChangedFilesVisited() throws Exception {
+
+		File index = new File(this.tmp, "index.html");
+		Files.writeString(index.toPath(), "first");
+		Files.writeString(new File(this.tmp, "style.css").toPath(), "style");
+
+		UUID key = UUID.randomUUID();
+		try {
+			assertEquals(List.of("index.html", "style.css"), scan(key));
+
+			// Nothing changed
+			assertEquals(List.of(), scan(key));
+
+			// A changed and a new file
+			Files.writeString(index.toPath(), "second, longer");
+			Files.writeString(new File(this.tmp, "later.html").toPath(), "later");
+			assertEquals(List.of("index.html", "later.html"), scan(key));
+
+			// Forgotten, so all files are visited again
+			new ChangedFilesDirScanner.Remover(key).invoke(this.tmp, null);
+			assertEquals(List.of("index.html", "later.html", "style.css"), scan(key));
+		} finally {
+			new ChangedFilesDirScanner.Remover(key).invoke(this.tmp, null);
+		}
+
+	}
+
+	private List<String> scan(UUID key) throws IOException {
+
+		List<String> visited = new ArrayList<>();
+		new ChangedFilesDirScanner(new DirScanner.Glob("**/*", null), key).scan(this.tmp, new FileVisitor() {
+			@Override
+			public void visit(File file, String relativePath) {
+				visited.add(relativePath);
+			}
+		});
+		visited.sort(null);
+		return visited;
+
+	}
+
+}
@@ -7,14 +7,118 @@ import hudson.util.DirScanner;
 import hudson.util.FileVisitor;
 
 import java.io.Serial;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class DirScanningQueueWriterTest {
 
+	@TempDir
+	private File tmp;
+
+    @Test
+    void testIndexFilesMatchedWhileScanning() throws Exception {
+
+		for (String path : new String[] { "index.html", "nested/aReportDir/x/afile.html", "notincluded/afile.html",
+				"otherDir/afile.html" }) {
+			File file = new File(this.tmp, path);
+			file.getParentFile().mkdirs();
+			Files.writeString(file.toPath(), path);
+		}
+
+		UUID queueKey = UUID.randomUUID();
+		try {
+			DirScanningQueueWriter queueWriter = new DirScanningQueueWriter(new DirScanner.Glob("**/*", null),
+					"otherDir/afile.html, **/aReportDir/*/afile.html,missing.html", queueKey);
+
+			FileEntryQueue.Statistic statistic = queueWriter.invoke(this.tmp, null);
+
+			// All files are queued, but only the matching ones are index files, in the order of the patterns
+			assertEquals(4, statistic.getOverallCount());
+			List<String> indexFiles = statistic.getIndexFiles();
+			assertEquals(2, indexFiles.size());
+			assertEquals("otherDir/afile.html", indexFiles.get(0).replace(File.separatorChar, '/'));
+			assertEquals("nested/aReportDir/x/afile.html", indexFiles.get(1).replace(File.separatorChar, '/'));
+		} finally {
+			FileEntryQueue.remove(queueKey);
+		}
+
+	}
+
+    @Test
+    void testEntryPointsQueuedFirst() throws Exception {
+
+		String[] scanOrder = { "assets/app.js", "data/1.json", "index.html", "data/2.json", "style.css" };
+		for (String path : scanOrder) {
+			File file = new File(this.tmp, path);
+			file.getParentFile().mkdirs();
+			Files.writeString(file.toPath(), path);
+		}
+		Files.writeString(new File(this.tmp, "index.html").toPath(),
+				"<link href=\"style.css\"><script src='./assets/app.js?v=1'></script><a href=\"https://example.com/\">");
+
+		List<String> indexFiles = new ArrayList<>();
+		List<Map<String, Long>> entryPoints = new ArrayList<>();
+		CopyProgressListener progressListener = new CopyProgressListener() {
+			@Override
+			public void onEntryPoints(List<String> files, Map<String, Long> landed) {
+				indexFiles.addAll(files);
+				entryPoints.add(landed);
+			}
+
+			@Override
+			public void onProgress(int copiedFiles, int foundFiles, boolean scanComplete) {
+			}
+		};
+
+		UUID queueKey = UUID.randomUUID();
+		try {
+			DirScanningQueueWriter queueWriter = new DirScanningQueueWriter(new DirScanner() {
+				public void scan(File dir, FileVisitor visitor) throws IOException {
+					for (String path : scanOrder) {
+						visitor.visit(new File(dir, path), path.replace('/', File.separatorChar));
+					}
+				}
+
+				@Serial
+				private static final long serialVersionUID = 1L;
+			}, "index.html", queueKey, progressListener);
+
+			queueWriter.invoke(this.tmp, null);
+
+			// The index page and the files it references come first, the others in scan order
+			FileEntryQueue queue = FileEntryQueue.getOrCreateQueue(queueKey);
+			List<String> taken = new ArrayList<>();
+			for (int i = 0; i < scanOrder.length; i++) {
+				FileEntryQueue.FileEntry entry = queue.take();
+				taken.add(entry.getRelativePath().replace(File.separatorChar, '/'));
+				if (i == 2) {
+					assertTrue(entryPoints.isEmpty(), "Reported before the entry points are copied");
+				}
+				queue.done(entry);
+			}
+			assertEquals(List.of("index.html", "assets/app.js", "style.css", "data/1.json", "data/2.json"), taken);
+			assertThrows(InterruptedException.class, queue::take, "Queue must be closed");
+
+			assertEquals(List.of("index.html"), indexFiles);
+			assertEquals(1, entryPoints.size());
+			assertEquals(List.of("index.html", "assets/app.js", "style.css"), new ArrayList<>(entryPoints.get(0).keySet()));
+			assertEquals(new File(this.tmp, "style.css").length(), entryPoints.get(0).get("style.css"));
+		} finally {
+			FileEntryQueue.remove(queueKey);
+		}
+
+	}
+
     @Test
     void testInvokeWithIOException() {
 
@@ -0,0 +1,111 @@
+package htmlpublisher.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import hudson.remoting.FastPipedInputStream;
+import hudson.remoting.FastPipedOutputStream;
+
+class MultiplexedStreamTest {
+
+	@Test
+	void testRoundTrip() throws Exception {
+
+		final int numberOfStreams = 4;
+
+		// Different sizes, including empty and larger than a chunk
+		byte[][] data = new byte[numberOfStreams][];
+		Random random = new Random(42);
+		for (int i = 0; i < numberOfStreams; i++) {
+			data[i] = new byte[i * MultiplexedStream.CHUNK_SIZE / 2 + i * 7];
+			random.nextBytes(data[i]);
+		}
+
+		ByteArrayOutputStream shared = new ByteArrayOutputStream();
+		List<OutputStream> streams = MultiplexedStream.multiplex(shared, numberOfStreams);
+		ExecutorService executorService = Executors.newFixedThreadPool(numberOfStreams);
+		try {
+			// Concurrent writers, each in small pieces
+			List<Future<?>> writers = new ArrayList<>();
+			for (int i = 0; i < numberOfStreams; i++) {
+				final int streamId = i;
+				writers.add(executorService.submit(() -> {
+					try (OutputStream out = streams.get(streamId)) {
+						for (int off = 0; off < data[streamId].length; off += 1000) {
+							out.write(data[streamId], off, Math.min(1000, data[streamId].length - off));
+						}
+					}
+					return null;
+				}));
+			}
+			for (Future<?> writer : writers) {
+				writer.get();
+			}
+
+			// Concurrent readers of the demultiplexed streams
+			List<FastPipedOutputStream> sinks = new ArrayList<>();
+			List<Future<byte[]>> readers = new ArrayList<>();
+			for (int i = 0; i < numberOfStreams; i++) {
+				FastPipedInputStream in = new FastPipedInputStream();
+				sinks.add(new FastPipedOutputStream(in));
+				readers.add(executorService.submit(() -> readAll(in)));
+			}
+			MultiplexedStream.demultiplex(new ByteArrayInputStream(shared.toByteArray()), sinks);
+
+			for (int i = 0; i < numberOfStreams; i++) {
+				assertArrayEquals(data[i], readers.get(i).get());
+			}
+		} finally {
+			executorService.shutdownNow();
+		}
+
+	}
+
+	@Test
+	void testTruncatedStreamFailsAllOpenSinks() throws Exception {
+
+		ByteArrayOutputStream shared = new ByteArrayOutputStream();
+		List<OutputStream> streams = MultiplexedStream.multiplex(shared, 2);
+		streams.get(0).write(new byte[100]);
+		streams.get(0).close();
+		streams.get(1).write(new byte[100]);
+		streams.get(1).flush();
+		// Stream 1 is never ended
+
+		List<FastPipedOutputStream> sinks = new ArrayList<>();
+		List<FastPipedInputStream> ins = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			FastPipedInputStream in = new FastPipedInputStream();
+			ins.add(in);
+			sinks.add(new FastPipedOutputStream(in));
+		}
+		assertThrows(IOException.class, () -> MultiplexedStream
+				.demultiplex(new ByteArrayInputStream(shared.toByteArray()), sinks));
+
+		// The ended stream is complete, the open one reports the failure
+		assertArrayEquals(new byte[100], readAll(ins.get(0)));
+		assertThrows(IOException.class, () -> readAll(ins.get(1)));
+
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		try (in) {
+			return in.readAllBytes();
+		}
+	}
+
+}
@@ -2,25 +2,35 @@ package htmlpublisher.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serial;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import hudson.FilePath;
 import hudson.model.TaskListener;
 import hudson.util.DirScanner;
 import hudson.util.FileVisitor;
+import hudson.util.StreamTaskListener;
 import jenkins.util.Timer;
 
 class MultithreadedFileCopyHelperTest {
 
+	@TempDir
+	private File tmp;
+
     @Test
     void testScanWithIOException() {
 
@@ -112,4 +122,53 @@ class MultithreadedFileCopyHelperTest {
 
 	}
 
+	@Test
+	void testCancellation() throws Exception {
+
+		File reportDir = new File(this.tmp, "report");
+		reportDir.mkdirs();
+		Files.writeString(new File(reportDir, "index.html").toPath(), "hello", StandardCharsets.UTF_8);
+		File targetDir = new File(this.tmp, "target");
+
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		TaskListener listener = new StreamTaskListener(log, StandardCharsets.UTF_8);
+
+		// A slow scanner, which would need more than a minute to finish
+		DirScanner slowScanner = new DirScanner() {
+			public void scan(File file, FileVisitor visitor) throws IOException {
+				for (int i = 0; i < 10000; i++) {
+					try {
+						Thread.sleep(10);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					visitor.visit(new File(file, "index.html"), "file" + i + ".html");
+				}
+			}
+
+			@Serial
+			private static final long serialVersionUID = 1L;
+		};
+
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		try {
+			Future<Integer> copy = executorService.submit(() -> MultithreadedFileCopyHelper.copyRecursiveTo(
+					new FilePath(reportDir), slowScanner, new FilePath(targetDir), null, 2, Timer.get(), 60, listener));
+			Thread.sleep(500);
+
+			// Abort, the copy must end soon after
+			long startTime = System.currentTimeMillis();
+			copy.cancel(true);
+			executorService.shutdown();
+			assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS), "Expected the copy to end");
+			assertTrue(System.currentTimeMillis() - startTime < 10000);
+		} finally {
+			executorService.shutdownNow();
+		}
+
+		assertTrue(log.toString(StandardCharsets.UTF_8).contains("[htmlpublisher] Copy cancelled"),
+				"Expected the cancellation to be logged");
+
+	}
+
 }
\ No newline at end of file
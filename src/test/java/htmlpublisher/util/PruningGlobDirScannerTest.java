@@ -0,0 +1,121 @@
+package htmlpublisher.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.TreeSet;
+
+import hudson.util.DirScanner;
+import hudson.util.FileVisitor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PruningGlobDirScannerTest {
+
+	@TempDir
+	private File tmp;
+
+	@Test
+	void testSameFilesAsGlob() throws Exception {
+
+		write("src/main/App.java");
+		write("target/site/index.html");
+		write("target/site/css/style.css");
+		write("target/site/node_modules/lib/lib.js");
+		write("target/site/app.js.map");
+		write("target/site/.git/config");
+		write("index.html");
+
+		String[][] patterns = { { "**/*", null }, { "target/site/**", null }, { "**/*.html", null },
+				{ "target/site/", "**/node_modules/**" }, { "target/*/*.html,src/**/*.java", "**/*.map" },
+				{ "target/site/**/*", "**/*.map, **/css/" }, { "t?rget/**/*.css", null } };
+		for (String[] pattern : patterns) {
+			assertEquals(scan(new DirScanner.Glob(pattern[0], pattern[1])),
+					scan(new PruningGlobDirScanner(pattern[0], pattern[1], true, false)),
+					pattern[0] + " excluding " + pattern[1]);
+		}
+
+	}
+
+	@Test
+	void testSymbolicLinksNotFollowed() throws Exception {
+
+		write("report/index.html");
+		write("outside/secret.txt");
+		Files.createSymbolicLink(new File(this.tmp, "report/linked").toPath(), new File(this.tmp, "outside").toPath());
+		Files.createSymbolicLink(new File(this.tmp, "report/loop").toPath(), new File(this.tmp, "report").toPath());
+
+		File report = new File(this.tmp, "report");
+		assertEquals(Set.of("index.html"), scan(new PruningGlobDirScanner("**/*", null, true, false), report));
+
+		// Followed, but the loop is not entered again
+		assertEquals(Set.of("index.html", "linked/secret.txt"),
+				scan(new PruningGlobDirScanner("**/*", null, true, true), report));
+
+	}
+
+	@Test
+	void testPruning() {
+
+		GlobMatcher includes = new GlobMatcher("target/site/**/*.html, docs/");
+		assertTrue(includes.couldMatchBelow(segments("target"), 1));
+		assertTrue(includes.couldMatchBelow(segments("target/site/deep/er"), 4));
+		assertTrue(includes.couldMatchBelow(segments("docs"), 1));
+		assertFalse(includes.couldMatchBelow(segments("src"), 1));
+		assertFalse(includes.couldMatchBelow(segments("target/classes"), 2));
+		assertTrue(includes.matches("target/site/index.html"));
+		assertTrue(includes.matches("target\\site\\a\\b.html"));
+		assertFalse(includes.matches("target/site/style.css"));
+		assertTrue(includes.matches("docs/any/file.txt"));
+
+		GlobMatcher excludes = new GlobMatcher("**/node_modules/**,target/*.txt");
+		assertTrue(excludes.matchesAllBelow(segments("a/b/node_modules"), 3));
+		assertFalse(excludes.matchesAllBelow(segments("target"), 1));
+		assertTrue(excludes.matches("target/notes.txt"));
+		assertFalse(excludes.matches("target/sub/notes.txt"));
+
+		assertTrue(new GlobMatcher((String) null).isEmpty());
+
+	}
+
+	private static String[] segments(String path) {
+
+		return path.split("/");
+
+	}
+
+	private void write(String relativePath) throws IOException {
+
+		File file = new File(this.tmp, relativePath);
+		file.getParentFile().mkdirs();
+		Files.writeString(file.toPath(), relativePath, StandardCharsets.UTF_8);
+
+	}
+
+	private Set<String> scan(DirScanner dirScanner) throws IOException {
+
+		return scan(dirScanner, this.tmp);
+
+	}
+
+	private static Set<String> scan(DirScanner dirScanner, File dir) throws IOException {
+
+		Set<String> visited = new TreeSet<>();
+		dirScanner.scan(dir, new FileVisitor() {
+			@Override
+			public void visit(File f, String relativePath) {
+				visited.add(relativePath.replace('\\', '/'));
+			}
+		});
+		return visited;
+
+	}
+
+}
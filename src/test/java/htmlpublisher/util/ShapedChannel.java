@@ -0,0 +1,87 @@
+package htmlpublisher.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import hudson.FilePath;
+import hudson.remoting.Channel;
+import hudson.remoting.ChannelBuilder;
+
+/**
+ * A pair of remoting channels inside the current JVM, connected through {@link ShapedPipe}s. Used to simulate an
+ * agent behind a slow network link without any real agent or network.
+ *
+ * Calls sent through {@link #getChannel()} are executed by the other end of the connection, just like calls to an
+ * agent, so a {@link FilePath} created with {@link #agentPath(File)} behaves like a path on a remote agent.
+ */
+public class ShapedChannel implements Closeable {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final Channel controllerEnd;
+	private final Channel agentEnd;
+
+	private ShapedChannel(Duration roundTripTime, Duration jitter, long bitsPerSecond)
+			throws IOException, InterruptedException {
+		Duration delay = roundTripTime.dividedBy(2);
+		ShapedPipe controllerToAgent = new ShapedPipe(delay, jitter, bitsPerSecond);
+		ShapedPipe agentToController = new ShapedPipe(delay, jitter, bitsPerSecond);
+
+		// Both ends need to be built at the same time, as they wait for each other
+		Future<Channel> agentEndFuture = this.executor.submit(() -> new ChannelBuilder("agent", this.executor)
+				.build(controllerToAgent.getIn(), agentToController.getOut()));
+		this.controllerEnd = new ChannelBuilder("controller", this.executor)
+				.build(agentToController.getIn(), controllerToAgent.getOut());
+		try {
+			this.agentEnd = agentEndFuture.get();
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Opens a new pair of channels
+	 *
+	 * @param roundTripTime time for a request and its response, without transmission time
+	 * @param jitter maximum random delay added to each transmitted block in each direction
+	 * @param bitsPerSecond bandwidth in each direction, 0 for unlimited
+	 */
+	public static ShapedChannel open(Duration roundTripTime, Duration jitter, long bitsPerSecond)
+			throws IOException, InterruptedException {
+		return new ShapedChannel(roundTripTime, jitter, bitsPerSecond);
+	}
+
+	/**
+	 * @return the controller side of the connection, calls are executed on the agent side
+	 */
+	public Channel getChannel() {
+		return this.controllerEnd;
+	}
+
+	/**
+	 * @return the given local directory as seen through the simulated agent
+	 */
+	public FilePath agentPath(File dir) {
+		return new FilePath(this.controllerEnd, dir.getAbsolutePath());
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			this.controllerEnd.close();
+			this.agentEnd.close();
+			this.controllerEnd.join(10_000);
+			this.agentEnd.join(10_000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			this.executor.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,163 @@
+package htmlpublisher.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import htmlpublisher.HtmlPublisher;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.remoting.Channel;
+import hudson.remoting.Request;
+import hudson.remoting.Response;
+import jenkins.util.Timer;
+
+class ShapedChannelTest {
+
+	@TempDir
+	private File tmp;
+
+	@Test
+	void testPipeDelaysAndThrottles() throws Exception {
+
+		// 1 Mbit/s = 125 KB/s, so 64 KB need about half a second plus the delay
+		ShapedPipe pipe = new ShapedPipe(Duration.ofMillis(100), Duration.ZERO, 1_000_000);
+		byte[] data = new byte[64 * 1024];
+		data[data.length - 1] = 42;
+
+		long start = System.nanoTime();
+		try (OutputStream out = pipe.getOut()) {
+			out.write(data);
+		}
+		ByteArrayOutputStream received = new ByteArrayOutputStream();
+		try (InputStream in = pipe.getIn()) {
+			in.transferTo(received);
+		}
+		long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+		assertArrayEquals(data, received.toByteArray());
+		assertTrue(elapsedMillis >= 600, "Expected transfer to be shaped, but took " + elapsedMillis + " ms");
+
+	}
+
+	@Test
+	void testRoundTripTime() throws Exception {
+
+		try (ShapedChannel channel = ShapedChannel.open(Duration.ofMillis(200), Duration.ZERO, 0)) {
+			FilePath agentDir = channel.agentPath(this.tmp);
+
+			long start = System.nanoTime();
+			assertTrue(agentDir.exists());
+			long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+			assertTrue(elapsedMillis >= 200, "Expected one round trip, but took " + elapsedMillis + " ms");
+		}
+
+	}
+
+	@Test
+	void testMultithreadedCopyFromShapedAgent() throws Exception {
+
+		File reportDir = new File(this.tmp, "report");
+		for (int i = 0; i < 20; i++) {
+			File file = new File(reportDir, "dir" + (i % 3) + "/file" + i + ".html");
+			file.getParentFile().mkdirs();
+			Files.writeString(file.toPath(), "content " + i, StandardCharsets.UTF_8);
+		}
+		File targetDir = new File(this.tmp, "target");
+
+		try (ShapedChannel channel = ShapedChannel.open(Duration.ofMillis(20), Duration.ofMillis(5), 10_000_000)) {
+			int copied = MultithreadedFileCopyHelper.copyRecursiveTo(channel.agentPath(reportDir),
+					HtmlPublisher.dirScannerGlob("**/*", null, true, LinkOption.NOFOLLOW_LINKS),
+					new FilePath(targetDir), "**/*", 4, Timer.get(), 60, TaskListener.NULL);
+
+			assertEquals(20, copied);
+			for (int i = 0; i < 20; i++) {
+				File file = new File(targetDir, "dir" + (i % 3) + "/file" + i + ".html");
+				assertEquals("content " + i, Files.readString(file.toPath(), StandardCharsets.UTF_8));
+			}
+		}
+
+	}
+
+	@Test
+	void testSingleCallCopyRoundTrips() throws Exception {
+
+		File reportDir = new File(this.tmp, "report");
+		for (int i = 0; i < 20; i++) {
+			File file = new File(reportDir, "dir" + (i % 3) + "/file" + i + ".html");
+			file.getParentFile().mkdirs();
+			Files.writeString(file.toPath(), "content " + i, StandardCharsets.UTF_8);
+		}
+
+		try (ShapedChannel channel = ShapedChannel.open(Duration.ofMillis(20), Duration.ofMillis(5), 10_000_000)) {
+			AtomicInteger roundTrips = new AtomicInteger();
+			channel.getChannel().addListener(new Channel.Listener() {
+				@Override
+				public void onResponse(Channel channel, Request<?, ?> req, Response<?, ?> rsp, long totalTime) {
+					roundTrips.incrementAndGet();
+				}
+			});
+
+			// Queue based copy: one call per worker, one for the scan and one for the cleanup
+			File queueTargetDir = new File(this.tmp, "queue-target");
+			int copied = MultithreadedFileCopyHelper.copyRecursiveTo(channel.agentPath(reportDir),
+					HtmlPublisher.dirScannerGlob("**/*", null, true, LinkOption.NOFOLLOW_LINKS),
+					new FilePath(queueTargetDir), "**/*", 4, Timer.get(), 60, TaskListener.NULL);
+			assertEquals(20, copied);
+			assertTrue(roundTrips.get() >= 6, "Expected a call per worker, but made " + roundTrips.get());
+
+			// Single call copy, regardless of the number of workers
+			roundTrips.set(0);
+			File targetDir = new File(this.tmp, "target");
+			FileEntryQueue.Statistic statistic = MultithreadedFileCopyHelper.copyRecursiveToInSingleCall(
+					channel.agentPath(reportDir), HtmlPublisher.dirScannerGlob("**/*", null, true, LinkOption.NOFOLLOW_LINKS),
+					"dir0/*.html", new FilePath(targetDir), 4, Timer.get(), 60, TaskListener.NULL);
+			assertEquals(1, roundTrips.get(), "Expected a single call to the agent");
+
+			assertEquals(20, statistic.getOverallCount());
+			assertEquals(7, statistic.getIndexFiles().size());
+			for (int i = 0; i < 20; i++) {
+				File file = new File(targetDir, "dir" + (i % 3) + "/file" + i + ".html");
+				assertEquals("content " + i, Files.readString(file.toPath(), StandardCharsets.UTF_8));
+			}
+
+			// Multiplexed into a single pipe, with the same result
+			roundTrips.set(0);
+			File multiplexedTargetDir = new File(this.tmp, "multiplexed-target");
+			statistic = MultithreadedFileCopyHelper.copyRecursiveToInSingleCall(channel.agentPath(reportDir),
+					HtmlPublisher.dirScannerGlob("**/*", null, true, LinkOption.NOFOLLOW_LINKS), "dir0/*.html",
+					new FilePath(multiplexedTargetDir), 4, true, Timer.get(), 60, TaskListener.NULL);
+			assertEquals(1, roundTrips.get(), "Expected a single call to the agent");
+			assertEquals(20, statistic.getOverallCount());
+			assertEquals(7, statistic.getIndexFiles().size());
+			for (int i = 0; i < 20; i++) {
+				File file = new File(multiplexedTargetDir, "dir" + (i % 3) + "/file" + i + ".html");
+				assertEquals("content " + i, Files.readString(file.toPath(), StandardCharsets.UTF_8));
+			}
+
+			// A missing directory is reported by the same call
+			roundTrips.set(0);
+			assertNull(MultithreadedFileCopyHelper.copyRecursiveToInSingleCall(
+					channel.agentPath(new File(this.tmp, "missing")), HtmlPublisher.dirScannerGlob("**/*", null, true, LinkOption.NOFOLLOW_LINKS),
+					null, new FilePath(targetDir), 2, Timer.get(), 60, TaskListener.NULL));
+			assertEquals(1, roundTrips.get(), "Expected a single call to the agent");
+		}
+
+	}
+
+}
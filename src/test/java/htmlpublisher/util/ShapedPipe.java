@@ -0,0 +1,178 @@
+package htmlpublisher.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A one way, in-memory pipe that simulates a network link with latency, limited bandwidth and jitter.
+ *
+ * Every written block is delivered to the reading side after the block has been serialized at the given bandwidth and
+ * has travelled the given one way delay (plus a random jitter). Blocks are delivered in order, like on a TCP
+ * connection. The writer is blocked while more than a send buffer worth of data is in flight.
+ */
+public class ShapedPipe {
+
+	/**
+	 * Data in flight before the writer is blocked, roughly a socket buffer
+	 */
+	private static final long SEND_BUFFER_SIZE = 4 * 1024 * 1024;
+
+	private static final Block END_OF_STREAM = new Block(new byte[0], 0);
+
+	private final long delayNanos;
+	private final long jitterNanos;
+	private final long bytesPerSecond;
+	private final Random random = new Random(42);
+
+	private final LinkedBlockingQueue<Block> blocks = new LinkedBlockingQueue<>();
+
+	/**
+	 * Guarded by this
+	 */
+	private long linkFreeAt;
+	private long lastDeliveryAt;
+	private long bytesInFlight;
+
+	private final OutputStream out = new Output();
+	private final InputStream in = new Input();
+
+	/**
+	 * @param delay one way delay, half of the round trip time
+	 * @param jitter maximum random delay added to each block
+	 * @param bitsPerSecond bandwidth of the link, 0 for unlimited
+	 */
+	public ShapedPipe(Duration delay, Duration jitter, long bitsPerSecond) {
+		this.delayNanos = delay.toNanos();
+		this.jitterNanos = jitter.toNanos();
+		this.bytesPerSecond = bitsPerSecond / 8;
+		this.linkFreeAt = System.nanoTime();
+		this.lastDeliveryAt = this.linkFreeAt;
+	}
+
+	public OutputStream getOut() {
+		return this.out;
+	}
+
+	public InputStream getIn() {
+		return this.in;
+	}
+
+	private static class Block {
+
+		private final byte[] data;
+		private final long deliveryAt;
+
+		Block(byte[] data, long deliveryAt) {
+			this.data = data;
+			this.deliveryAt = deliveryAt;
+		}
+
+	}
+
+	private void send(byte[] data) throws IOException {
+		long deliveryAt;
+		synchronized (this) {
+			try {
+				while (this.bytesInFlight > SEND_BUFFER_SIZE) {
+					wait();
+				}
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+			long now = System.nanoTime();
+			long transmissionNanos = this.bytesPerSecond > 0 ? data.length * 1_000_000_000L / this.bytesPerSecond : 0;
+			this.linkFreeAt = Math.max(now, this.linkFreeAt) + transmissionNanos;
+			long jitter = this.jitterNanos > 0 ? (long) (this.random.nextDouble() * this.jitterNanos) : 0;
+			// Later blocks never overtake earlier ones
+			deliveryAt = Math.max(this.linkFreeAt + this.delayNanos + jitter, this.lastDeliveryAt);
+			this.lastDeliveryAt = deliveryAt;
+			this.bytesInFlight += data.length;
+		}
+		this.blocks.add(new Block(data, deliveryAt));
+	}
+
+	private synchronized void delivered(int length) {
+		this.bytesInFlight -= length;
+		notifyAll();
+	}
+
+	private class Output extends OutputStream {
+
+		private volatile boolean closed;
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] {(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (this.closed) {
+				throw new IOException("Pipe closed");
+			}
+			if (len > 0) {
+				send(Arrays.copyOfRange(b, off, off + len));
+			}
+		}
+
+		@Override
+		public void close() {
+			if (!this.closed) {
+				this.closed = true;
+				blocks.add(END_OF_STREAM);
+			}
+		}
+
+	}
+
+	private class Input extends InputStream {
+
+		private Block current;
+		private int position;
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			try {
+				if (this.current == null) {
+					this.current = blocks.take();
+					this.position = 0;
+				}
+				if (this.current == END_OF_STREAM) {
+					blocks.add(END_OF_STREAM);
+					return -1;
+				}
+				long waitNanos = this.current.deliveryAt - System.nanoTime();
+				if (waitNanos > 0) {
+					Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+				}
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+			int count = Math.min(len, this.current.data.length - this.position);
+			System.arraycopy(this.current.data, this.position, b, off, count);
+			this.position += count;
+			if (this.position == this.current.data.length) {
+				delivered(this.current.data.length);
+				this.current = null;
+			}
+			return count;
+		}
+
+	}
+
+}
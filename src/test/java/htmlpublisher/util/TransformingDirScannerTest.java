@@ -0,0 +1,189 @@
+package htmlpublisher.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import hudson.util.DirScanner;
+import hudson.util.FileVisitor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TransformingDirScannerTest {
+
+	@TempDir
+	private File tmp;
+
+	@Test
+	void testFilesDroppedAndTransformed() throws Exception {
+
+		write("index.html", "index");
+		write("app.js", "code");
+		write("app.js.map", "map");
+
+		DirScanner dirScanner = new TransformingDirScanner(new DirScanner.Glob("**/*", null),
+				List.of(new UpperCaseTransformer(), new SuffixTransformer()));
+
+		Map<String, String> visited = scan(dirScanner);
+
+		// Dropped, transformed in order, and passed through
+		assertEquals(Map.of("app.js", "CODE;", "index.html", "index"), visited);
+		// The original file is not changed
+		assertEquals("code", Files.readString(new File(this.tmp, "app.js").toPath(), StandardCharsets.UTF_8));
+
+	}
+
+	@Test
+	void testTransformedByQueueReaders() throws Exception {
+
+		write("app.js", "code");
+		write("app.js.map", "map");
+
+		DirScanner dirScanner = new TransformingDirScanner(new DirScanner.Glob("**/*", null),
+				List.of(new UpperCaseTransformer()));
+
+		// The scan filling the queue only drops files
+		Map<String, String> queued = scan(TransformingDirScanner.forQueue(dirScanner));
+		assertEquals(Map.of("app.js", "code"), queued);
+
+		// The readers of the queue transform them
+		Map<String, String> read = new TreeMap<>();
+		FileVisitor reader = TransformingDirScanner.forReader(dirScanner, collector(read));
+		reader.visit(new File(this.tmp, "app.js"), "app.js");
+		assertEquals(Map.of("app.js", "CODE"), read);
+
+		// A scanner without transformers is used as it is
+		DirScanner glob = new DirScanner.Glob("**/*", null);
+		assertEquals(glob, TransformingDirScanner.forQueue(glob));
+		assertFalse(TransformingDirScanner.forReader(glob, glob) instanceof TransformingDirScanner);
+
+	}
+
+	@Test
+	void testTransformedInTempDir() throws Exception {
+
+		write("report/app.js", "code");
+		File tempDir = new File(this.tmp, "workspace@tmp");
+
+		DirScanner dirScanner = new TransformingDirScanner(new DirScanner.Glob("**/*", null),
+				List.of(new UpperCaseTransformer()), tempDir.getPath());
+
+		List<File> visitedFiles = new ArrayList<>();
+		dirScanner.scan(new File(this.tmp, "report"), new FileVisitor() {
+			@Override
+			public void visit(File file, String relativePath) throws IOException {
+				visitedFiles.add(file);
+				assertEquals("CODE", Files.readString(file.toPath(), StandardCharsets.UTF_8));
+			}
+		});
+
+		// Written into the given directory, and deleted once visited
+		assertEquals(1, visitedFiles.size());
+		assertEquals(tempDir, visitedFiles.get(0).getParentFile());
+		assertArrayEquals(new String[0], tempDir.list());
+
+	}
+
+	@Test
+	void testCopiedFileTransformedInPlace() throws Exception {
+
+		write("artifacts/app.js", "code");
+		File copied = new File(this.tmp, "report/app.js");
+		copied.getParentFile().mkdirs();
+		Files.createLink(copied.toPath(), new File(this.tmp, "artifacts/app.js").toPath());
+		List<FileTransformer> transformers = List.of(new UpperCaseTransformer(), new SuffixTransformer());
+
+		assertTrue(TransformingDirScanner.drops(transformers, "app.js.map"));
+		assertTrue(TransformingDirScanner.transforms(transformers, "app.js"));
+		TransformingDirScanner.transform(transformers, "app.js", copied);
+
+		// Transformed in order, without changing the file it has been linked to
+		assertEquals("CODE;", Files.readString(copied.toPath(), StandardCharsets.UTF_8));
+		assertEquals("code", Files.readString(new File(this.tmp, "artifacts/app.js").toPath(), StandardCharsets.UTF_8));
+		assertArrayEquals(new String[] {"app.js"}, copied.getParentFile().list());
+
+	}
+
+	private void write(String path, String content) throws IOException {
+
+		File file = new File(this.tmp, path);
+		file.getParentFile().mkdirs();
+		Files.writeString(file.toPath(), content, StandardCharsets.UTF_8);
+
+	}
+
+	private Map<String, String> scan(DirScanner dirScanner) throws IOException {
+
+		Map<String, String> visited = new TreeMap<>();
+		dirScanner.scan(this.tmp, collector(visited));
+		return visited;
+
+	}
+
+	private static FileVisitor collector(Map<String, String> visited) {
+
+		return new FileVisitor() {
+			@Override
+			public void visit(File file, String relativePath) throws IOException {
+				// Read while visiting, like an archiver
+				visited.put(relativePath.replace(File.separatorChar, '/'),
+						Files.readString(file.toPath(), StandardCharsets.UTF_8));
+			}
+		};
+
+	}
+
+	private static class UpperCaseTransformer implements FileTransformer {
+
+		@Override
+		public boolean drops(String relativePath) {
+			return relativePath.endsWith(".map");
+		}
+
+		@Override
+		public boolean transforms(String relativePath) {
+			return relativePath.endsWith(".js");
+		}
+
+		@Override
+		public void transform(String relativePath, InputStream in, OutputStream out) throws IOException {
+			out.write(new String(in.readAllBytes(), StandardCharsets.UTF_8).toUpperCase(Locale.ENGLISH)
+					.getBytes(StandardCharsets.UTF_8));
+		}
+
+		private static final long serialVersionUID = 1L;
+
+	}
+
+	private static class SuffixTransformer implements FileTransformer {
+
+		@Override
+		public boolean transforms(String relativePath) {
+			return relativePath.endsWith(".js");
+		}
+
+		@Override
+		public void transform(String relativePath, InputStream in, OutputStream out) throws IOException {
+			in.transferTo(out);
+			out.write(';');
+		}
+
+		private static final long serialVersionUID = 1L;
+
+	}
+
+}
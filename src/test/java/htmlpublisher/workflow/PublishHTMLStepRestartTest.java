@@ -0,0 +1,106 @@
+package htmlpublisher.workflow;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import htmlpublisher.ReportFileTransformer;
+import hudson.FilePath;
+import hudson.model.Descriptor;
+import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+import org.jvnet.hudson.test.junit.jupiter.JenkinsSessionExtension;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublishHTMLStepRestartTest {
+
+    @RegisterExtension
+    private final JenkinsSessionExtension sessions = new JenkinsSessionExtension();
+
+    private static final CountDownLatch BLOCKED = new CountDownLatch(1);
+
+    private static volatile boolean released;
+
+    @Test
+    void resumableReportIsCopiedAfterRestart() throws Throwable {
+        sessions.then(j -> {
+            WorkflowJob p = j.createProject(WorkflowJob.class, "p");
+            FilePath workspace = j.jenkins.getWorkspaceFor(p);
+            workspace.child("report/index.html").write("index", "UTF-8");
+            workspace.child("report/app.js").write("code", "UTF-8");
+            p.setDefinition(new CpsFlowDefinition(""
+                    + "node {\n"
+                    + "  publishHTML(target: [allowMissing: false, alwaysLinkToLastBuild: false, keepAll: true, reportDir: 'report',"
+                    + " reportFiles: 'index.html', reportName: 'testReport', resumable: true, transformers: [blockedUntilRestart()]])\n"
+                    + "}", true));
+            p.scheduleBuild2(0).waitForStart();
+            // The controller shuts down while the report is copied
+            assertTrue(BLOCKED.await(1, TimeUnit.MINUTES));
+        });
+        released = true;
+        sessions.then(j -> {
+            WorkflowRun b = j.jenkins.getItemByFullName("p", WorkflowJob.class).getBuildByNumber(1);
+            j.assertBuildStatusSuccess(j.waitForCompletion(b));
+            File report = new File(b.getRootDir(), "htmlreports/testReport");
+            assertTrue(new File(report, "index.html").isFile());
+            assertTrue(new File(report, "app.js").isFile());
+            // Published once more after the restart, not started over with a second step
+            String log = JenkinsRule.getLog(b);
+            assertEquals(2, log.split("\\[htmlpublisher\\] Archiving HTML reports", -1).length - 1);
+            assertTrue(b.getActions(PendingTargetAction.class).isEmpty());
+        });
+    }
+
+    public static class BlockedUntilRestart extends ReportFileTransformer {
+
+        private static final long serialVersionUID = 1L;
+
+        @DataBoundConstructor
+        public BlockedUntilRestart() {
+        }
+
+        @Override
+        public boolean transforms(String relativePath) {
+            return relativePath.endsWith(".js");
+        }
+
+        @Override
+        public void transform(String relativePath, InputStream in, OutputStream out) throws IOException {
+            BLOCKED.countDown();
+            while (!released) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("Interrupted by the shutdown");
+                }
+            }
+            in.transferTo(out);
+        }
+
+        @TestExtension("resumableReportIsCopiedAfterRestart")
+        @Symbol("blockedUntilRestart")
+        public static class DescriptorImpl extends Descriptor<ReportFileTransformer> {
+
+            @NonNull
+            @Override
+            public String getDisplayName() {
+                return "Blocked until restart";
+            }
+        }
+    }
+
+}
@@ -184,6 +184,30 @@ class PublishHTMLStepTest {
         assertNull(report, "Report should be missing");
     }
 
+    @Test
+    void publishLiveReport() throws Exception {
+        writeTestHTML("index.html");
+        createSlave();
+
+        job = r.jenkins.createProject(WorkflowJob.class, TEST_PROJECT_NAME);
+        job.setDefinition(new CpsFlowDefinition(""
+                + "node('slave') {\n"
+                + "  publishHTMLLive(target: [allowMissing: false, keepAll: true, reportDir: '" + TEST_REPORT_DIR
+                + "', reportFiles: 'index.html', reportName: 'testReport'], interval: 1) {\n"
+                + "  }\n"
+                + "}", true));
+        run = r.buildAndAssertSuccess(job);
+
+        // Sealed like a report published at the end
+        HtmlPublisherTarget.HTMLBuildAction buildReport = run.getAction(HtmlPublisherTarget.HTMLBuildAction.class);
+        assertNotNull(buildReport, "Report should be present at the run level");
+        assertNotNull(buildReport.getWrapperChecksum(), "Checksum of the wrapper should be recorded");
+        assertEquals(1, run.getActions(HtmlPublisherTarget.HTMLBuildAction.class).size());
+        assertNull(buildReport.getPublishingStatus(), "Report should not be shown as live anymore");
+        File archivedIndex = new File(run.getRootDir(), "htmlreports/testReport/index.html");
+        assertTrue(archivedIndex.exists(), "Report should be archived");
+    }
+
     @Test
     void testGetIconFileNameSymbolIcon() throws Exception {
         // Prepare the environment
@@ -235,6 +259,28 @@ class PublishHTMLStepTest {
         assertEquals("symbol-document-text", jobReport.getIconFileName());
     }
 
+    @Test
+    void testGetIconFileNameFollowsProjectLevelReport() throws Exception {
+        writeTestHTML("index.html");
+
+        HtmlPublisherTarget target = new HtmlPublisherTarget("testReport", TEST_REPORT_DIR, "index.html", false, false, false);
+        target.setIcon("custom-icon.png");
+        setupAndRunProject(target);
+        HtmlPublisherTarget.HTMLAction jobReport = target.new HTMLAction(job, target);
+        assertEquals("symbol-document-text", jobReport.getIconFileName());
+
+        // A later build publishes the icon with the report
+        File customIconFile = new File(testReportDir, "custom-icon.png");
+        assertTrue(customIconFile.createNewFile());
+        r.buildAndAssertSuccess(job);
+        assertTrue(jobReport.getIconFileName().contains("custom-icon.png"), "Icon of the later build should be shown");
+
+        // And the next one without it
+        assertTrue(customIconFile.delete());
+        r.buildAndAssertSuccess(job);
+        assertEquals("symbol-document-text", jobReport.getIconFileName());
+    }
+
     private void writeTestHTML(String fileName) throws Exception {
         // Prepare the test file
         if (!testReportDir.exists() && !testReportDir.mkdirs()) {
@@ -247,16 +293,7 @@ class PublishHTMLStepTest {
     }
 
     private void setupAndRunProject(@NonNull HtmlPublisherTarget target) throws Exception {
-
-        // Test node for the workflow
-        DumbSlave dumbSlave = new DumbSlave("slave", testWorkspace.getPath(),r.createComputerLauncher(null));
-        dumbSlave.setNodeDescription("dummy");
-        dumbSlave.setNumExecutors(1);
-        dumbSlave.setMode(Node.Mode.NORMAL);
-        dumbSlave.setLabelString("");
-        dumbSlave.setRetentionStrategy(RetentionStrategy.NOOP);
-        dumbSlave.setNodeProperties(Collections.emptyList());
-        r.jenkins.addNode(dumbSlave); // TODO JENKINS-26398 clumsy
+        createSlave();
 
         job = r.jenkins.createProject(WorkflowJob.class, TEST_PROJECT_NAME);
         job.setDefinition(new CpsFlowDefinition(""
@@ -270,6 +307,18 @@ class PublishHTMLStepTest {
         run = runFuture.get();
     }
 
+    private void createSlave() throws Exception {
+        // Test node for the workflow
+        DumbSlave dumbSlave = new DumbSlave("slave", testWorkspace.getPath(),r.createComputerLauncher(null));
+        dumbSlave.setNodeDescription("dummy");
+        dumbSlave.setNumExecutors(1);
+        dumbSlave.setMode(Node.Mode.NORMAL);
+        dumbSlave.setLabelString("");
+        dumbSlave.setRetentionStrategy(RetentionStrategy.NOOP);
+        dumbSlave.setNodeProperties(Collections.emptyList());
+        r.jenkins.addNode(dumbSlave); // TODO JENKINS-26398 clumsy
+    }
+
     private void configRoundTrip(String reportName, String reportDir, String reportFiles) throws Exception {
         final HtmlPublisherTarget target = new HtmlPublisherTarget
                 (reportName, reportDir, reportFiles, false, false, false);
@@ -0,0 +1,35 @@
+package jmh;
+
+import jenkins.benchmark.jmh.BenchmarkFinder;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all benchmarks annotated with {@link jenkins.benchmark.jmh.JmhBenchmark}.
+ *
+ * Not picked up by a regular test run, use {@code mvn test -P benchmark} to run the benchmarks. The results are
+ * written to {@code jmh-report.json}.
+ */
+class BenchmarkRunner {
+
+    @Test
+    void runJmhBenchmarks() throws Exception {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .warmupIterations(2)
+                .measurementIterations(5)
+                .forks(1)
+                .shouldFailOnError(true)
+                .shouldDoGC(true)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-report.json");
+
+        // Modes, time units and parameters are defined by the benchmark classes
+        new BenchmarkFinder(getClass()).findBenchmarks(options);
+        new Runner(options.build()).run();
+    }
+
+}
@@ -0,0 +1,68 @@
+package jmh.benchmarks;
+
+import java.nio.file.LinkOption;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import htmlpublisher.HtmlPublisher;
+import htmlpublisher.util.DirScanningQueueWriter;
+import htmlpublisher.util.FileEntryQueue;
+import hudson.util.DirScanner;
+import jenkins.benchmark.jmh.JmhBenchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the scan rate of {@link DirScanningQueueWriter}, which runs on the agent before and while the copy
+ * workers transfer the files.
+ */
+@JmhBenchmark
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DirScanningQueueWriterBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class TreeState {
+
+        @Param({"TINY_FILES", "HUGE_FILES", "DEEP_NESTING"})
+        public ReportTree.Shape shape;
+
+        ReportTree tree;
+        DirScanner dirScanner;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            tree = ReportTree.create(shape);
+            dirScanner = HtmlPublisher.dirScannerGlob("**/*", null, true, LinkOption.NOFOLLOW_LINKS);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            tree.delete();
+        }
+
+    }
+
+    @Benchmark
+    public FileEntryQueue.Statistic scan(TreeState state, TransferCounters counters) throws Exception {
+        UUID queueKey = UUID.randomUUID();
+        try {
+            FileEntryQueue.Statistic statistic = new DirScanningQueueWriter(state.dirScanner, queueKey)
+                    .invoke(state.tree.getRoot(), null);
+            counters.add(statistic.getOverallCount(), statistic.getOverallSize());
+            return statistic;
+        } finally {
+            FileEntryQueue.remove(queueKey);
+        }
+    }
+
+}
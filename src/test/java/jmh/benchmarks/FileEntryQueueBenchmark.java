@@ -0,0 +1,128 @@
+package jmh.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import htmlpublisher.util.FileEntryQueue;
+import jenkins.benchmark.jmh.JmhBenchmark;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of {@link FileEntryQueue}, which sits between the directory scan and the copy workers.
+ */
+@JmhBenchmark
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FileEntryQueueBenchmark {
+
+    private static final int ENTRIES = 10_000;
+
+    @State(Scope.Benchmark)
+    public static class QueueState {
+
+        @Param({"1", "4", "16"})
+        public int consumers;
+
+        ReportTree tree;
+        final List<File> files = new ArrayList<>();
+        ExecutorService executor;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            tree = ReportTree.create(ReportTree.Shape.TINY_FILES);
+            files.addAll(FileUtils.listFiles(tree.getRoot(), null, true));
+            executor = Executors.newFixedThreadPool(consumers);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            executor.shutdownNow();
+            tree.delete();
+        }
+
+    }
+
+    /**
+     * Fills the queue completely before draining it, like a scan that is faster than the copy workers
+     */
+    @Benchmark
+    public void addThenTake(QueueState state, TransferCounters counters, Blackhole blackhole) throws Exception {
+        UUID queueKey = UUID.randomUUID();
+        FileEntryQueue queue = FileEntryQueue.getOrCreateQueue(queueKey);
+        try {
+            for (int i = 0; i < ENTRIES; i++) {
+                File file = state.files.get(i % state.files.size());
+                queue.add(file, file.getName());
+            }
+            queue.shutdown();
+            drain(state, queue, blackhole);
+            counters.add(queue.getOverallCount(), queue.getOverallSize());
+        } finally {
+            FileEntryQueue.remove(queueKey);
+        }
+    }
+
+    /**
+     * Drains the queue while it is being filled, like copy workers waiting on a slow scan
+     */
+    @Benchmark
+    public void concurrentAddAndTake(QueueState state, TransferCounters counters, Blackhole blackhole) throws Exception {
+        UUID queueKey = UUID.randomUUID();
+        FileEntryQueue queue = FileEntryQueue.getOrCreateQueue(queueKey);
+        try {
+            List<Future<?>> consumers = startConsumers(state, queue, blackhole);
+            for (int i = 0; i < ENTRIES; i++) {
+                File file = state.files.get(i % state.files.size());
+                queue.add(file, file.getName());
+            }
+            queue.shutdown();
+            for (Future<?> consumer : consumers) {
+                consumer.get();
+            }
+            counters.add(queue.getOverallCount(), queue.getOverallSize());
+        } finally {
+            FileEntryQueue.remove(queueKey);
+        }
+    }
+
+    private static void drain(QueueState state, FileEntryQueue queue, Blackhole blackhole) throws Exception {
+        for (Future<?> consumer : startConsumers(state, queue, blackhole)) {
+            consumer.get();
+        }
+    }
+
+    private static List<Future<?>> startConsumers(QueueState state, FileEntryQueue queue, Blackhole blackhole) {
+        List<Future<?>> consumers = new ArrayList<>();
+        for (int i = 0; i < state.consumers; i++) {
+            consumers.add(state.executor.submit(() -> {
+                try {
+                    while (true) {
+                        blackhole.consume(queue.take());
+                    }
+                } catch (InterruptedException e) {
+                    // End of queue
+                }
+            }));
+        }
+        return consumers;
+    }
+
+}
@@ -0,0 +1,122 @@
+package jmh.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import htmlpublisher.util.PruningGlobDirScanner;
+import hudson.util.DirScanner;
+import hudson.util.FileVisitor;
+import jenkins.benchmark.jmh.JmhBenchmark;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the scan of a monorepo-like workspace of 1M files for a report selected by includes and excludes, with the
+ * Ant based {@link DirScanner.Glob} and the {@link PruningGlobDirScanner} used for publishing.
+ */
+@JmhBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GlobScanBenchmark {
+
+    public enum Scanner {
+        ANT_GLOB,
+        PRUNING
+    }
+
+    public enum Selection {
+        /**
+         * The report of a single module, everything else can be pruned
+         */
+        SINGLE_MODULE("module0042/target/site/**", null),
+        /**
+         * The reports of all modules, the sources are pruned by the excludes
+         */
+        ALL_MODULES_EXCLUDING_SOURCES("**/*.html", "**/src/**"),
+        /**
+         * The reports of all modules, nothing can be pruned, to measure the overhead
+         */
+        ALL_MODULES("**/target/site/*.html", null);
+
+        final String includes;
+        final String excludes;
+
+        Selection(String includes, String excludes) {
+            this.includes = includes;
+            this.excludes = excludes;
+        }
+    }
+
+    /**
+     * 1000 modules with 980 sources and 20 report pages each
+     */
+    @State(Scope.Benchmark)
+    public static class WorkspaceState {
+
+        static final int MODULES = 1000;
+        static final int PACKAGES = 10;
+        static final int SOURCES_PER_PACKAGE = 98;
+        static final int PAGES = 20;
+
+        @Param({"ANT_GLOB", "PRUNING"})
+        public Scanner scanner;
+
+        @Param({"SINGLE_MODULE", "ALL_MODULES_EXCLUDING_SOURCES", "ALL_MODULES"})
+        public Selection selection;
+
+        File root;
+        DirScanner dirScanner;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            root = Files.createTempDirectory("htmlpublisher-benchmark").toFile();
+            for (int m = 0; m < MODULES; m++) {
+                Path module = root.toPath().resolve(String.format("module%04d", m));
+                for (int p = 0; p < PACKAGES; p++) {
+                    Path pkg = Files.createDirectories(module.resolve("src/main/java/pkg" + p));
+                    for (int s = 0; s < SOURCES_PER_PACKAGE; s++) {
+                        Files.createFile(pkg.resolve("Source" + s + ".java"));
+                    }
+                }
+                Path site = Files.createDirectories(module.resolve("target/site"));
+                for (int s = 0; s < PAGES; s++) {
+                    Files.createFile(site.resolve("page" + s + ".html"));
+                }
+            }
+            dirScanner = scanner == Scanner.PRUNING
+                    ? new PruningGlobDirScanner(selection.includes, selection.excludes, true, false)
+                    : new DirScanner.Glob(selection.includes, selection.excludes);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            FileUtils.deleteDirectory(root);
+        }
+
+    }
+
+    @Benchmark
+    public int scan(WorkspaceState state) throws Exception {
+        int[] visited = new int[1];
+        state.dirScanner.scan(state.root, new FileVisitor() {
+            @Override
+            public void visit(File f, String relativePath) {
+                visited[0]++;
+            }
+        });
+        return visited[0];
+    }
+
+}
@@ -0,0 +1,121 @@
+package jmh.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import htmlpublisher.HtmlPublisher;
+import htmlpublisher.util.MultithreadedFileCopyHelper;
+import htmlpublisher.util.ShapedChannel;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.util.DirScanner;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.util.Timer;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the transfers of parallel copy workers from a simulated agent behind a shaped link (see
+ * {@link ShapedChannel}): one pipe per worker opened by separate calls, one pipe per worker opened by a single call,
+ * and all workers multiplexed into a single pipe.
+ */
+@JmhBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MultiplexedTransferBenchmark {
+
+    public enum Transfer {
+        /**
+         * One {@code copyRecursiveTo} call and pipe per worker, reading the queue on the agent
+         */
+        QUEUE_PIPES,
+        /**
+         * A single call with one pipe per worker
+         */
+        SINGLE_CALL_PIPES,
+        /**
+         * A single call with all workers multiplexed into one pipe
+         */
+        SINGLE_CALL_MULTIPLEXED
+    }
+
+    @State(Scope.Benchmark)
+    public static class LinkState {
+
+        @Param({"TINY_FILES", "HUGE_FILES"})
+        public ReportTree.Shape shape;
+
+        @Param({"1", "150"})
+        public int roundTripTimeMillis;
+
+        @Param({"100", "1000"})
+        public int bandwidthMbit;
+
+        @Param({"4", "16"})
+        public int numberOfWorkers;
+
+        @Param({"QUEUE_PIPES", "SINGLE_CALL_PIPES", "SINGLE_CALL_MULTIPLEXED"})
+        public Transfer transfer;
+
+        ReportTree tree;
+        DirScanner dirScanner;
+        ShapedChannel channel;
+        File targetDir;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            tree = ReportTree.create(shape);
+            dirScanner = HtmlPublisher.dirScannerGlob("**/*", null, true, LinkOption.NOFOLLOW_LINKS);
+            channel = ShapedChannel.open(Duration.ofMillis(roundTripTimeMillis), Duration.ZERO,
+                    bandwidthMbit * 1_000_000L);
+        }
+
+        @Setup(Level.Invocation)
+        public void createTargetDir() throws Exception {
+            targetDir = Files.createTempDirectory("htmlpublisher-benchmark-target").toFile();
+        }
+
+        @TearDown(Level.Invocation)
+        public void deleteTargetDir() throws Exception {
+            FileUtils.deleteDirectory(targetDir);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            channel.close();
+            tree.delete();
+        }
+
+    }
+
+    @Benchmark
+    public int transfer(LinkState state) throws Exception {
+        FilePath archiveDir = state.channel.agentPath(state.tree.getRoot());
+        FilePath targetDir = new FilePath(state.targetDir);
+        switch (state.transfer) {
+            case QUEUE_PIPES:
+                return MultithreadedFileCopyHelper.copyRecursiveTo(archiveDir, state.dirScanner, targetDir, "**/*",
+                        state.numberOfWorkers, Timer.get(), 300, TaskListener.NULL);
+            case SINGLE_CALL_PIPES:
+                return MultithreadedFileCopyHelper.copyRecursiveToInSingleCall(archiveDir, state.dirScanner, null,
+                        targetDir, state.numberOfWorkers, false, Timer.get(), 300, TaskListener.NULL).getOverallCount();
+            default:
+                return MultithreadedFileCopyHelper.copyRecursiveToInSingleCall(archiveDir, state.dirScanner, null,
+                        targetDir, state.numberOfWorkers, true, Timer.get(), 300, TaskListener.NULL).getOverallCount();
+        }
+    }
+
+}
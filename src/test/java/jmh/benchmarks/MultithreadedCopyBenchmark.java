@@ -0,0 +1,89 @@
+package jmh.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.util.concurrent.TimeUnit;
+
+import htmlpublisher.HtmlPublisher;
+import htmlpublisher.util.MultithreadedFileCopyHelper;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.util.DirScanner;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.util.Timer;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the end-to-end copy of a report directory for a varying number of workers. A worker count of 0 is the
+ * single threaded {@link FilePath#copyRecursiveTo(DirScanner, FilePath, String)} used by default.
+ */
+@JmhBenchmark
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MultithreadedCopyBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CopyState {
+
+        @Param({"TINY_FILES", "HUGE_FILES", "DEEP_NESTING"})
+        public ReportTree.Shape shape;
+
+        @Param({"0", "1", "2", "4", "8", "16"})
+        public int numberOfWorkers;
+
+        ReportTree tree;
+        DirScanner dirScanner;
+        File targetDir;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            tree = ReportTree.create(shape);
+            dirScanner = HtmlPublisher.dirScannerGlob("**/*", null, true, LinkOption.NOFOLLOW_LINKS);
+        }
+
+        @Setup(Level.Invocation)
+        public void createTargetDir() throws Exception {
+            targetDir = Files.createTempDirectory("htmlpublisher-benchmark-target").toFile();
+        }
+
+        @TearDown(Level.Invocation)
+        public void deleteTargetDir() throws Exception {
+            FileUtils.deleteDirectory(targetDir);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            tree.delete();
+        }
+
+    }
+
+    @Benchmark
+    public int copyRecursiveTo(CopyState state, TransferCounters counters) throws Exception {
+        FilePath archiveDir = new FilePath(state.tree.getRoot());
+        FilePath targetDir = new FilePath(state.targetDir);
+        int copied;
+        if (state.numberOfWorkers == 0) {
+            copied = archiveDir.copyRecursiveTo(state.dirScanner, targetDir, "**/*");
+        } else {
+            // Timer.get() is the executor used when publishing
+            copied = MultithreadedFileCopyHelper.copyRecursiveTo(archiveDir, state.dirScanner, targetDir, "**/*",
+                    state.numberOfWorkers, Timer.get(), 300, TaskListener.NULL);
+        }
+        counters.add(copied, state.tree.getTotalSize());
+        return copied;
+    }
+
+}
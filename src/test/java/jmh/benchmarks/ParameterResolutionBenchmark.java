@@ -0,0 +1,98 @@
+package jmh.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import htmlpublisher.BuildEnvironment;
+import htmlpublisher.HtmlPublisher;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.slaves.EnvironmentVariablesNodeProperty;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the resolution of the parameters of a target with 50 titles, with the build environment computed for every
+ * string (as before) and once for the whole publishing.
+ */
+@JmhBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParameterResolutionBenchmark {
+
+    public static class BuildState extends JmhBenchmarkState {
+
+        static final int NUMBER_OF_TITLES = 50;
+
+        FreeStyleBuild build;
+
+        final String reportDir = "${REPORT_ROOT}/html";
+
+        final String reportFiles = "index.html,${REPORT_ROOT}/summary.html";
+
+        final String[] titles = new String[NUMBER_OF_TITLES];
+
+        @Override
+        public void setup() throws Exception {
+            EnvironmentVariablesNodeProperty prop = new EnvironmentVariablesNodeProperty();
+            prop.getEnvVars().put("REPORT_ROOT", "target/reports");
+            prop.getEnvVars().put("SUITE", "integration");
+            getJenkins().getGlobalNodeProperties().add(prop);
+
+            FreeStyleProject project = getJenkins().createProject(FreeStyleProject.class, "titles");
+            build = project.scheduleBuild2(0).get();
+            for (int i = 0; i < NUMBER_OF_TITLES; i++) {
+                titles[i] = "${SUITE} report " + i;
+            }
+        }
+
+    }
+
+    @Benchmark
+    public void environmentPerString(BuildState state, Blackhole blackhole) {
+        TaskListener listener = TaskListener.NULL;
+        blackhole.consume(HtmlPublisherAccess.resolve(state.build, listener, state.reportDir));
+        blackhole.consume(HtmlPublisherAccess.resolve(state.build, listener, state.reportFiles));
+        for (String title : state.titles) {
+            blackhole.consume(HtmlPublisherAccess.resolve(state.build, listener, title));
+        }
+    }
+
+    @Benchmark
+    public void environmentPerPublish(BuildState state, Blackhole blackhole) {
+        TaskListener listener = TaskListener.NULL;
+        BuildEnvironment environment = new BuildEnvironment(state.build, listener);
+        blackhole.consume(HtmlPublisherAccess.resolve(environment, listener, state.reportDir));
+        blackhole.consume(HtmlPublisherAccess.resolve(environment, listener, state.reportFiles));
+        for (String title : state.titles) {
+            blackhole.consume(HtmlPublisherAccess.resolve(environment, listener, title));
+        }
+    }
+
+    /**
+     * Exposes the resolution of the parameters, which is protected
+     */
+    private static final class HtmlPublisherAccess extends HtmlPublisher {
+
+        private HtmlPublisherAccess() {
+            super(null);
+        }
+
+        static String resolve(Run<?, ?> build, TaskListener listener, String input) {
+            return resolveParametersInString(build, listener, input);
+        }
+
+        static String resolve(BuildEnvironment environment, TaskListener listener, String input) {
+            return resolveParametersInString(environment, listener, input);
+        }
+
+    }
+
+}
@@ -0,0 +1,179 @@
+package jmh.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import htmlpublisher.HtmlPublisher;
+import htmlpublisher.HtmlPublisherConfiguration;
+import htmlpublisher.HtmlPublisherTarget;
+import htmlpublisher.LocalReportStorage;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import jenkins.model.GlobalConfiguration;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+
+import org.jvnet.hudson.test.TestBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the methods called for every report action when a job or build page (or a dashboard listing many jobs)
+ * is rendered.
+ */
+@JmhBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReportActionBenchmark {
+
+    /**
+     * A job with several published reports, using the different kinds of icons and report names that need escaping.
+     * The reports kept for the build are left in their directories, compacted into their archives or stored by a
+     * backend.
+     */
+    public static class DashboardState extends JmhBenchmarkState {
+
+        @Param({"5", "50"})
+        public int numberOfReports;
+
+        @Param({"directory", "archived", "stored"})
+        public String reportState;
+
+        final List<HtmlPublisherTarget> targets = new ArrayList<>();
+        final List<HtmlPublisherTarget.HTMLAction> projectActions = new ArrayList<>();
+        final List<HtmlPublisherTarget.HTMLBuildAction> buildActions = new ArrayList<>();
+
+        @Override
+        public void setup() throws Exception {
+            if (reportState.equals("stored")) {
+                File storage = Files.createTempDirectory("stored-reports").toFile();
+                GlobalConfiguration.all().get(HtmlPublisherConfiguration.class)
+                        .setReportStorage(new LocalReportStorage(storage.getAbsolutePath()));
+            }
+            FreeStyleProject project = getJenkins().createProject(FreeStyleProject.class, "dashboard");
+            project.getBuildersList().add(new TestBuilder() {
+                @Override
+                public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
+                        throws InterruptedException, IOException {
+                    FilePath reportDir = build.getWorkspace().child("report");
+                    reportDir.child("index.html").write("<html><body>report</body></html>", "UTF-8");
+                    reportDir.child("icon.png").write("png", "UTF-8");
+                    return true;
+                }
+            });
+
+            for (int i = 0; i < numberOfReports; i++) {
+                HtmlPublisherTarget target = new HtmlPublisherTarget("Report #" + i + " (unit_tests)", "report",
+                        "index.html", i % 2 == 0, false, false);
+                switch (i % 3) {
+                    case 0:
+                        target.setIcon("icon.png");
+                        break;
+                    case 1:
+                        target.setIcon("symbol-cube");
+                        break;
+                    default:
+                        // Default icon
+                }
+                targets.add(target);
+            }
+            project.getPublishersList().add(new HtmlPublisher(targets));
+
+            FreeStyleBuild build = project.scheduleBuild2(0).get();
+            if (reportState.equals("archived")) {
+                File[] reportDirs = new File(build.getRootDir(), "htmlreports").listFiles(File::isDirectory);
+                if (reportDirs != null) {
+                    for (File reportDir : reportDirs) {
+                        compact(reportDir);
+                    }
+                }
+            }
+            for (HtmlPublisherTarget target : targets) {
+                projectActions.add((HtmlPublisherTarget.HTMLAction) target.getProjectAction(project));
+            }
+            buildActions.addAll(build.getActions(HtmlPublisherTarget.HTMLBuildAction.class));
+        }
+
+        /**
+         * Packs a report into its archive next to it and deletes its directory, like the report lifecycle does
+         */
+        private static void compact(File reportDir) throws IOException, InterruptedException {
+            Path root = reportDir.toPath();
+            File archive = new File(reportDir.getParentFile(), "." + reportDir.getName() + ".zip");
+            try (OutputStream out = Files.newOutputStream(archive.toPath());
+                 ZipOutputStream zip = new ZipOutputStream(out);
+                 Stream<Path> files = Files.walk(root)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    zip.putNextEntry(new ZipEntry(root.relativize(file).toString().replace('\\', '/')));
+                    Files.copy(file, zip);
+                    zip.closeEntry();
+                }
+            }
+            new FilePath(reportDir).deleteRecursive();
+        }
+
+    }
+
+    @Benchmark
+    public void getUrlName(DashboardState state, Blackhole blackhole) {
+        for (HtmlPublisherTarget.HTMLAction action : state.projectActions) {
+            blackhole.consume(action.getUrlName());
+        }
+        for (HtmlPublisherTarget.HTMLBuildAction action : state.buildActions) {
+            blackhole.consume(action.getUrlName());
+        }
+    }
+
+    @Benchmark
+    public void getDisplayName(DashboardState state, Blackhole blackhole) {
+        for (HtmlPublisherTarget.HTMLAction action : state.projectActions) {
+            blackhole.consume(action.getDisplayName());
+        }
+        for (HtmlPublisherTarget.HTMLBuildAction action : state.buildActions) {
+            blackhole.consume(action.getDisplayName());
+        }
+    }
+
+    @Benchmark
+    public void getIconFileName(DashboardState state, Blackhole blackhole) {
+        for (HtmlPublisherTarget.HTMLAction action : state.projectActions) {
+            blackhole.consume(action.getIconFileName());
+        }
+        for (HtmlPublisherTarget.HTMLBuildAction action : state.buildActions) {
+            blackhole.consume(action.getIconFileName());
+        }
+    }
+
+    @Benchmark
+    public void getSanitizedName(DashboardState state, Blackhole blackhole) {
+        for (HtmlPublisherTarget target : state.targets) {
+            blackhole.consume(target.getSanitizedName());
+        }
+    }
+
+    @Benchmark
+    public void sanitizeReportName(DashboardState state, Blackhole blackhole) {
+        // The uncached computation, as a baseline for getSanitizedName
+        for (HtmlPublisherTarget target : state.targets) {
+            blackhole.consume(HtmlPublisherTarget.sanitizeReportName(target.getReportName(), target.getEscapeUnderscores()));
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+package jmh.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import htmlpublisher.CompactJsonTransformer;
+import htmlpublisher.DropFilesTransformer;
+import htmlpublisher.HtmlPublisher;
+import htmlpublisher.util.TransformingDirScanner;
+import hudson.util.DirScanner;
+import hudson.util.FileVisitor;
+import jenkins.benchmark.jmh.JmhBenchmark;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the built-in {@link htmlpublisher.ReportFileTransformer}s on typical report contents: the time the
+ * transformation adds on the agent, and the bytes it saves, reported as secondary results.
+ */
+@JmhBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReportFileTransformerBenchmark {
+
+    public enum ReportType {
+        /**
+         * Pretty-printed JSON data files, like those of coverage or test result viewers
+         */
+        JSON_DATA,
+        /**
+         * Bundled scripts with their source maps, like a single page application report
+         */
+        SCRIPTS_WITH_SOURCE_MAPS,
+        /**
+         * Plain pages, which no transformer applies to, to measure the overhead
+         */
+        HTML_PAGES
+    }
+
+    @State(Scope.Benchmark)
+    public static class ReportState {
+
+        @Param({"JSON_DATA", "SCRIPTS_WITH_SOURCE_MAPS", "HTML_PAGES"})
+        public ReportType reportType;
+
+        File root;
+        DirScanner dirScanner;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            root = Files.createTempDirectory("htmlpublisher-benchmark").toFile();
+            Random random = new Random(42);
+            for (int i = 0; i < 200; i++) {
+                switch (reportType) {
+                    case JSON_DATA:
+                        writeJson(new File(root, "data/file" + i + ".json"), random);
+                        break;
+                    case SCRIPTS_WITH_SOURCE_MAPS:
+                        writeText(new File(root, "js/chunk" + i + ".js"), random, 16 * 1024);
+                        writeText(new File(root, "js/chunk" + i + ".js.map"), random, 64 * 1024);
+                        break;
+                    default:
+                        writeText(new File(root, "pages/page" + i + ".html"), random, 16 * 1024);
+                        break;
+                }
+            }
+            dirScanner = new TransformingDirScanner(
+                    HtmlPublisher.dirScannerGlob("**/*", null, true, LinkOption.NOFOLLOW_LINKS),
+                    List.of(new DropFilesTransformer("**/*.map"), new CompactJsonTransformer()));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            FileUtils.deleteDirectory(root);
+        }
+
+        private static void writeJson(File file, Random random) throws IOException {
+            file.getParentFile().mkdirs();
+            try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                out.write("{\n  \"results\": [\n");
+                for (int i = 0; i < 200; i++) {
+                    out.write("    {\n      \"name\": \"test " + random.nextInt() + "\",\n      \"line\": " + random.nextInt(5000)
+                            + ",\n      \"covered\": " + random.nextBoolean() + "\n    }" + (i < 199 ? "," : "") + "\n");
+                }
+                out.write("  ]\n}\n");
+            }
+        }
+
+        private static void writeText(File file, Random random, int size) throws IOException {
+            file.getParentFile().mkdirs();
+            StringBuilder text = new StringBuilder(size);
+            while (text.length() < size) {
+                text.append(Integer.toString(random.nextInt(), 36)).append(random.nextInt(8) == 0 ? '\n' : ' ');
+            }
+            Files.writeString(file.toPath(), text, StandardCharsets.UTF_8);
+        }
+
+    }
+
+    /**
+     * The bytes read from the report and the bytes left to transfer, per invocation
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SavedBytes {
+
+        public long inputBytes;
+
+        public long outputBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            inputBytes = 0;
+            outputBytes = 0;
+        }
+
+    }
+
+    @Benchmark
+    public long transform(ReportState state, SavedBytes savedBytes) throws Exception {
+        long[] outputBytes = new long[1];
+        state.dirScanner.scan(state.root, new FileVisitor() {
+            @Override
+            public void visit(File f, String relativePath) throws IOException {
+                // Read while visiting, like the archiver of the copy
+                outputBytes[0] += Files.readAllBytes(f.toPath()).length;
+            }
+        });
+        savedBytes.inputBytes += FileUtils.sizeOfDirectory(state.root);
+        savedBytes.outputBytes += outputBytes[0];
+        return outputBytes[0];
+    }
+
+}
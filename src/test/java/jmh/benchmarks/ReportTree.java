@@ -0,0 +1,97 @@
+package jmh.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Synthetic report directories for the copy benchmarks.
+ */
+public class ReportTree {
+
+    /**
+     * The kinds of report trees that are benchmarked
+     */
+    public enum Shape {
+        /**
+         * Many tiny files in a flat hierarchy, like a test report with one page per test
+         */
+        TINY_FILES(100, 1, 100, 512),
+        /**
+         * A few huge files, like embedded videos or heap dumps
+         */
+        HUGE_FILES(1, 1, 4, 64 * 1024 * 1024),
+        /**
+         * Deeply nested directories, like a source code browser
+         */
+        DEEP_NESTING(3, 30, 5, 4096);
+
+        private final int branches;
+        private final int depth;
+        private final int filesPerDirectory;
+        private final int fileSize;
+
+        Shape(int branches, int depth, int filesPerDirectory, int fileSize) {
+            this.branches = branches;
+            this.depth = depth;
+            this.filesPerDirectory = filesPerDirectory;
+            this.fileSize = fileSize;
+        }
+    }
+
+    private final File root;
+    private int fileCount;
+    private long totalSize;
+
+    private ReportTree(File root) {
+        this.root = root;
+    }
+
+    /**
+     * Creates a new tree of the given shape in a temporary directory
+     */
+    public static ReportTree create(Shape shape) throws IOException {
+        ReportTree tree = new ReportTree(Files.createTempDirectory("htmlpublisher-benchmark").toFile());
+        byte[] content = new byte[shape.fileSize];
+        // Random content, so compression of the transfer does not distort the results
+        new Random(42).nextBytes(content);
+        for (int branch = 0; branch < shape.branches; branch++) {
+            File dir = new File(tree.root, "branch" + branch);
+            for (int level = 0; level < shape.depth; level++) {
+                dir = new File(dir, "level" + level);
+                if (!dir.mkdirs()) {
+                    throw new IOException("Could not create " + dir);
+                }
+                for (int i = 0; i < shape.filesPerDirectory; i++) {
+                    try (OutputStream out = Files.newOutputStream(new File(dir, "file" + i + ".html").toPath())) {
+                        out.write(content);
+                    }
+                    tree.fileCount++;
+                    tree.totalSize += content.length;
+                }
+            }
+        }
+        return tree;
+    }
+
+    public File getRoot() {
+        return this.root;
+    }
+
+    public int getFileCount() {
+        return this.fileCount;
+    }
+
+    public long getTotalSize() {
+        return this.totalSize;
+    }
+
+    public void delete() throws IOException {
+        FileUtils.deleteDirectory(this.root);
+    }
+
+}
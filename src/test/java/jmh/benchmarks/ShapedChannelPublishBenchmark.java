@@ -0,0 +1,101 @@
+package jmh.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import htmlpublisher.HtmlPublisher;
+import htmlpublisher.util.MultithreadedFileCopyHelper;
+import htmlpublisher.util.ShapedChannel;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.util.DirScanner;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.util.Timer;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Publishes a report from a simulated agent behind a shaped link (see {@link ShapedChannel}) for a varying number of
+ * workers. The JMH summary, grouped by the parameters, is the comparison table of link conditions and worker counts.
+ *
+ * A worker count of 0 is the single threaded copy used by default.
+ */
+@JmhBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ShapedChannelPublishBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class LinkState {
+
+        @Param({"TINY_FILES", "DEEP_NESTING"})
+        public ReportTree.Shape shape;
+
+        @Param({"1", "30", "150"})
+        public int roundTripTimeMillis;
+
+        @Param({"100", "1000"})
+        public int bandwidthMbit;
+
+        @Param({"0"})
+        public int jitterMillis;
+
+        @Param({"0", "1", "4", "16"})
+        public int numberOfWorkers;
+
+        ReportTree tree;
+        DirScanner dirScanner;
+        ShapedChannel channel;
+        File targetDir;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            tree = ReportTree.create(shape);
+            dirScanner = HtmlPublisher.dirScannerGlob("**/*", null, true, LinkOption.NOFOLLOW_LINKS);
+            channel = ShapedChannel.open(Duration.ofMillis(roundTripTimeMillis), Duration.ofMillis(jitterMillis),
+                    bandwidthMbit * 1_000_000L);
+        }
+
+        @Setup(Level.Invocation)
+        public void createTargetDir() throws Exception {
+            targetDir = Files.createTempDirectory("htmlpublisher-benchmark-target").toFile();
+        }
+
+        @TearDown(Level.Invocation)
+        public void deleteTargetDir() throws Exception {
+            FileUtils.deleteDirectory(targetDir);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            channel.close();
+            tree.delete();
+        }
+
+    }
+
+    @Benchmark
+    public int publish(LinkState state) throws Exception {
+        FilePath archiveDir = state.channel.agentPath(state.tree.getRoot());
+        FilePath targetDir = new FilePath(state.targetDir);
+        if (state.numberOfWorkers == 0) {
+            return archiveDir.copyRecursiveTo(state.dirScanner, targetDir, "**/*");
+        }
+        return MultithreadedFileCopyHelper.copyRecursiveTo(archiveDir, state.dirScanner, targetDir, "**/*",
+                state.numberOfWorkers, Timer.get(), 300, TaskListener.NULL);
+    }
+
+}
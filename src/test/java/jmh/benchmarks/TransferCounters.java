@@ -0,0 +1,32 @@
+package jmh.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary results of the copy benchmarks. In throughput mode JMH reports them per second, so they show up as
+ * files/s and MB/s next to the primary ops/s result.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class TransferCounters {
+
+    public long files;
+
+    public double megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        this.files = 0;
+        this.megabytes = 0;
+    }
+
+    public void add(long files, long bytes) {
+        this.files += files;
+        this.megabytes += (double) bytes / 1024 / 1024;
+    }
+
+}